@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// BenchmarkLiteralSearch tests how fast the text is scanned for the literal
+// prefix of a regexp, or for the runes that can start a match, where the
+// scan rather than the matching takes most of the time.  On Java 17 and
+// later, with -Pjava17Home (see build.gradle), the scans over UTF-8 run a
+// vector of bytes at a time.
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkLiteralSearch {
+
+  @Param({"JDK", "RE2J"})
+  private Implementations impl;
+
+  @Param({"true", "false"})
+  private boolean binary;
+
+  // A byte that is not in the text, a short literal, literals that need
+  // Horspool and Two-Way, and a class of runes to skip to.
+  @Param({
+    "~",
+    "Premium Plan",
+    "Maps Platform Premium Plan",
+    "Google Maps Platform Premium Plan customers",
+    "[~^]\\d+"
+  })
+  private String regex;
+
+  private final byte[] bytes = BenchmarkUtils.readResourceFile("google-maps-contact-info.html");
+
+  private final String html = new String(bytes, StandardCharsets.UTF_8);
+
+  private Implementations.Pattern pattern;
+
+  @Setup
+  public void setup() {
+    pattern = Implementations.Pattern.compile(impl, regex);
+  }
+
+  @Benchmark
+  public void findAll(Blackhole bh) {
+    Implementations.Matcher matcher = binary ? pattern.matcher(bytes) : pattern.matcher(html);
+    int count = 0;
+    while (matcher.find()) {
+      count++;
+    }
+    bh.consume(count);
+  }
+}
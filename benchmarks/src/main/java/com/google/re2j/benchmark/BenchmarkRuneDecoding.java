@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// BenchmarkRuneDecoding tests the searches of UTF-8 input that still decode
+// a rune at every step.  Only the forward DFA runs the program lowered to
+// UTF-8 bytes, so finding where each match starts, finding its groups, and
+// any search of a pattern with a word boundary read runes, as they do in
+// UTF-16 input.  The first pattern is the baseline for the other two: the
+// same matches, then with groups, then with a word boundary.
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkRuneDecoding {
+
+  @Param({"JDK", "RE2J"})
+  private Implementations impl;
+
+  @Param({"true", "false"})
+  private boolean binary;
+
+  @Param({"[a-z]+=\"[^\"]*\"", "([a-z]+)=\"([^\"]*)\"", "\\b[a-z]+=\"[^\"]*\""})
+  private String regex;
+
+  private final byte[] bytes = BenchmarkUtils.readResourceFile("google-maps-contact-info.html");
+
+  private final String html = new String(bytes, StandardCharsets.UTF_8);
+
+  private Implementations.Pattern pattern;
+
+  @Setup
+  public void setup() {
+    pattern = Implementations.Pattern.compile(impl, regex);
+  }
+
+  @Benchmark
+  public void findAllGroups(Blackhole bh) {
+    Implementations.Matcher matcher = binary ? pattern.matcher(bytes) : pattern.matcher(html);
+    while (matcher.find()) {
+      for (int g = 0; g <= matcher.groupCount(); g++) {
+        bh.consume(matcher.group(g));
+      }
+    }
+  }
+}
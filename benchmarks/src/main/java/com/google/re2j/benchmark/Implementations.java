@@ -18,6 +18,10 @@ public enum Implementations {
 
     public abstract String group();
 
+    public abstract String group(int group);
+
+    public abstract int groupCount();
+
     public static class Re2Matcher extends Matcher {
       private final com.google.re2j.Matcher matcher;
 
@@ -39,6 +43,16 @@ public enum Implementations {
       public String group() {
         return matcher.group();
       }
+
+      @Override
+      public String group(int group) {
+        return matcher.group(group);
+      }
+
+      @Override
+      public int groupCount() {
+        return matcher.groupCount();
+      }
     }
 
     public static class JdkMatcher extends Matcher {
@@ -62,6 +76,16 @@ public enum Implementations {
       public String group() {
         return matcher.group();
       }
+
+      @Override
+      public String group(int group) {
+        return matcher.group(group);
+      }
+
+      @Override
+      public int groupCount() {
+        return matcher.groupCount();
+      }
     }
   }
 
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// An AhoCorasick is an automaton that finds all the occurrences of a set of
+// rune strings in a single pass over an input, whatever the number of
+// strings.
+//
+// Its states are the nodes of the trie of the strings; state 0 is the root,
+// the empty prefix.  Stepping over a rune follows the trie edge for that rune
+// if there is one, and otherwise the failure links, which lead to the state
+// for the longest proper suffix of the current state that is in the trie.
+// After each step, the strings ending at the current position are the one of
+// the current state, if any, followed by those along its chain of dictionary
+// links.
+final class AhoCorasick {
+
+  // Runes below this bound are stepped over from the root by table lookup.
+  private static final int ROOT_TABLE_SIZE = 256;
+
+  // For each state, the sorted runes of its trie edges and, in parallel, the
+  // states they lead to.
+  private final int[][] edgeRunes;
+  private final int[][] edgeStates;
+
+  // The state reached from the root by each rune below ROOT_TABLE_SIZE.
+  private final int[] rootTable = new int[ROOT_TABLE_SIZE];
+
+  // Automata with at most this many states also have a table of all their
+  // transitions on ASCII runes.
+  private static final int MAX_DENSE_STATES = 512;
+
+  // The state reached from state s by ASCII rune r is dense[s << 7 | r], if
+  // dense is not null.
+  private final int[] dense;
+
+  private final int[] fail; // failure link of each state
+  private final int[] string; // index of the string equal to each state, or -1
+  private final int[] dict; // next state on the failure chain with string >= 0, or -1
+  private final int[] output; // s if string[s] >= 0, else dict[s]
+
+  // Builds the automaton of |strings|, which must be distinct, in time
+  // linear in their total length (up to the sorting of the edges).
+  AhoCorasick(int[][] strings) {
+    int max = 1;
+    for (int[] s : strings) {
+      max += s.length;
+    }
+    // Build the trie.  Each state but the root is the target of one edge,
+    // whose key packs the source state and the rune.  The edges are looked
+    // up in an open-addressing hash table of keys and states.
+    long[] edgeKey = new long[max];
+    int[] stringOf = new int[max];
+    stringOf[0] = -1;
+    int mask = Integer.highestOneBit(max) * 4 - 1;
+    long[] hashKeys = new long[mask + 1];
+    int[] hashStates = new int[mask + 1];
+    Arrays.fill(hashKeys, -1);
+    int n = 1;
+    for (int i = 0; i < strings.length; i++) {
+      int s = 0;
+      for (int r : strings[i]) {
+        long key = (long) s << 21 | r;
+        int h = find(hashKeys, mask, key);
+        if (hashKeys[h] == -1) {
+          hashKeys[h] = key;
+          hashStates[h] = n;
+          edgeKey[n] = key;
+          stringOf[n] = -1;
+          n++;
+        }
+        s = hashStates[h];
+      }
+      stringOf[s] = i;
+    }
+
+    // Sort the edges by source state, then rune.
+    long[] edges = Arrays.copyOfRange(edgeKey, 1, n);
+    Arrays.sort(edges);
+    edgeRunes = new int[n][];
+    edgeStates = new int[n][];
+    string = Arrays.copyOf(stringOf, n);
+    for (int j = 0; j < edges.length; ) {
+      int s = (int) (edges[j] >>> 21);
+      int k = j;
+      while (k < edges.length && (int) (edges[k] >>> 21) == s) {
+        k++;
+      }
+      edgeRunes[s] = new int[k - j];
+      edgeStates[s] = new int[k - j];
+      for (int e = j; e < k; e++) {
+        edgeRunes[s][e - j] = (int) edges[e] & 0x1FFFFF;
+        edgeStates[s][e - j] = hashStates[find(hashKeys, mask, edges[e])];
+      }
+      j = k;
+    }
+    for (int s = 0; s < n; s++) {
+      if (edgeRunes[s] == null) {
+        edgeRunes[s] = Utils.EMPTY_INTS;
+        edgeStates[s] = Utils.EMPTY_INTS;
+      }
+    }
+    for (int j = 0; j < edgeRunes[0].length && edgeRunes[0][j] < ROOT_TABLE_SIZE; j++) {
+      rootTable[edgeRunes[0][j]] = edgeStates[0][j];
+    }
+
+    // Compute the failure and dictionary links, breadth first so that the
+    // links of shallower states are known first.
+    fail = new int[n];
+    dict = new int[n];
+    dict[0] = -1;
+    int[] queue = new int[n];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = 0;
+    while (head < tail) {
+      int s = queue[head++];
+      for (int j = 0; j < edgeRunes[s].length; j++) {
+        int t = edgeStates[s][j];
+        fail[t] = s == 0 ? 0 : next(fail[s], edgeRunes[s][j]);
+        dict[t] = string[fail[t]] >= 0 ? fail[t] : dict[fail[t]];
+        queue[tail++] = t;
+      }
+    }
+
+    output = new int[n];
+    for (int t = 0; t < n; t++) {
+      output[t] = string[t] >= 0 ? t : dict[t];
+    }
+
+    if (n <= MAX_DENSE_STATES) {
+      int[] dense = new int[n << 7];
+      for (int t = 0; t < n; t++) {
+        for (int r = 0; r < 0x80; r++) {
+          dense[t << 7 | r] = next(t, r);
+        }
+      }
+      this.dense = dense;
+    } else {
+      this.dense = null;
+    }
+  }
+
+  // Returns the slot of |key| in the hash table |keys|, or the empty slot
+  // where it belongs.
+  private static int find(long[] keys, int mask, long key) {
+    int h = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    while (keys[h] != -1 && keys[h] != key) {
+      h = (h + 1) & mask;
+    }
+    return h;
+  }
+
+  // Returns the number of states.
+  int numStates() {
+    return fail.length;
+  }
+
+  // next() returns the state reached by stepping over rune |r| from state
+  // |s|.
+  int next(int s, int r) {
+    if (r < 0x80 && dense != null) {
+      return dense[s << 7 | r];
+    }
+    for (; ; ) {
+      if (s == 0) {
+        if (r < ROOT_TABLE_SIZE) {
+          return rootTable[r];
+        }
+        int j = Arrays.binarySearch(edgeRunes[0], r);
+        return j >= 0 ? edgeStates[0][j] : 0;
+      }
+      int[] runes = edgeRunes[s];
+      // Most states have a single edge.
+      if (runes.length == 1) {
+        if (runes[0] == r) {
+          return edgeStates[s][0];
+        }
+      } else {
+        int j = Arrays.binarySearch(runes, r);
+        if (j >= 0) {
+          return edgeStates[s][j];
+        }
+      }
+      s = fail[s];
+    }
+  }
+
+  // Returns the index of the string that state |s| stands for, or -1.
+  int string(int s) {
+    return string[s];
+  }
+
+  // Returns the first state that stands for a string on the failure chain
+  // of |s|, starting with |s| itself, or -1.  The strings ending where the
+  // automaton is in state |s| are those of this state and of its dictionary
+  // links.
+  int output(int s) {
+    return output[s];
+  }
+
+  // Returns the next state after |s| on its failure chain that stands for a
+  // string, or -1.
+  int dict(int s) {
+    return dict[s];
+  }
+}
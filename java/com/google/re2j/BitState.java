@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+// Original Go source here:
+// https://github.com/golang/go/blob/master/src/regexp/backtrack.go
+
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// A BitState runs a backtracking search of a Prog, remembering which
+// (instruction, position) pairs it has already explored so that it never
+// explores one twice.  That keeps the search linear in the size of the input
+// times the size of the program, and the visited bitmap bounded, so it is
+// only used for small programs on short inputs.  There, it is faster than
+// Machine because it needs no thread queues: a thread is a job on a stack,
+// and the captures are updated in place and restored on backtracking.
+//
+// Exploring the instructions depth-first in priority order finds the same
+// match, with the same submatches, as the threads of Machine do.
+//
+// Called by RE2.doExecute, via the (pooled) Machine that owns it.
+final class BitState {
+
+  // Larger programs are not run by a BitState.
+  static final int MAX_PROG = 500;
+
+  // Maximum size of the visited bitmap.
+  static final int MAX_BITS = 256 * 1024;
+
+  private final RE2 re2;
+  private final Prog prog;
+
+  // The search being run.
+  private MachineInput in;
+  private int anchor;
+  private int ncap;
+  private boolean longest;
+  private int start; // position at which the search started
+  private int end; // in.endPos()
+  private int stride; // number of positions per instruction in visited
+
+  // Bitmap of visited (pc, position) pairs.
+  private int[] visited = new int[0];
+
+  // Bitmap of positions at which some thread resumed after consuming a rune:
+  // where Machine would have threads running.
+  private int[] landed = new int[0];
+
+  // Stack of jobs: (pc, position, arg) triples.  For ALT instructions, arg is
+  // 1 once the out branch has been explored.  For CAPTURE instructions, arg
+  // is 1 for jobs that restore the slot to the old value held in position.
+  private int[] jobs = new int[3 * 64];
+  private int njobs;
+
+  private int[] cap = new int[0];
+  private int[] matchcap = new int[0];
+
+  BitState(RE2 re2) {
+    this.re2 = re2;
+    this.prog = re2.prog;
+  }
+
+  // shouldUse() reports whether a search of |prog| over |length| positions
+  // fits in the budget of a BitState.
+  static boolean shouldUse(Prog prog, int length) {
+    return prog.numInst() <= MAX_PROG && (long) prog.numInst() * (length + 2) <= MAX_BITS;
+  }
+
+  // match() runs a search of |in| from |pos| with the RE2 Anchor |anchor| and
+  // returns the |ncap| submatch positions found, or null if there is no
+  // match.  The caller must have checked shouldUse().
+  int[] match(MachineInput in, int pos, int anchor, int ncap) {
+    this.in = in;
+    this.anchor = anchor;
+    this.ncap = ncap;
+    this.longest = re2.longest;
+    this.start = pos;
+    this.end = in.endPos();
+    // A UTF-16 surrogate pair straddling the end of the input may be read as
+    // a single rune ending just past it.
+    this.stride = end - pos + 2;
+    int nvisited = (prog.numInst() * stride + 31) >>> 5;
+    if (visited.length < nvisited) {
+      visited = new int[nvisited];
+    } else {
+      Arrays.fill(visited, 0, nvisited, 0);
+    }
+    int nlanded = (stride + 31) >>> 5;
+    if (landed.length < nlanded) {
+      landed = new int[nlanded];
+    } else {
+      Arrays.fill(landed, 0, nlanded, 0);
+    }
+    if (cap.length < ncap) {
+      cap = new int[ncap];
+      matchcap = new int[ncap];
+    }
+    Arrays.fill(cap, 0, ncap, -1);
+    Arrays.fill(matchcap, 0, ncap, -1);
+    njobs = 0;
+
+    boolean anchored = anchor != RE2.UNANCHORED || (re2.cond & Utils.EMPTY_BEGIN_TEXT) != 0;
+    try {
+      for (; ; ) {
+        if (!isLanded(pos)) {
+          // No threads are running: Machine skips to the literal prefix.
+          int advance = re2.prefixSkip(in, pos);
+          if (advance < 0 || (advance > 0 && anchored)) {
+            return null;
+          }
+          pos += advance;
+        }
+        if (ncap > 0) {
+          cap[0] = pos;
+        }
+        if (tryBacktrack(prog.start, pos)) {
+          return ncap == 0 ? Utils.EMPTY_INTS : Arrays.copyOf(matchcap, ncap);
+        }
+        if (anchored) {
+          return null;
+        }
+        // Unanchored search: try the next start position.  The visited
+        // bitmap is not cleared, so no work is repeated.
+        int r = in.step(pos);
+        if (r == MachineInput.EOF) {
+          return null;
+        }
+        pos += r & 7;
+      }
+    } finally {
+      this.in = null;
+    }
+  }
+
+  private boolean isLanded(int pos) {
+    int i = pos - start;
+    return (landed[i >>> 5] & (1 << (i & 31))) != 0;
+  }
+
+  private void land(int pos) {
+    int i = pos - start;
+    landed[i >>> 5] |= 1 << (i & 31);
+  }
+
+  // shouldVisit() reports whether (pc, pos) has not been visited yet, and
+  // marks it visited.
+  private boolean shouldVisit(int pc, int pos) {
+    int n = pc * stride + (pos - start);
+    int bit = 1 << (n & 31);
+    if ((visited[n >>> 5] & bit) != 0) {
+      return false;
+    }
+    visited[n >>> 5] |= bit;
+    return true;
+  }
+
+  private void push(int pc, int pos, int arg) {
+    // Special case: pc 0 is always a FAIL instruction.
+    if (pc != 0 && (arg != 0 || shouldVisit(pc, pos))) {
+      if (njobs + 3 > jobs.length) {
+        jobs = Arrays.copyOf(jobs, 2 * jobs.length);
+      }
+      jobs[njobs++] = pc;
+      jobs[njobs++] = pos;
+      jobs[njobs++] = arg;
+    }
+  }
+
+  // Returns a bitmask of EMPTY_* flags for |pos|, as Machine computes it.
+  private int context(int pos) {
+    if (pos == 0) {
+      return Utils.emptyOpContext(-1, in.step(0) >> 3);
+    }
+    return in.context(pos);
+  }
+
+  // tryBacktrack() runs a backtracking search starting at |pc| and |pos|.
+  // It reports whether a match was found; if so, matchcap holds the submatch
+  // positions.
+  private boolean tryBacktrack(int pc0, int pos0) {
+    push(pc0, pos0, 0);
+    job:
+    while (njobs > 0) {
+      // Pop a job off the stack.
+      int arg = jobs[--njobs];
+      int pos = jobs[--njobs];
+      int pc = jobs[--njobs];
+      // Rather than pushing and popping, a job that continues simply
+      // updates pc, pos and arg and loops, checking that (pc, pos) has not
+      // been visited as push() would.
+      boolean check = false;
+      for (; ; ) {
+        if (check && (pc == 0 || !shouldVisit(pc, pos))) {
+          continue job;
+        }
+        check = true;
+        Inst inst = prog.inst[pc];
+        switch (inst.op) {
+          case Inst.ALT:
+          case Inst.ALT_MATCH:
+            // Cannot just push inst.out and inst.arg: if inst.arg is reached
+            // by another path while exploring inst.out, it must be explored
+            // then.  So re-push inst as a reminder to explore inst.arg later.
+            if (arg != 0) {
+              arg = 0;
+              pc = inst.arg;
+            } else {
+              push(pc, pos, 1);
+              pc = inst.out;
+            }
+            continue;
+
+          case Inst.RUNE:
+          case Inst.RUNE1:
+          case Inst.RUNE_ANY:
+          case Inst.RUNE_ANY_NOT_NL:
+            {
+              int r = in.step(pos);
+              if (r == MachineInput.EOF || !matchRune(inst, r >> 3)) {
+                continue job;
+              }
+              pos += r & 7;
+              pc = inst.out;
+              if (pc != 0) {
+                land(pos);
+              }
+              continue;
+            }
+
+          case Inst.CAPTURE:
+            if (arg != 0) {
+              // Finished inst.out; restore the old value.
+              cap[inst.arg] = pos;
+              continue job;
+            }
+            if (inst.arg < ncap) {
+              // Capture pos to register, but save old value.
+              push(pc, cap[inst.arg], 1); // come back when we're done.
+              cap[inst.arg] = pos;
+            }
+            pc = inst.out;
+            continue;
+
+          case Inst.EMPTY_WIDTH:
+            if ((inst.arg & ~context(pos)) != 0) {
+              continue job;
+            }
+            pc = inst.out;
+            continue;
+
+          case Inst.NOP:
+            pc = inst.out;
+            continue;
+
+          case Inst.MATCH:
+            if (anchor == RE2.ANCHOR_BOTH && pos != end) {
+              continue job;
+            }
+            // We found a match.  If the caller doesn't care where the match
+            // is, no point going further.
+            if (ncap == 0) {
+              return true;
+            }
+            // Record best match so far.  Only need to check the end point,
+            // because this entire call is only considering one start
+            // position.
+            cap[1] = pos;
+            if (matchcap[1] == -1 || (longest && pos > matchcap[1])) {
+              System.arraycopy(cap, 0, matchcap, 0, ncap);
+            }
+            // If going for first match, we're done.
+            if (!longest) {
+              return true;
+            }
+            // If we used the entire text, no longer match is possible.
+            if (pos == end) {
+              return true;
+            }
+            // Otherwise, continue on in hope of a longer match.
+            continue job;
+
+          default: // FAIL
+            continue job;
+        }
+      }
+    }
+    return longest && ncap > 1 && matchcap[1] >= 0;
+  }
+
+  private static boolean matchRune(Inst inst, int c) {
+    switch (inst.op) {
+      case Inst.RUNE:
+        return inst.matchRune(c);
+      case Inst.RUNE1:
+        return c == inst.runes[0];
+      case Inst.RUNE_ANY:
+        return true;
+      default: // RUNE_ANY_NOT_NL
+        return c != '\n';
+    }
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.nio.ByteBuffer;
+
+// An implementation of MachineInput for UTF-8 text in a ByteBuffer with no
+// accessible array: a direct or memory-mapped buffer, or a read-only one.
+// (Buffers with arrays are read as the arrays are; see
+// ByteBufferMatcherInput.)  |pos| and |width| are byte indices in the
+// buffer, regardless of its position.
+//
+// The bytes are read one at a time by index, except where index() searches
+// for a literal: there they are copied a window at a time into an array, for
+// StringSearch and FoldedPrefix to scan as they scan arrays.
+@GwtIncompatible
+final class ByteBufferInput extends MachineInput {
+
+  // The sizes of the first window that index() copies and of the largest:
+  // each window is twice the size of the last, so that a literal close by is
+  // found in few bytes, and one far off in few copies.
+  private static final int MIN_WINDOW = 256;
+  private static final int MAX_WINDOW = 1 << 16;
+
+  private final ByteBuffer b;
+  private final int end;
+
+  // A view of |b| whose position index() moves, and the array it copies
+  // windows into; allocated on first use.
+  private ByteBuffer reader;
+  private byte[] window;
+
+  ByteBufferInput(ByteBuffer b, int end) {
+    if (end > b.limit()) {
+      throw new IndexOutOfBoundsException(
+          "end is greater than limit: " + end + " > " + b.limit());
+    }
+    this.b = b;
+    this.end = end;
+  }
+
+  @Override
+  int step(int i) {
+    if (i >= end) {
+      return EOF;
+    }
+    // As UTF8Input.step() decodes.
+    int x = b.get(i++) & 0xff;
+    if ((x & 0x80) == 0) {
+      return x << 3 | 1;
+    } else if ((x & 0xE0) == 0xC0) { // 110xxxxx
+      x = x & 0x1F;
+      if (i >= end) {
+        return EOF;
+      }
+      x = x << 6 | (b.get(i++) & 0x3F);
+      return x << 3 | 2;
+    } else if ((x & 0xF0) == 0xE0) { // 1110xxxx
+      x = x & 0x0F;
+      if (i + 1 >= end) {
+        return EOF;
+      }
+      x = x << 6 | (b.get(i++) & 0x3F);
+      x = x << 6 | (b.get(i++) & 0x3F);
+      return x << 3 | 3;
+    } else { // 11110xxx
+      x = x & 0x07;
+      if (i + 2 >= end) {
+        return EOF;
+      }
+      x = x << 6 | (b.get(i++) & 0x3F);
+      x = x << 6 | (b.get(i++) & 0x3F);
+      x = x << 6 | (b.get(i++) & 0x3F);
+      return x << 3 | 4;
+    }
+  }
+
+  @Override
+  boolean canCheckPrefix() {
+    return true;
+  }
+
+  @Override
+  boolean isUTF8() {
+    return true;
+  }
+
+  @Override
+  int index(StringSearch needle, int pos) {
+    return index(needle, null, needle.utf8.length, pos);
+  }
+
+  @Override
+  int index(FoldedPrefix prefix, int pos) {
+    return index(null, prefix, prefix.maxLengthUTF8(), pos);
+  }
+
+  // Returns the index relative to |pos| of |needle|, or if it is null of
+  // |prefix|, whose occurrences are at most |length| bytes long, or -1.
+  // An occurrence found in a window is the leftmost one only if the window
+  // holds all the bytes it may span, or runs to the end of the input; the
+  // next window starts where that stops being so.
+  private int index(StringSearch needle, FoldedPrefix prefix, int length, int pos) {
+    if (reader == null) {
+      reader = b.duplicate();
+    }
+    int max = Math.max(MAX_WINDOW, 2 * length);
+    for (int lo = pos, size = Math.max(MIN_WINDOW, 2 * length); ; size = Math.min(2 * size, max)) {
+      int n = Math.min(size, end - lo);
+      if (window == null || window.length < n) {
+        window = new byte[size];
+      }
+      reader.position(lo);
+      reader.get(window, 0, n);
+      int i =
+          needle != null
+              ? needle.indexUTF8(window, 0, n)
+              : prefix.indexUTF8(MachineInput.fromUTF8(window, 0, n), window, 0, 0, n);
+      boolean last = lo + n == end;
+      int settled = last ? n + 1 : n - length + 1;
+      if (i >= 0 && i < settled) {
+        return lo + i - pos;
+      } else if (last) {
+        return -1;
+      }
+      lo += settled;
+    }
+  }
+
+  @Override
+  int indexFirst(FirstRunes first, int i) {
+    while (i < end) {
+      int c = b.get(i);
+      if (c >= 0) {
+        // Through ASCII in a loop of its own, the common case.
+        while (!first.contains(c)) {
+          if (++i == end || (c = b.get(i)) < 0) {
+            break;
+          }
+        }
+        if (i == end || c >= 0) {
+          break; // the end, or a rune in |first|
+        }
+      }
+      int r = step(i);
+      if (r == EOF || first.contains(r >> 3)) {
+        break;
+      }
+      i += r & 7;
+    }
+    return i;
+  }
+
+  @Override
+  int indexLineStart(int pos) {
+    // As in UTF8Input.indexLineStart().
+    boolean ascii = true;
+    for (int i = pos; i < end; i++) {
+      int c = b.get(i);
+      if (c == '\n') {
+        return ascii || isWellFormed(pos, i) ? i + 1 : super.indexLineStart(pos);
+      }
+      ascii &= c >= 0;
+    }
+    return ascii || isWellFormed(pos, end) ? -1 : super.indexLineStart(pos);
+  }
+
+  @Override
+  int context(int pos) {
+    int r1 = -1;
+    if (pos > 0 && pos <= end) {
+      int start = pos - 1;
+      r1 = b.get(start--) & 0xff;
+      if (r1 >= 0x80) { // decode UTF-8
+        // Find start, up to 4 bytes earlier.
+        int lim = Math.max(pos - 4, 0);
+        while (start >= lim && (b.get(start) & 0xC0) == 0x80) { // 10xxxxxx
+          start--;
+        }
+        r1 = step(Math.max(start, 0)) >> 3;
+      }
+    }
+    int r2 = pos < end ? (step(pos) >> 3) : -1;
+    return Utils.emptyOpContext(r1, r2);
+  }
+
+  @Override
+  int endPos() {
+    return end;
+  }
+
+  @Override
+  int stepBack(int lo, int pos) {
+    if (pos <= lo) {
+      return EOF;
+    }
+    // Find the start of the sequence, up to 4 bytes earlier.
+    int i = pos - 1;
+    int lim = Math.max(lo, pos - 4);
+    while (i > lim && (b.get(i) & 0xC0) == 0x80) { // 10xxxxxx
+      i--;
+    }
+    return step(i);
+  }
+
+  @Override
+  MachineInput reverse(int lo, int hi) {
+    return isWellFormed(lo, hi) ? new ReverseInput(this, lo, hi) : null;
+  }
+
+  // As UTF8Input.isWellFormed() checks.
+  @Override
+  boolean isWellFormed(int i, int n) {
+    while (i < n) {
+      // Eight bytes at a time through ASCII, which has no high bits.
+      while (i + 8 <= n && (b.getLong(i) & 0x8080808080808080L) == 0) {
+        i += 8;
+      }
+      if (i == n) {
+        break;
+      }
+      int x = b.get(i);
+      if (x >= 0) {
+        i++;
+        continue;
+      }
+      x &= 0xff;
+      int y = i + 1 < n ? b.get(i + 1) & 0xff : 0;
+      int size;
+      if (x < 0xC2) {
+        return false; // continuation byte, or overlong
+      } else if (x < 0xE0) {
+        size = 2;
+      } else if (x < 0xF0) {
+        size = 3;
+        if ((x == 0xE0 && y < 0xA0) || (x == 0xED && y >= 0xA0)) {
+          return false;
+        }
+      } else if (x < 0xF5) {
+        size = 4;
+        if ((x == 0xF0 && y < 0x90) || (x == 0xF4 && y >= 0x90)) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+      if (i + size > n) {
+        return false;
+      }
+      for (int j = i + 1; j < i + size; j++) {
+        if ((b.get(j) & 0xC0) != 0x80) {
+          return false;
+        }
+      }
+      i += size;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * MatcherInput for the UTF-8 bytes remaining in a ByteBuffer, from its position to its limit,
+ * which are matched where they are: in the array behind a heap buffer, or in the memory of a
+ * direct or memory-mapped one. Offsets are relative to the position of the buffer.
+ */
+@GwtIncompatible
+final class ByteBufferMatcherInput extends MatcherInput {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // The remaining bytes, from index 0, unaffected by later changes to the
+  // position and limit of the buffer given.
+  private final ByteBuffer buffer;
+
+  ByteBufferMatcherInput(ByteBuffer buffer) {
+    this.buffer = buffer.slice();
+  }
+
+  @Override
+  Encoding getEncoding() {
+    return Encoding.UTF_8;
+  }
+
+  @Override
+  CharSequence asCharSequence() {
+    return substring(0, buffer.limit());
+  }
+
+  @Override
+  byte[] asBytes() {
+    byte[] b = new byte[buffer.limit()];
+    buffer.duplicate().get(b);
+    return b;
+  }
+
+  @Override
+  int length() {
+    return buffer.limit();
+  }
+
+  @Override
+  MachineInput machineInput(int end) {
+    if (buffer.hasArray()) {
+      int offset = buffer.arrayOffset();
+      return MachineInput.fromUTF8(buffer.array(), offset, offset + end);
+    }
+    return new ByteBufferInput(buffer, end);
+  }
+
+  @Override
+  String substring(int start, int end) {
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + start, end - start, UTF_8);
+    }
+    byte[] b = new byte[end - start];
+    ByteBuffer reader = buffer.duplicate();
+    reader.position(start);
+    reader.get(b);
+    return new String(b, UTF_8);
+  }
+}
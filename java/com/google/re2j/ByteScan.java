@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+// ByteScan holds the loops that searches of UTF-8 spend their time in when
+// they skip ahead: to a byte of a literal, to a byte that can start a match,
+// or past ASCII.
+//
+// This is the portable version, which looks at one byte at a time.  A JAR
+// built with -Pjava17Home is multi-release, and on Java 17 and later the
+// class of the same name in java17/ replaces this one.  That one looks at
+// many bytes at a time when the incubating jdk.incubator.vector module is
+// added to the JVM, and otherwise runs the loops below.  Both must return the
+// same results.
+final class ByteScan {
+
+  private ByteScan() {}
+
+  // Set is a set of ASCII bytes, such as the ASCII runes of a FirstRunes.
+  static final class Set {
+
+    private final long lo; // bitset of the bytes below 64
+    private final long hi; // bitset of the bytes from 64 to 127
+
+    Set(long lo, long hi) {
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    // Returns whether |c|, an ASCII byte, is in the set.
+    boolean contains(int c) {
+      return ((c < 64 ? lo : hi) & (1L << c)) != 0;
+    }
+  }
+
+  // Returns the index of the first |c| in |b| within [from, to), or -1.
+  static int indexOf(byte[] b, byte c, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (b[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Returns the first index i in [from, to) where b[i] is |c| and b[i + d]
+  // is |c2|, or -1.  b[i + d] must be in |b| for every such i.
+  static int indexOf(byte[] b, byte c, byte c2, int d, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (b[i] == c && b[i + d] == c2) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Returns the index of the first byte in |b| within [from, to) that is
+  // not ASCII, or |to|.
+  static int indexNonASCII(byte[] b, int from, int to) {
+    int i = from;
+    // Eight bytes at a time, since ASCII has no high bits.
+    while (i + 8 <= to
+        && (b[i] | b[i + 1] | b[i + 2] | b[i + 3] | b[i + 4] | b[i + 5] | b[i + 6] | b[i + 7])
+            >= 0) {
+      i += 8;
+    }
+    while (i < to && b[i] >= 0) {
+      i++;
+    }
+    return i;
+  }
+
+  // Returns the index of the first byte in |b| within [from, to) that is in
+  // |set| or is not ASCII, or |to|.
+  static int indexIn(byte[] b, Set set, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int c = b[i];
+      if (c < 0 || set.contains(c)) {
+        return i;
+      }
+    }
+    return to;
+  }
+}
@@ -9,10 +9,18 @@
 
 package com.google.re2j;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Compiler from {@code Regexp} (RE2 abstract syntax) to {@code RE2} (compiled regular expression).
  *
- * The only entry point is {@link #compileRegexp}.
+ * The entry points are {@link #compileRegexp}, {@link #compileReverse} and {@link #compileSet}, and
+ * {@link #compileUTF8} lowers a compiled program to UTF-8 bytes.
  */
 class Compiler {
 
@@ -46,16 +54,270 @@ class Compiler {
   }
 
   private final Prog prog = new Prog(); // Program being built
+  private final boolean reversed; // whether to compile the reverse program
 
-  private Compiler() {
+  private Compiler(boolean reversed) {
+    this.reversed = reversed;
     newInst(Inst.FAIL); // always the first instruction
   }
 
   static Prog compileRegexp(Regexp re) {
-    Compiler c = new Compiler();
+    return compile(re, false);
+  }
+
+  // compileReverse() returns a program that matches the reverse of the
+  // strings that |re| matches, reading the text backward: concatenations are
+  // reversed, begin and end assertions are swapped, and there are no capture
+  // instructions.  It is run by a DFA over MachineInput.reverse() to find
+  // where a match starts, given where it ends.
+  static Prog compileReverse(Regexp re) {
+    return compile(re, true);
+  }
+
+  // compileSet() returns a program that matches any of |res|, whose MATCH
+  // instructions hold in arg the index in |res| of the regexp that matched.
+  static Prog compileSet(Regexp[] res) {
+    Compiler c = new Compiler(false);
+    Frag f = c.fail();
+    for (int i = 0; i < res.length; i++) {
+      Frag f1 = c.compile(res[i]);
+      Frag match = c.newInst(Inst.MATCH);
+      c.prog.getInst(match.i).arg = i;
+      c.prog.patch(f1.out, match.i);
+      f = c.alt(f, new Frag(f1.i, 0, f1.nullable));
+    }
+    c.prog.start = f.i;
+    RuneClasses.assign(c.prog);
+    return c.prog;
+  }
+
+  // The largest rune that MachineInput decodes from a sequence of 1, 2, 3 or
+  // 4 bytes, by length - 1.
+  private static final int[] MAX_DECODED = {0x7F, 0x7FF, 0xFFFF, 0x1FFFFF};
+
+  // compileUTF8() returns a copy of |prog| that reads UTF-8 bytes rather
+  // than runes, for a DFA run over UTF-8 input.  Each rune instruction
+  // becomes BYTE instructions, at the same pc, that match the byte sequences
+  // that MachineInput decodes to the runes it matches, so that the copy
+  // finds the same matches as |prog| even in text that is not well-formed:
+  // the decoder takes the length of a sequence from its first byte and only
+  // the low six bits of the others, so overlong and other ill-formed
+  // sequences decode to runes too.  Sequences with a common suffix share its
+  // instructions, as in RE2's compiler.  Only the forward DFAs run the copy,
+  // and not for programs with word boundaries: Machine, OnePass, BitState
+  // and the reverse DFA still decode runes (see BenchmarkRuneDecoding).
+  static Prog compileUTF8(Prog prog) {
+    Compiler c = new Compiler(false);
+    for (int pc = 1; pc < prog.numInst(); pc++) {
+      Inst i = prog.getInst(pc);
+      c.prog.addInst(i.op);
+      Inst copy = c.prog.getInst(pc);
+      copy.out = i.out;
+      copy.arg = i.arg;
+      copy.runes = i.runes;
+    }
+    c.prog.start = prog.start;
+    c.prog.numCap = prog.numCap;
+    Map<Long, Integer> cache = new HashMap<Long, Integer>();
+    for (int pc = 1; pc < prog.numInst(); pc++) {
+      Inst i = prog.getInst(pc);
+      if (Inst.isRuneOp(i.op)) {
+        c.lowerToUTF8(pc, runeRanges(i), cache);
+      }
+    }
+    return c.prog;
+  }
+
+  // Returns the sorted [lo, hi] rune ranges that rune instruction |i|
+  // matches.
+  private static int[] runeRanges(Inst i) {
+    switch (i.op) {
+      case Inst.RUNE_ANY:
+        return new int[] {0, MAX_DECODED[3]};
+      case Inst.RUNE_ANY_NOT_NL:
+        return new int[] {0, '\n' - 1, '\n' + 1, MAX_DECODED[3]};
+      case Inst.RUNE1:
+        return new int[] {i.runes[0], i.runes[0]};
+      default:
+        break;
+    }
+    return i.runes;
+  }
+
+  // Returns the runes of the simple case folding orbit of |r0|, as sorted
+  // [lo, hi] ranges, for a RUNE instruction that matches them all.
+  static int[] foldOrbit(int r0) {
+    int n = 1;
+    for (int r = Unicode.simpleFold(r0); r != r0; r = Unicode.simpleFold(r)) {
+      n++;
+    }
+    int[] orbit = new int[n];
+    orbit[0] = r0;
+    for (int j = 1; j < n; j++) {
+      orbit[j] = Unicode.simpleFold(orbit[j - 1]);
+    }
+    Arrays.sort(orbit);
+    int[] ranges = new int[2 * n];
+    int k = 0;
+    for (int r : orbit) {
+      if (k > 0 && ranges[k - 1] + 1 == r) {
+        ranges[k - 1] = r;
+      } else {
+        ranges[k++] = r;
+        ranges[k++] = r;
+      }
+    }
+    return Arrays.copyOf(ranges, k);
+  }
+
+  // lowerToUTF8() turns the instruction at |pc| into one that matches the
+  // byte sequences of the runes in |ranges| and continues at its out.  The
+  // instructions for the bytes after the first are shared through |cache|.
+  private void lowerToUTF8(int pc, int[] ranges, Map<Long, Integer> cache) {
+    Inst inst = prog.getInst(pc);
+    // The first bytes, grouped by the instruction for the rest.
+    Map<Integer, List<int[]>> leads = new LinkedHashMap<Integer, List<int[]>>();
+    for (int j = 0; j < ranges.length; j += 2) {
+      for (int len = 1; len <= 4; len++) {
+        int hi = Math.min(ranges[j + 1], MAX_DECODED[len - 1]);
+        if (ranges[j] <= hi) {
+          splitUTF8(ranges[j], hi, len, inst.out, leads, cache);
+        }
+      }
+    }
+    inst.arg = 0;
+    if (leads.isEmpty()) {
+      inst.op = Inst.FAIL;
+      inst.runes = null;
+      return;
+    }
+    // No sequence decodes to two runes, so the groups match disjoint sets of
+    // sequences, and their order does not matter.
+    int entry = 0;
+    for (Map.Entry<Integer, List<int[]>> e : leads.entrySet()) {
+      Inst i = inst;
+      if (leads.size() > 1) {
+        Frag f = newInst(Inst.BYTE);
+        i = prog.getInst(f.i);
+        if (entry == 0) {
+          entry = f.i;
+        } else {
+          Frag alt = newInst(Inst.ALT);
+          prog.getInst(alt.i).out = entry;
+          prog.getInst(alt.i).arg = f.i;
+          entry = alt.i;
+        }
+      }
+      i.op = Inst.BYTE;
+      i.out = e.getKey();
+      i.runes = mergeRanges(e.getValue());
+    }
+    if (leads.size() > 1) {
+      inst.op = Inst.NOP;
+      inst.out = entry;
+      inst.runes = null;
+    }
+  }
+
+  // splitUTF8() adds to |leads| the sequences of |len| bytes that decode to
+  // the runes in [lo, hi], followed by |out|: it splits the range until the
+  // sequences of each part are all the combinations of a range of values for
+  // each byte.
+  private void splitUTF8(
+      int lo, int hi, int len, int out, Map<Integer, List<int[]>> leads, Map<Long, Integer> cache) {
+    for (int i = 1; i < len; i++) {
+      int m = (1 << (6 * i)) - 1; // the bits of the last i bytes
+      if ((lo & ~m) != (hi & ~m)) {
+        if ((lo & m) != 0) {
+          splitUTF8(lo, lo | m, len, out, leads, cache);
+          splitUTF8((lo | m) + 1, hi, len, out, leads, cache);
+          return;
+        }
+        if ((hi & m) != m) {
+          splitUTF8(lo, (hi & ~m) - 1, len, out, leads, cache);
+          splitUTF8(hi & ~m, hi, len, out, leads, cache);
+          return;
+        }
+      }
+    }
+    // The continuation bytes, from the last one back.  The decoder ignores
+    // their top two bits.
+    int next = out;
+    for (int shift = 0; shift < 6 * (len - 1); shift += 6) {
+      int a = (lo >> shift) & 0x3F;
+      int b = (hi >> shift) & 0x3F;
+      Long key = (long) next << 12 | a << 6 | b;
+      Integer pc = cache.get(key);
+      if (pc == null) {
+        Frag f = newInst(Inst.BYTE);
+        Inst i = prog.getInst(f.i);
+        i.out = next;
+        i.runes = new int[] {a, b, 0x40 | a, 0x40 | b, 0x80 | a, 0x80 | b, 0xC0 | a, 0xC0 | b};
+        pc = f.i;
+        cache.put(key, pc);
+      }
+      next = pc;
+    }
+    // The first byte holds the remaining bits.  Bytes 0x80-0xBF and 0xF8-0xFF
+    // start four-byte sequences, like 0xF0-0xF7.
+    int a = lo >> (6 * (len - 1));
+    int b = hi >> (6 * (len - 1));
+    List<int[]> list = leads.get(next);
+    if (list == null) {
+      list = new ArrayList<int[]>();
+      leads.put(next, list);
+    }
+    switch (len) {
+      case 1:
+        list.add(new int[] {a, b});
+        break;
+      case 2:
+        list.add(new int[] {0xC0 | a, 0xC0 | b});
+        break;
+      case 3:
+        list.add(new int[] {0xE0 | a, 0xE0 | b});
+        break;
+      default:
+        for (int t = 0x80; t < 0x100; t += 8) {
+          if (t < 0xC0 || t >= 0xF0) {
+            list.add(new int[] {t | a, t | b});
+          }
+        }
+        break;
+    }
+  }
+
+  // Returns the sorted union of the byte ranges |list|, as [lo, hi] pairs.
+  private static int[] mergeRanges(List<int[]> list) {
+    boolean[] set = new boolean[256];
+    for (int[] r : list) {
+      for (int x = r[0]; x <= r[1]; x++) {
+        set[x] = true;
+      }
+    }
+    int n = 0;
+    int[] ranges = new int[256];
+    for (int x = 0; x < 256; x++) {
+      if (set[x] && (x == 0 || !set[x - 1])) {
+        ranges[n++] = x;
+      }
+      if (set[x] && (x == 255 || !set[x + 1])) {
+        ranges[n++] = x;
+      }
+    }
+    return Arrays.copyOf(ranges, n);
+  }
+
+  private static Prog compile(Regexp re, boolean reversed) {
+    Compiler c = new Compiler(reversed);
     Frag f = c.compile(re);
     c.prog.patch(f.out, c.newInst(Inst.MATCH).i);
     c.prog.start = f.i;
+    if (!reversed) {
+      // The reverse program is only run by the DFA.
+      RuneClasses.assign(c.prog);
+      FirstRunes.assign(c.prog);
+    }
     return c.prog;
   }
 
@@ -112,7 +374,9 @@ class Compiler {
     Inst i = prog.getInst(f.i);
     i.out = f1.i;
     i.arg = f2.i;
-    f.out = prog.append(f1.out, f2.out);
+    // The order of a patch list does not matter.  Walk f2's, which is the
+    // short one when a long alternation is built up in f1.
+    f.out = prog.append(f2.out, f1.out);
     f.nullable = f1.nullable || f2.nullable;
     return f;
   }
@@ -181,16 +445,21 @@ class Compiler {
     Frag f = newInst(Inst.RUNE);
     f.nullable = false;
     Inst i = prog.getInst(f.i);
-    i.runes = runes;
     flags &= RE2.FOLD_CASE; // only relevant flag is FoldCase
     if (runes.length != 1 || Unicode.simpleFold(runes[0]) == runes[0]) {
       flags &= ~RE2.FOLD_CASE; // and sometimes not even that
     }
+    if ((flags & RE2.FOLD_CASE) != 0) {
+      // The rune matches its whole orbit, as a class, so that no case
+      // folding happens while matching.  FOLD_CASE stays to mark the class
+      // as the orbit of its first rune (see Prog.foldPrefix).
+      runes = foldOrbit(runes[0]);
+    }
+    i.runes = runes;
     i.arg = flags;
     f.out = f.i << 1;
     // Special cases for exec machine.
-    if (((flags & RE2.FOLD_CASE) == 0 && runes.length == 1)
-        || (runes.length == 2 && runes[0] == runes[1])) {
+    if (runes.length == 1 || (runes.length == 2 && runes[0] == runes[1])) {
       i.op = Inst.RUNE1;
     } else if (runes.length == 2 && runes[0] == 0 && runes[1] == Unicode.MAX_RUNE) {
       i.op = Inst.RUNE_ANY;
@@ -218,7 +487,8 @@ class Compiler {
           return nop();
         } else {
           Frag f = null;
-          for (int r : re.runes) {
+          for (int i = 0; i < re.runes.length; i++) {
+            int r = re.runes[reversed ? re.runes.length - 1 - i : i];
             Frag f1 = rune(r, re.flags);
             f = (f == null) ? f1 : cat(f, f1);
           }
@@ -231,18 +501,21 @@ class Compiler {
       case ANY_CHAR:
         return rune(ANY_RUNE, 0);
       case BEGIN_LINE:
-        return empty(Utils.EMPTY_BEGIN_LINE);
+        return empty(reversed ? Utils.EMPTY_END_LINE : Utils.EMPTY_BEGIN_LINE);
       case END_LINE:
-        return empty(Utils.EMPTY_END_LINE);
+        return empty(reversed ? Utils.EMPTY_BEGIN_LINE : Utils.EMPTY_END_LINE);
       case BEGIN_TEXT:
-        return empty(Utils.EMPTY_BEGIN_TEXT);
+        return empty(reversed ? Utils.EMPTY_END_TEXT : Utils.EMPTY_BEGIN_TEXT);
       case END_TEXT:
-        return empty(Utils.EMPTY_END_TEXT);
+        return empty(reversed ? Utils.EMPTY_BEGIN_TEXT : Utils.EMPTY_END_TEXT);
       case WORD_BOUNDARY:
         return empty(Utils.EMPTY_WORD_BOUNDARY);
       case NO_WORD_BOUNDARY:
         return empty(Utils.EMPTY_NO_WORD_BOUNDARY);
       case CAPTURE:
+        if (reversed) {
+          return compile(re.subs[0]);
+        }
         {
           Frag bra = cap(re.cap << 1), sub = compile(re.subs[0]), ket = cap(re.cap << 1 | 1);
           return cat(cat(bra, sub), ket);
@@ -258,8 +531,8 @@ class Compiler {
           return nop();
         } else {
           Frag f = null;
-          for (Regexp sub : re.subs) {
-            Frag f1 = compile(sub);
+          for (int i = 0; i < re.subs.length; i++) {
+            Frag f1 = compile(re.subs[reversed ? re.subs.length - 1 - i : i]);
             f = (f == null) ? f1 : cat(f, f1);
           }
           return f;
@@ -0,0 +1,929 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// A DFA is a lazily-built deterministic automaton for a Prog.
+//
+// Each state is the priority-ordered list of instructions that the NFA in
+// Machine would be running at some position, so a search costs one array
+// lookup per rune once the states that the text exercises have been built.
+// States are built on demand and cached up to a memory budget.  When the
+// cache fills up it is flushed and the search carries on; if that keeps
+// happening, the search gives up and returns FAILED so that the caller can
+// fall back to the NFA.
+//
+// A DFA only knows where matches end, not where they start or where the
+// submatches are, so RE2.doExecute uses it for searches that need no
+// submatches, for anchored searches that need only the overall match, and to
+// reject inputs that cannot match before running the NFA.  A DFA for the
+// reverse program (see Compiler.compileReverse), run backward from the end of
+// a match, finds where the match starts.
+//
+// Over UTF-8 input, the DFA runs the program lowered to bytes (see
+// Compiler.compileUTF8) and reads the bytes themselves, so that it does not
+// decode runes at all.  Its states also record how many bytes of the current
+// UTF-8 sequence remain: threads only start, and EMPTY_* conditions are only
+// checked, between sequences, and where the rune kinds that they depend on
+// are not determined by the bytes alone, the search works them out as
+// Machine would.
+//
+// See http://swtch.com/~rsc/regexp/regexp3.html.
+//
+// Called by RE2.doExecute, via the (pooled) Machine that owns it.
+final class DFA {
+
+  //// Kinds of DFA.
+
+  // Leftmost-first: a MATCH cuts all lower-priority threads.
+  static final int FIRST_MATCH = 0;
+
+  // Leftmost-longest: threads keep running after a MATCH.
+  static final int LONGEST_MATCH = 1;
+
+  // Anchored at both ends: only a MATCH at the end of the input counts.
+  static final int FULL_MATCH = 2;
+
+  // For a RegexSet: find every MATCH, of every pattern, anywhere.
+  static final int MANY_MATCH = 3;
+
+  static final int NUM_KINDS = 4;
+
+  //// Results of search() other than a match position.
+
+  static final int NO_MATCH = -1;
+  static final int FAILED = -2;
+
+  // Default per-DFA state cache size, in (approximate) bytes.
+  static final int DEFAULT_MEMORY_BUDGET = 1 << 20;
+
+  // Pseudo-instruction that starts a new thread at prog.start, used for
+  // unanchored searches.  It is always the last instruction of a state.  pc 0
+  // is always a FAIL instruction, which is never kept in a state, so it is
+  // free for this use.
+  private static final int START = 0;
+
+  // The kind of the rune before the current position, which is all that the
+  // EMPTY_* conditions need to know about it.  Only recorded in states that
+  // can reach an EMPTY_WIDTH instruction.
+  private static final int PREV_BEGIN = 0; // no previous rune
+  private static final int PREV_NEWLINE = 1;
+  private static final int PREV_WORD = 2;
+  private static final int PREV_OTHER = 3;
+  private static final int PREV_MASK = 3;
+
+  // Representative runes for the PREV_* kinds, for Utils.emptyOpContext.
+  private static final int[] KIND_RUNE = {-1, '\n', 'a', ' '};
+
+  // State flag: a match ended just before the rune that led to the state.
+  private static final int FLAG_MATCH = 4;
+
+  // State flag: the threads depend on the context, so the PREV_* kind is set.
+  private static final int FLAG_CONTEXT = 8;
+
+  // State field, for a DFA over UTF-8: the number of bytes of the current
+  // sequence that remain to be read.  The PREV_* kind and FLAG_CONTEXT are
+  // only set between sequences.
+  private static final int REMAIN_SHIFT = 4;
+  private static final int FLAG_REMAIN = 3 << REMAIN_SHIFT;
+
+  // The length of the UTF-8 sequences that MachineInput decodes, by first
+  // byte.
+  private static final int[] SEQUENCE_LENGTH = new int[256];
+
+  static {
+    for (int x = 0; x < 256; x++) {
+      SEQUENCE_LENGTH[x] = x < 0x80 ? 1 : x < 0xC0 ? 4 : x < 0xE0 ? 2 : x < 0xF0 ? 3 : 4;
+    }
+  }
+
+  // Approximate memory cost of a state, not counting its arrays.
+  private static final int STATE_OVERHEAD = 64;
+
+  // The budget must hold at least this many states for the DFA to be used.
+  private static final int MIN_STATES = 20;
+
+  // A DFA state: instructions, in priority order, flags and, for MANY_MATCH,
+  // the sorted indexes of the patterns whose matches the FLAG_MATCH is for.
+  //
+  // Usually the instructions are those of the threads that are running, that
+  // is, the instructions that consume a rune or match.  But if the threads
+  // went through an EMPTY_WIDTH instruction, which of them run, and in which
+  // order, depends on the context.  Then the instructions are those where the
+  // threads resumed after consuming the last rune, and the threads are found
+  // as Machine.add would, once the context is known.
+  private static final class State {
+    final int[] insts;
+    final int flag;
+    final int[] matches; // null unless MANY_MATCH and FLAG_MATCH
+    State[] next; // transitions, indexed by rune class; null if not yet built
+
+    // Whether searchUTF8 must do more than follow a transition into this
+    // state: it has FLAG_MATCH or FLAG_CONTEXT, has no threads, or may skip
+    // to the literal prefix, the next line or a rune that can start a match.
+    // Set by intern.
+    boolean special;
+
+    State(int[] insts, int flag, int[] matches) {
+      this.insts = insts;
+      this.flag = flag;
+      this.matches = matches;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof State)) {
+        return false;
+      }
+      State that = (State) o;
+      return flag == that.flag
+          && Arrays.equals(insts, that.insts)
+          && Arrays.equals(matches, that.matches);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * Arrays.hashCode(insts) + flag) + Arrays.hashCode(matches);
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(insts) + "/" + flag;
+    }
+  }
+
+  // A sparse set of pcs that remembers insertion order.  See Machine.Queue.
+  private static final class Workq {
+    final int[] sparse;
+    final int[] dense;
+    int size;
+
+    Workq(int n) {
+      sparse = new int[n];
+      dense = new int[n];
+    }
+
+    boolean contains(int pc) {
+      int j = sparse[pc];
+      return j < size && dense[j] == pc;
+    }
+
+    void add(int pc) {
+      sparse[pc] = size;
+      dense[size++] = pc;
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+
+  private final RE2 re2;
+  private final Prog prog;
+  private final int kind;
+  private final int budget;
+  private final boolean reversed; // whether prog is re2.reverseProg
+  private final boolean utf8; // whether prog is re2.utf8Prog()
+
+  // Whether the instructions reachable from prog.start include EMPTY_WIDTH.
+  private final boolean startNeedsContext;
+
+  // Whether threads survive only at the start of a line, as for (?m)^x, so
+  // that where no threads are running the search skips to the next line.
+  private final boolean lineStarts;
+
+  // The runes that can start a match, to skip to where no threads are
+  // running, as Machine does (see FirstRunes); null if unknown.
+  private final FirstRunes first;
+
+  // Rune classes: runes in [bounds[i], bounds[i + 1]) belong to class i, and
+  // no instruction of the program can tell them apart.  bounds[i] itself
+  // stands in for the class when building transitions; classKind[i] is its
+  // PREV_* kind.
+  //
+  // Over UTF-8, byte classes instead: byte x belongs to class latin1Class[x];
+  // classByte[i] stands in for class i, and classRune[i] for the rune that
+  // starts with it, for the EMPTY_* conditions.  A few bytes start sequences
+  // that may decode to ASCII runes; their classes have variants for when
+  // the rune is a newline or a word character, newlineClass[i] and
+  // wordClass[i], and -1 for the other classes.
+  private final int numClasses;
+  private final int[] bounds;
+  private final int[] classKind;
+  private final int[] latin1Class = new int[256];
+  private int[] classByte;
+  private int[] classRune;
+  private int[] newlineClass;
+  private int[] wordClass;
+
+  // The first position at which the last transition was built after a cache
+  // flush, or -1.
+  private int resetPos;
+
+  // For MANY_MATCH: the number of patterns, and which have been found to
+  // match in the current search.
+  private int numPatterns;
+  private boolean[] found;
+  private int nfound;
+
+  // Cache of states, with the memory they are estimated to use.
+  private final Map<State, State> cache = new HashMap<State, State>();
+  private int memory;
+
+  // Cache of start states, indexed by (anchored ? 4 : 0) + PREV_* kind.
+  private final State[] startCache = new State[8];
+
+  // Scratch space for building states.
+  private final Workq q0;
+  private final Workq q1;
+  private final Workq q2;
+  private final int[] roots;
+  private final int[] stack;
+
+  // Constructs a DFA for re2.prog, or if |reversed| for re2.reverseProg, to be
+  // run over MachineInput.reverse(), or if |utf8| for re2.utf8Prog(), to be
+  // run over UTF-8 input.
+  DFA(RE2 re2, int kind, int budget, boolean reversed, boolean utf8) {
+    this.re2 = re2;
+    this.prog = reversed ? re2.reverseProg : utf8 ? re2.utf8Prog() : re2.prog;
+    this.kind = kind;
+    this.budget = budget;
+    this.reversed = reversed;
+    this.utf8 = utf8;
+    int n = prog.numInst();
+    this.q0 = new Workq(n);
+    this.q1 = new Workq(n);
+    this.q2 = new Workq(n);
+    this.roots = new int[n];
+    // Every pc is expanded at most once per closure, pushing at most two pcs.
+    this.stack = new int[2 * n + 1];
+    this.bounds = utf8 ? byteClassBounds(prog) : RuneClasses.bounds(prog);
+    for (int r = 0, i = 0; r < latin1Class.length; r++) {
+      if (i + 1 < bounds.length && bounds[i + 1] == r) {
+        i++;
+      }
+      latin1Class[r] = i;
+    }
+    if (utf8) {
+      // Each class of bytes that may start an ASCII rune gets two variants.
+      int m = bounds.length;
+      int extra = 0;
+      for (int i = 0; i < m; i++) {
+        if (mayStartASCII(bounds[i])) {
+          extra += 2;
+        }
+      }
+      numClasses = m + extra;
+      classByte = new int[numClasses];
+      classRune = new int[numClasses];
+      newlineClass = new int[numClasses];
+      wordClass = new int[numClasses];
+      Arrays.fill(newlineClass, -1);
+      Arrays.fill(wordClass, -1);
+      for (int i = 0, j = m; i < m; i++) {
+        // Non-ASCII bytes stand for runes that are neither newlines nor
+        // word characters.
+        classByte[i] = bounds[i];
+        classRune[i] = bounds[i];
+        if (mayStartASCII(bounds[i])) {
+          newlineClass[i] = j;
+          classByte[j] = bounds[i];
+          classRune[j++] = '\n';
+          wordClass[i] = j;
+          classByte[j] = bounds[i];
+          classRune[j++] = 'a';
+        }
+      }
+    } else {
+      numClasses = bounds.length;
+    }
+    this.classKind = new int[numClasses];
+    for (int i = 0; i < numClasses; i++) {
+      // The variants start sequences of more than one byte, whose kind the
+      // search works out (see searchUTF8).
+      classKind[i] = i < bounds.length ? kindOf(bounds[i]) : PREV_OTHER;
+    }
+    q0.clear();
+    addClosure(q0, prog.start, 0);
+    boolean empty = false;
+    for (int i = 0; i < q0.size; i++) {
+      empty |= prog.inst[q0.dense[i]].op == Inst.EMPTY_WIDTH;
+    }
+    this.startNeedsContext = empty;
+    this.lineStarts =
+        !reversed
+            && re2.prefix.isEmpty()
+            && (re2.prog.startCond() & Utils.EMPTY_BEGIN_LINE) != 0;
+    this.first = !reversed && re2.prefix.isEmpty() ? re2.prog.first : null;
+    if (kind == MANY_MATCH) {
+      for (int pc = 0; pc < n; pc++) {
+        if (prog.inst[pc].op == Inst.MATCH) {
+          numPatterns = Math.max(numPatterns, prog.inst[pc].arg + 1);
+        }
+      }
+    }
+  }
+
+  // Returns the PREV_* kind of rune |r|.
+  private static int kindOf(int r) {
+    return r == '\n' ? PREV_NEWLINE : Utils.isWordRune(r) ? PREV_WORD : PREV_OTHER;
+  }
+
+  // Reports whether byte |x| starts sequences that MachineInput may decode
+  // to ASCII runes: overlong ones.
+  private static boolean mayStartASCII(int x) {
+    switch (SEQUENCE_LENGTH[x]) {
+      case 2:
+        return (x & 0x1F) < 2;
+      case 3:
+        return (x & 0x0F) == 0;
+      case 4:
+        return (x & 0x07) == 0;
+      default:
+        return false;
+    }
+  }
+
+  // Returns the sorted starting bytes of the byte classes of |prog|, a
+  // program over UTF-8.  Classes are split as RuneClasses are, and also by
+  // the length of the sequences that their bytes start, and so that the
+  // bytes that may start an ASCII rune are in classes of their own.
+  private static int[] byteClassBounds(Prog prog) {
+    int[] b = new int[64];
+    int n = 0;
+    int[] fixed = {
+      0, '\n', '\n' + 1, '0', '9' + 1, 'A', 'Z' + 1, '_', '_' + 1, 'a', 'z' + 1, // ASCII kinds
+      0x80, 0xC0, 0xE0, 0xF0 // sequence lengths
+    };
+    for (int x : fixed) {
+      b = RuneClasses.addBound(b, n++, x);
+    }
+    for (int x = 0x80; x < 0x100; x++) {
+      if (mayStartASCII(x)) {
+        b = RuneClasses.addBound(b, n++, x);
+        b = RuneClasses.addBound(b, n++, x + 1);
+      }
+    }
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      Inst inst = prog.inst[pc];
+      if (inst.op == Inst.BYTE) {
+        for (int j = 0; j < inst.runes.length; j += 2) {
+          b = RuneClasses.addBound(b, n++, inst.runes[j]);
+          b = RuneClasses.addBound(b, n++, inst.runes[j + 1] + 1);
+        }
+      }
+    }
+    return RuneClasses.sortedBounds(b, n, 0x100);
+  }
+
+  // Returns the class of rune |r|.
+  private int classOf(int r) {
+    if (r < latin1Class.length) {
+      return latin1Class[r];
+    }
+    int lo = 0;
+    int hi = bounds.length;
+    while (hi - lo > 1) {
+      int m = (lo + hi) >>> 1;
+      if (bounds[m] <= r) {
+        lo = m;
+      } else {
+        hi = m;
+      }
+    }
+    return lo;
+  }
+
+  // search() runs the DFA over |in| from |pos|.  If |anchored|, only matches
+  // starting at |pos| are considered; if |earliest|, the search stops at the
+  // first position where some match ends.  Otherwise it returns the end of the
+  // match that Machine.match would report (for LONGEST_MATCH, only when
+  // anchored).  Returns NO_MATCH if there is no match and FAILED if the DFA
+  // ran out of memory.
+  int search(MachineInput in, int pos, boolean anchored, boolean earliest) {
+    if (budget < MIN_STATES * (STATE_OVERHEAD + 4 * numClasses)) {
+      return FAILED;
+    }
+    if (utf8) {
+      return searchUTF8(in, in.utf8(), in.utf8Offset(), pos, anchored, earliest);
+    }
+    State s = startState(in, pos, anchored);
+    if (s == null) {
+      return FAILED;
+    }
+    if (anchored && re2.prefixSkip(in, pos) != 0) {
+      return NO_MATCH;
+    }
+    int lastMatch = NO_MATCH;
+    resetPos = -1;
+    for (; ; ) {
+      int r = in.step(pos);
+      if (s.insts.length == 1 && s.insts[0] == START) {
+        // No threads are running: skip ahead, if possible.
+        int advance = skip(in, pos, s);
+        if (advance < 0) {
+          return lastMatch;
+        }
+        if (advance > 0) {
+          pos += advance;
+          s = startState(in, pos, anchored);
+          if (s == null) {
+            return FAILED;
+          }
+          r = in.step(pos);
+        }
+      }
+      if (r == MachineInput.EOF) {
+        break;
+      }
+      int c = r >> 3;
+      int cls = classOf(c);
+      State next = s.next[cls];
+      if (next == null) {
+        next = transition(s, cls, pos);
+        if (next == null) {
+          return FAILED;
+        }
+      }
+      if ((next.flag & FLAG_MATCH) != 0) {
+        lastMatch = pos;
+        if (next.matches != null && record(next.matches)) {
+          return lastMatch; // all the patterns match
+        }
+        if (earliest) {
+          return lastMatch;
+        }
+      }
+      if (next.insts.length == 0) {
+        return lastMatch;
+      }
+      int width = r & 7;
+      if (width > 1 && (next.flag & FLAG_CONTEXT) != 0) {
+        // Machine takes the context from the text before the next position
+        // (see MachineInput.context), which need not agree with the rune just
+        // consumed if the text is not well-formed UTF-8.
+        int prev = prevKind(in, pos + width);
+        if (prev != (next.flag & PREV_MASK)) {
+          next = intern(next.insts, (next.flag & ~PREV_MASK) | prev, next.matches);
+          if (next == null) {
+            return FAILED;
+          }
+        }
+      }
+      s = next;
+      pos += width;
+    }
+    return finish(in, s, pos, lastMatch);
+  }
+
+  // searchUTF8() is search() for a DFA over UTF-8, where |b| holds the input
+  // from index |offset|.
+  private int searchUTF8(
+      MachineInput in, byte[] b, int offset, int pos, boolean anchored, boolean earliest) {
+    State s = startState(in, pos, anchored);
+    if (s == null) {
+      return FAILED;
+    }
+    if (anchored && re2.prefixSkip(in, pos) != 0) {
+      return NO_MATCH;
+    }
+    int end = in.endPos();
+    // Up to here, a sequence that starts before this position cannot be cut
+    // short by the end of the input.
+    int limit = end - 3;
+    int[] byteClass = latin1Class;
+    int lastMatch = NO_MATCH;
+    resetPos = -1;
+    for (; ; ) {
+      if (!s.special) {
+        // Follow the transitions that have been built between states that
+        // need no more attention: the bulk of the search.
+        while (pos < limit) {
+          State next = s.next[byteClass[b[offset + pos] & 0xff]];
+          if (next == null || next.special) {
+            break;
+          }
+          s = next;
+          pos++;
+        }
+      }
+      if (s.insts.length == 1 && s.insts[0] == START && (s.flag & FLAG_REMAIN) == 0) {
+        // No threads are running: skip ahead, if possible.
+        int advance = skip(in, pos, s);
+        if (advance < 0) {
+          return lastMatch;
+        }
+        if (advance > 0) {
+          pos += advance;
+          s = startState(in, pos, anchored);
+          if (s == null) {
+            return FAILED;
+          }
+        }
+      }
+      if (pos >= end) {
+        break;
+      }
+      int x = b[offset + pos] & 0xff;
+      int cls = byteClass[x];
+      if (x >= 0x80 && (s.flag & FLAG_REMAIN) == 0) {
+        if (pos + SEQUENCE_LENGTH[x] > end) {
+          // Machine sees the end of the input where a sequence is cut short.
+          break;
+        }
+        if ((s.flag & FLAG_CONTEXT) != 0 && newlineClass[cls] >= 0) {
+          // Whether the rune here is a newline or a word character depends
+          // on the bytes after this one.
+          int r = in.step(pos) >> 3;
+          if (r == '\n') {
+            cls = newlineClass[cls];
+          } else if (Utils.isWordRune(r)) {
+            cls = wordClass[cls];
+          }
+        }
+      }
+      State next = s.next[cls];
+      if (next == null) {
+        next = transition(s, cls, pos);
+        if (next == null) {
+          return FAILED;
+        }
+      }
+      if ((next.flag & FLAG_MATCH) != 0) {
+        lastMatch = pos;
+        if (next.matches != null && record(next.matches)) {
+          return lastMatch; // all the patterns match
+        }
+        if (earliest) {
+          return lastMatch;
+        }
+      }
+      if (next.insts.length == 0) {
+        return lastMatch;
+      }
+      pos++;
+      if ((next.flag & (FLAG_REMAIN | FLAG_CONTEXT)) == FLAG_CONTEXT
+          && (s.flag & FLAG_REMAIN) != 0) {
+        // The end of a sequence of more than one byte.  As in search(), take
+        // the context from the text, as Machine does.
+        int prev = prevKind(in, pos);
+        if (prev != (next.flag & PREV_MASK)) {
+          next = intern(next.insts, (next.flag & ~PREV_MASK) | prev, next.matches);
+          if (next == null) {
+            return FAILED;
+          }
+        }
+      }
+      s = next;
+    }
+    return finish(in, s, pos, lastMatch);
+  }
+
+  // transition() builds the transition of state |s| on class |cls| at |pos|,
+  // flushing the cache if it is full, or returns null if the DFA should give
+  // up.
+  private State transition(State s, int cls, int pos) {
+    State next = computeNext(s, cls);
+    if (next != null) {
+      return next;
+    }
+    // The cache is full.  Flush it and carry on, unless the states are being
+    // thrown away so fast that the NFA would do better.
+    if (resetPos >= 0 && pos - resetPos < 10 * cache.size()) {
+      return null;
+    }
+    resetPos = pos;
+    resetCache();
+    s = intern(s.insts, s.flag, s.matches);
+    if (s == null) {
+      return null;
+    }
+    return computeNext(s, cls);
+  }
+
+  // finish() returns the result of a search that stopped at |pos| in state
+  // |s|, at the end of the input as far as Machine is concerned, having
+  // found |lastMatch|.
+  private int finish(MachineInput in, State s, int pos, int lastMatch) {
+    if (kind != FULL_MATCH || pos == in.endPos()) {
+      // (A reversed input has Machine's context at its position 0 already.)
+      int flag = pos == 0 && !reversed ? Utils.emptyOpContext(-1, -1) : in.context(pos);
+      if (matchesAt(s, flag)) {
+        lastMatch = pos;
+      }
+    }
+    return lastMatch;
+  }
+
+  // searchSet() runs a MANY_MATCH DFA over all of |in|, setting matched[i] if
+  // the pattern with index i matches somewhere.  Returns false if the DFA ran
+  // out of memory.
+  boolean searchSet(MachineInput in, boolean[] matched) {
+    this.found = matched;
+    this.nfound = 0;
+    try {
+      return search(in, 0, false, false) != FAILED;
+    } finally {
+      this.found = null;
+    }
+  }
+
+  // Records that the patterns with indexes |ids| match, and reports whether
+  // all the patterns now have.
+  private boolean record(int[] ids) {
+    for (int id : ids) {
+      if (!found[id]) {
+        found[id] = true;
+        nfound++;
+      }
+    }
+    return nfound == numPatterns;
+  }
+
+  // Returns how far from |pos|, where state |s| has no threads running, the
+  // next thread that can survive starts: at the literal prefix, if any, at
+  // the start of the next line if threads only survive there, or else at the
+  // next rune that can start a match.  Returns -1 if there is none.
+  private int skip(MachineInput in, int pos, State s) {
+    int advance = re2.prefixSkip(in, pos);
+    if (lineStarts && (s.flag & PREV_MASK) > PREV_NEWLINE) {
+      int i = in.indexLineStart(pos);
+      advance = i < 0 ? -1 : i - pos;
+    } else if (first != null) {
+      advance = in.indexFirst(first, pos) - pos;
+    }
+    return advance;
+  }
+
+  // Returns the start state for a search from |pos|, or null if it could not
+  // be cached.
+  private State startState(MachineInput in, int pos, boolean anchored) {
+    int prev = prevKind(in, pos);
+    int i = (anchored ? 4 : 0) + prev;
+    State s = startCache[i];
+    if (s == null) {
+      int n = 0;
+      if (anchored) {
+        roots[n++] = prog.start;
+      }
+      s = newState(n, !anchored, 0, null, prev);
+      startCache[i] = s;
+    }
+    return s;
+  }
+
+  // Returns the PREV_* kind of the rune before |pos|, as MachineInput.context
+  // sees it.
+  private int prevKind(MachineInput in, int pos) {
+    if (pos == 0 && !reversed) {
+      return PREV_BEGIN;
+    }
+    int context = in.context(pos);
+    if ((context & Utils.EMPTY_BEGIN_TEXT) != 0) {
+      return PREV_BEGIN;
+    }
+    if ((context & Utils.EMPTY_BEGIN_LINE) != 0) {
+      return PREV_NEWLINE;
+    }
+    int r = in.step(pos);
+    boolean nextIsWord = r != MachineInput.EOF && Utils.isWordRune(r >> 3);
+    boolean boundary = (context & Utils.EMPTY_WORD_BOUNDARY) != 0;
+    return nextIsWord != boundary ? PREV_WORD : PREV_OTHER;
+  }
+
+  // newState() returns the state whose threads resume at roots[0:n], in
+  // priority order, followed by a new thread at prog.start if |start|.  |flag|
+  // holds the FLAG_MATCH bit and FLAG_REMAIN field, |matches| the indexes of
+  // the patterns matched for MANY_MATCH, and |prev| is the PREV_* kind of the
+  // last rune.  Returns
+  // null if the state is new and does not fit in the cache.
+  private State newState(int n, boolean start, int flag, int[] matches, int prev) {
+    q1.clear();
+    q2.clear();
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      int pc = roots[i];
+      if (pc != 0 && !q2.contains(pc)) {
+        q2.add(pc);
+        roots[m++] = pc;
+        addClosure(q1, pc, 0);
+      }
+    }
+    boolean empty = false;
+    int nthreads = 0;
+    for (int i = 0; i < q1.size; i++) {
+      int op = prog.inst[q1.dense[i]].op;
+      if (op == Inst.EMPTY_WIDTH) {
+        empty = true;
+      } else if (op == Inst.MATCH || Inst.isRuneOp(op) || op == Inst.BYTE) {
+        nthreads++;
+      }
+    }
+    int[] insts;
+    if (empty) {
+      insts = Arrays.copyOf(roots, m + (start ? 1 : 0));
+    } else {
+      insts = new int[nthreads + (start ? 1 : 0)];
+      int j = 0;
+      for (int i = 0; i < q1.size; i++) {
+        int pc = q1.dense[i];
+        int op = prog.inst[pc].op;
+        if (op == Inst.MATCH || Inst.isRuneOp(op) || op == Inst.BYTE) {
+          insts[j++] = pc;
+        }
+      }
+    }
+    if (start) {
+      insts[insts.length - 1] = START;
+    }
+    if ((empty || (start && startNeedsContext)) && (flag & FLAG_REMAIN) == 0) {
+      flag |= FLAG_CONTEXT | prev;
+    }
+    return intern(insts, flag, matches);
+  }
+
+  // addClosure() adds |pc| to |q|, along with all the instructions reachable
+  // from it through ALT, NOP and CAPTURE instructions and EMPTY_WIDTH
+  // instructions whose conditions are satisfied by |flag|, in the same
+  // (priority) order as Machine.add.
+  private void addClosure(Workq q, int pc, int flag) {
+    int sp = 0;
+    stack[sp++] = pc;
+    while (sp > 0) {
+      pc = stack[--sp];
+      if (pc == 0 || q.contains(pc)) {
+        continue;
+      }
+      q.add(pc);
+      Inst inst = prog.inst[pc];
+      switch (inst.op) {
+        case Inst.ALT:
+        case Inst.ALT_MATCH:
+          stack[sp++] = inst.arg;
+          stack[sp++] = inst.out;
+          break;
+        case Inst.EMPTY_WIDTH:
+          if ((inst.arg & ~flag) == 0) {
+            stack[sp++] = inst.out;
+          }
+          break;
+        case Inst.NOP:
+        case Inst.CAPTURE:
+          stack[sp++] = inst.out;
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  // expand() fills |q| with the threads of state |s| at a position whose
+  // context is |flag|.  In the middle of a UTF-8 sequence, the new thread
+  // waits for its end.
+  private void expand(State s, Workq q, int flag) {
+    q.clear();
+    for (int pc : s.insts) {
+      if (pc != START) {
+        addClosure(q, pc, flag);
+      } else if ((s.flag & FLAG_REMAIN) == 0) {
+        addClosure(q, prog.start, flag);
+      }
+    }
+  }
+
+  // Reports whether a match of state |s| ends at the end of the input, whose
+  // context is |flag|.  For MANY_MATCH, records all the patterns that do.
+  private boolean matchesAt(State s, int flag) {
+    expand(s, q0, flag);
+    int[] ids = matches();
+    if (ids != null && kind == MANY_MATCH) {
+      record(ids);
+    }
+    return ids != null;
+  }
+
+  // Returns the sorted pattern indexes of the MATCH instructions in q0, or
+  // null if there are none.
+  private int[] matches() {
+    int n = 0;
+    for (int i = 0; i < q0.size; i++) {
+      Inst inst = prog.inst[q0.dense[i]];
+      if (inst.op == Inst.MATCH) {
+        stack[n++] = inst.arg;
+      }
+    }
+    if (n == 0) {
+      return null;
+    }
+    int[] ids = Arrays.copyOf(stack, n);
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  // computeNext() builds the transition of state |s| on rune class |cls|, or
+  // returns null if the new state would not fit in the cache.
+  private State computeNext(State s, int cls) {
+    int c = utf8 ? classByte[cls] : bounds[cls];
+    int prev = s.flag & PREV_MASK;
+    expand(s, q0, Utils.emptyOpContext(KIND_RUNE[prev], utf8 ? classRune[cls] : c));
+    int n = 0;
+    boolean matched = false;
+    loop:
+    for (int i = 0; i < q0.size; i++) {
+      Inst inst = prog.inst[q0.dense[i]];
+      boolean add = false;
+      switch (inst.op) {
+        case Inst.MATCH:
+          if (kind == FULL_MATCH) {
+            // Not at the end of the input.
+            break;
+          }
+          matched = true;
+          if (kind == FIRST_MATCH) {
+            break loop;
+          }
+          break;
+        case Inst.RUNE:
+          add = inst.matchRune(c);
+          break;
+        case Inst.RUNE1:
+          add = c == inst.runes[0];
+          break;
+        case Inst.RUNE_ANY:
+          add = true;
+          break;
+        case Inst.RUNE_ANY_NOT_NL:
+          add = c != '\n';
+          break;
+        case Inst.BYTE:
+          add = inst.matchByte(c);
+          break;
+        default:
+          break;
+      }
+      if (add) {
+        roots[n++] = inst.out;
+      }
+    }
+    // Once there is a match, no new threads are started, except that every
+    // match of every pattern counts for MANY_MATCH.
+    boolean start =
+        (!matched || kind == MANY_MATCH)
+            && s.insts.length > 0
+            && s.insts[s.insts.length - 1] == START;
+    int[] matches = matched && kind == MANY_MATCH ? matches() : null;
+    int flag = matched ? FLAG_MATCH : 0;
+    if (utf8) {
+      int remain = (s.flag & FLAG_REMAIN) >> REMAIN_SHIFT;
+      flag |= (remain > 0 ? remain - 1 : SEQUENCE_LENGTH[c] - 1) << REMAIN_SHIFT;
+    }
+    State next = newState(n, start, flag, matches, classKind[cls]);
+    if (next != null) {
+      s.next[cls] = next;
+    }
+    return next;
+  }
+
+  // Returns the cached state with the given instructions, flags and matches,
+  // adding it to the cache if necessary, or null if it does not fit.
+  private State intern(int[] insts, int flag, int[] matches) {
+    State s = new State(insts, flag, matches);
+    State cached = cache.get(s);
+    if (cached != null) {
+      return cached;
+    }
+    s.special =
+        (flag & (FLAG_MATCH | FLAG_CONTEXT)) != 0
+            || insts.length == 0
+            || (insts.length == 1
+                && insts[0] == START
+                && (!re2.prefix.isEmpty()
+                    || first != null
+                    || (lineStarts && (flag & PREV_MASK) > PREV_NEWLINE)));
+    int size = STATE_OVERHEAD + 4 * (insts.length + numClasses);
+    if (matches != null) {
+      size += 4 * matches.length;
+    }
+    if (memory + size > budget) {
+      return null;
+    }
+    memory += size;
+    s.next = new State[numClasses];
+    cache.put(s, s);
+    return s;
+  }
+
+  private void resetCache() {
+    cache.clear();
+    Arrays.fill(startCache, null);
+    memory = 0;
+  }
+}
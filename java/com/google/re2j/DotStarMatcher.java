@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+// A DotStarMatcher matches a regular expression that is literal strings
+// separated by .*, and optionally starting or ending with .*, such as
+// .*foo.*, foo.*bar or .*foo.*bar.*, by searching the input for the
+// strings: no program runs, and no threads are allocated for the .*.
+//
+// A match of such a regexp lies within a line, or anywhere for (?s), which
+// holds the strings in order.  The leftmost match is in the first such line:
+// it starts at the start of the line, or with .* missing at the front, at the
+// first string; it ends at the end of the line, or with .* missing at the end,
+// at the end of the last occurrence of the last string in the line.  That is
+// where Machine ends it too, as the greedy .* take as many runes as they can.
+//
+// As LiteralMatcher does, it gives up on text that is not well-formed, where
+// Machine may decode runes and newlines that the string search would miss.
+final class DotStarMatcher {
+
+  // Results of find() other than the start of a match.
+  static final int NO_MATCH = LiteralMatcher.NO_MATCH;
+  static final int FAILED = LiteralMatcher.FAILED;
+
+  private static final StringSearch NEWLINE = new StringSearch("\n");
+
+  private final StringSearch[] strings; // the strings, in order
+  private final boolean leadingStar; // whether the regexp starts with .*
+  private final boolean trailingStar; // whether the regexp ends with .*
+  private final boolean dotNL; // whether . matches \n
+
+  private DotStarMatcher(
+      String[] strings, boolean leadingStar, boolean trailingStar, boolean dotNL) {
+    this.strings = new StringSearch[strings.length];
+    for (int i = 0; i < strings.length; i++) {
+      this.strings[i] = new StringSearch(strings[i]);
+    }
+    this.leadingStar = leadingStar;
+    this.trailingStar = trailingStar;
+    this.dotNL = dotNL;
+  }
+
+  // compile() returns a DotStarMatcher for the simplified regular
+  // expression |re|, or null if |re| is not literal strings separated by
+  // greedy .* with at least one .* in all.
+  static DotStarMatcher compile(Regexp re) {
+    if (re.op != Regexp.Op.CONCAT) {
+      return null;
+    }
+    Regexp[] subs = re.subs;
+    int i = 0;
+    int j = subs.length;
+    int dot = -1; // the flags of the first .*
+    boolean leadingStar = j > 0 && isDotStar(subs[0]);
+    if (leadingStar) {
+      dot = subs[i++].subs[0].op == Regexp.Op.ANY_CHAR ? 1 : 0;
+    }
+    boolean trailingStar = j > i && isDotStar(subs[j - 1]);
+    if (trailingStar) {
+      j--;
+    }
+    // Literals then alternate with .*, starting and ending with a literal.
+    if (i == j || (j - i) % 2 == 0) {
+      return null;
+    }
+    String[] strings = new String[(j - i + 1) / 2];
+    for (int k = i; k < j; k++) {
+      Regexp sub = subs[k];
+      if ((k - i) % 2 == 1) {
+        if (!isDotStar(sub)) {
+          return null;
+        }
+        continue;
+      }
+      if (sub.op != Regexp.Op.LITERAL) {
+        return null;
+      }
+      StringBuilder b = new StringBuilder();
+      for (int r : sub.runes) {
+        if (r >= Character.MIN_SURROGATE && r <= Character.MAX_SURROGATE) {
+          return null; // may be half of a surrogate pair in the text
+        }
+        if (r == '\n') {
+          return null; // spans lines
+        }
+        if ((sub.flags & RE2.FOLD_CASE) != 0 && Unicode.simpleFold(r) != r) {
+          return null;
+        }
+        b.appendCodePoint(r);
+      }
+      strings[(k - i) / 2] = b.toString();
+    }
+    for (int k = 0; k < subs.length; k++) {
+      if (isDotStar(subs[k])) {
+        int d = subs[k].subs[0].op == Regexp.Op.ANY_CHAR ? 1 : 0;
+        if (dot >= 0 && d != dot) {
+          return null; // a mix of . and (?s).
+        }
+        dot = d;
+      }
+    }
+    if (dot < 0) {
+      return null; // a single literal, for LiteralMatcher
+    }
+    return new DotStarMatcher(strings, leadingStar, trailingStar, dot == 1);
+  }
+
+  // Reports whether |re| is a greedy .*.
+  private static boolean isDotStar(Regexp re) {
+    return re.op == Regexp.Op.STAR
+        && (re.flags & RE2.NON_GREEDY) == 0
+        && (re.subs[0].op == Regexp.Op.ANY_CHAR || re.subs[0].op == Regexp.Op.ANY_CHAR_NOT_NL);
+  }
+
+  // find() returns the start of the leftmost match in |in| from |pos|,
+  // with the RE2 Anchor |anchor|, NO_MATCH if there is none, or FAILED if
+  // the other engines must settle the search.  Sets match[0] and match[1]
+  // to the start and end of the match, if it finds one.
+  int find(MachineInput in, int pos, int anchor, int[] match) {
+    if (anchor != RE2.UNANCHORED && pos != 0) {
+      return NO_MATCH;
+    }
+    int end = in.endPos();
+    boolean utf8 = in.isUTF8();
+    if (!utf8 && end > pos && (in.step(end - 1) & 7) > 1) {
+      return FAILED; // a surrogate pair straddles the end
+    }
+    for (int line = pos; ; ) {
+      // The first string from |line|, and the line it is in.
+      int first = index(in, 0, line, end);
+      if (first < 0) {
+        return utf8 && !in.isWellFormed(line, end) ? FAILED : NO_MATCH;
+      }
+      int lineStart = line;
+      int lineEnd = end;
+      if (!dotNL) {
+        // Only a leading .* needs the start of the line.
+        int nl = indexNewline(in, leadingStar ? line : first, end);
+        for (; nl >= 0; nl = indexNewline(in, nl + 1, end)) {
+          if (nl >= first) {
+            lineEnd = nl;
+            break;
+          }
+          lineStart = nl + 1;
+        }
+      }
+      // Where the text up to the end of the line is well-formed, Machine
+      // decodes the strings and newlines where they are found.
+      if (utf8 && !in.isWellFormed(line, lineEnd)) {
+        return FAILED;
+      }
+      if (anchor != RE2.UNANCHORED && (leadingStar ? lineStart : first) != pos) {
+        return NO_MATCH;
+      }
+      // The rest of the strings, each as early as it can be.
+      int last = strings.length - 1;
+      int at = first + length(in, 0);
+      boolean found = true;
+      for (int k = 1; k < last && found; k++) {
+        int i = index(in, k, at, lineEnd);
+        found = i >= 0;
+        at = i + length(in, k);
+      }
+      int matchEnd = lineEnd;
+      if (found && !trailingStar) {
+        // The last string, as late as it can be.
+        if (last > 0) {
+          at = index(in, last, at, lineEnd);
+          found = at >= 0;
+        } else {
+          at = first;
+        }
+        for (int i = at; i >= 0; i = index(in, last, i + 1, lineEnd)) {
+          at = i;
+        }
+        matchEnd = at + length(in, last);
+      } else if (found && last > 0) {
+        found = index(in, last, at, lineEnd) >= 0;
+      }
+      if (found && (anchor != RE2.ANCHOR_BOTH || matchEnd == end)) {
+        match[0] = leadingStar ? lineStart : first;
+        match[1] = matchEnd;
+        return match[0];
+      }
+      if (anchor != RE2.UNANCHORED || lineEnd == end) {
+        return NO_MATCH;
+      }
+      line = lineEnd + 1;
+    }
+  }
+
+  // Returns the position of the first occurrence of string |k| in |in| at
+  // or after |pos| that ends by |hi|, or -1 if there is none.
+  private int index(MachineInput in, int k, int pos, int hi) {
+    int i = in.index(strings[k], pos);
+    return i < 0 || pos + i + length(in, k) > hi ? -1 : pos + i;
+  }
+
+  // Returns the position of the first newline in |in| in [pos, hi), or -1
+  // if there is none.
+  private static int indexNewline(MachineInput in, int pos, int hi) {
+    int i = in.index(NEWLINE, pos);
+    return i < 0 || pos + i >= hi ? -1 : pos + i;
+  }
+
+  // Returns the length of string |k| in the units of |in|.
+  private int length(MachineInput in, int k) {
+    return in.isUTF8() ? strings[k].utf8.length : strings[k].s.length();
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A scanner that searches the lines of a UTF-8 file for a pattern, as grep does. The file is
+ * memory-mapped, a window of up to a gigabyte at a time, and the pattern matched against the
+ * mapped bytes where they are, with no {@code String}s made or bytes copied.
+ *
+ * <p>
+ * A line is the bytes up to the next {@code '\n'}, not including it, or up to the end of the file.
+ * Each line is matched on its own, as if it were all the input: {@code ^} and {@code \A} match at
+ * its start, and {@code $} and {@code \z} at its end. Matches do not span lines.
+ *
+ * <p>
+ * The {@link Listener} given to {@link #scan} hears of each line that matches, or with
+ * {@link #reportMatches reportMatches(true)}, of each match, with its offsets in the file; it may
+ * stop the scan early, as may a {@link #limit}. {@link #count} counts them instead.
+ *
+ * <p>
+ * The file must not change while it is scanned. A line may be at most {@link Integer#MAX_VALUE}
+ * bytes long. Instances of this class are not safe for use by multiple concurrent threads.
+ */
+@GwtIncompatible
+public final class FileScanner {
+
+  /** Receives the lines or matches that a {@link FileScanner} finds. */
+  public interface Listener {
+
+    /**
+     * Called for each matching line, in order, with the offsets of the line and of its first
+     * match; or with {@link FileScanner#reportMatches reportMatches(true)}, for each match, with
+     * the offsets of the match and of the line it is in. Offsets are in bytes from the start of the
+     * file, and ends are exclusive; the line's end is the offset of its {@code '\n'}, or of the end
+     * of the file.
+     *
+     * @return true to go on scanning, or false to stop
+     */
+    boolean found(long lineStart, long lineEnd, long start, long end);
+  }
+
+  // The most bytes mapped at a time, unless a line is longer.
+  private static final int WINDOW = 1 << 30;
+
+  private final Pattern pattern;
+  private final int window;
+
+  // What a scan skips ahead to, to the lines that may match: a literal that
+  // every match contains; or failing that, the matches in the window of
+  // the pattern compiled with MULTILINE, which start in every line that the
+  // pattern matches on its own, unless it has text anchors, which the line
+  // would satisfy and the window not.  If both are null, every line is
+  // matched.
+  private final StringSearch literal;
+  private final RE2 filter;
+
+  private boolean reportMatches;
+  private long limit = Long.MAX_VALUE;
+
+  // The state of the scan in progress.
+  private Listener listener;
+  private long count;
+  private boolean stopped;
+
+  FileScanner(Pattern pattern) {
+    this(pattern, WINDOW);
+  }
+
+  // This is visible for testing.
+  FileScanner(Pattern pattern, int window) {
+    this.pattern = pattern;
+    this.window = window;
+    RE2 re2 = pattern.re2();
+    StringSearch literal = null;
+    if (re2.required != null) {
+      literal = re2.required.literal;
+    } else if (!re2.prefix.isEmpty() && re2.prefixFold == null) {
+      literal = re2.prefixSearch;
+    }
+    if (literal != null && literal.s.indexOf('\n') < 0) {
+      this.literal = literal;
+      filter = null;
+    } else {
+      this.literal = null;
+      re2 = Pattern.compile(pattern.pattern(), pattern.flags() | Pattern.MULTILINE).re2();
+      filter = hasTextAnchors(re2.prog) ? null : re2;
+    }
+  }
+
+  private static boolean hasTextAnchors(Prog prog) {
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      Inst inst = prog.inst[pc];
+      if (inst.op == Inst.EMPTY_WIDTH
+          && (inst.arg & (Utils.EMPTY_BEGIN_TEXT | Utils.EMPTY_END_TEXT)) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the {@code Pattern} associated with this {@code FileScanner}. */
+  public Pattern pattern() {
+    return pattern;
+  }
+
+  /**
+   * Sets whether the listener hears of each match, or of each matching line once, as by default.
+   *
+   * @return the {@code FileScanner} itself, for chained method calls
+   */
+  public FileScanner reportMatches(boolean reportMatches) {
+    this.reportMatches = reportMatches;
+    return this;
+  }
+
+  /**
+   * Sets the most lines or matches that a scan finds before it stops, as {@code grep -m} does.
+   *
+   * @return the {@code FileScanner} itself, for chained method calls
+   * @throws IllegalArgumentException if {@code limit} is negative
+   */
+  public FileScanner limit(long limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("negative limit: " + limit);
+    }
+    this.limit = limit;
+    return this;
+  }
+
+  /**
+   * Scans a file, reporting the lines or matches found to {@code listener}.
+   *
+   * @return the number of lines or matches found
+   * @throws IOException if the file cannot be read, or has a line too long to map
+   */
+  public long scan(File file, Listener listener) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      return scan(raf.getChannel(), listener);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Scans the file of a channel from its start to its end, reporting the lines or matches found to
+   * {@code listener}. The channel's position is left unchanged.
+   *
+   * @return the number of lines or matches found
+   * @throws IOException if the file cannot be read, or has a line too long to map
+   */
+  public long scan(FileChannel channel, Listener listener) throws IOException {
+    this.listener = listener;
+    count = 0;
+    stopped = false;
+    try {
+      long size = channel.size();
+      for (long pos = 0; pos < size && !stopped && count < limit; ) {
+        // Map a window that ends at the end of a line, growing it until it
+        // does.
+        long n = Math.min(window, size - pos);
+        ByteBuffer b;
+        int len;
+        while (true) {
+          b = channel.map(FileChannel.MapMode.READ_ONLY, pos, n);
+          if (pos + n == size) {
+            len = (int) n;
+            break;
+          }
+          len = lastIndexOfNewline(b, 0, (int) n) + 1;
+          if (len > 0) {
+            break;
+          }
+          if (n == Integer.MAX_VALUE) {
+            throw new IOException("line at " + pos + " longer than " + n + " bytes");
+          }
+          n = Math.min(Math.min(2 * n, Integer.MAX_VALUE), size - pos);
+        }
+        b.limit(len);
+        scanWindow(b, pos);
+        pos += len;
+      }
+      return count;
+    } finally {
+      this.listener = null;
+    }
+  }
+
+  /**
+   * Counts the lines or matches in a file, as {@code grep -c} does.
+   *
+   * @return the number of lines or matches found
+   * @throws IOException if the file cannot be read, or has a line too long to map
+   */
+  public long count(File file) throws IOException {
+    return scan(file, null);
+  }
+
+  // scanWindow() finds the lines or matches in |b|, whole lines from
+  // |offset| in the file.
+  private void scanWindow(ByteBuffer b, long offset) {
+    int len = b.limit();
+    MatcherInput in = new ByteBufferMatcherInput(b);
+    MachineInput bytes = in.machineInput(len);
+    int[] match = new int[2];
+    for (int i = 0; i < len && !stopped && count < limit; ) {
+      int lineStart = i;
+      if (literal != null) {
+        // Skip to the line of the next occurrence of the literal.
+        int j = bytes.index(literal, i);
+        if (j < 0) {
+          return;
+        }
+        lineStart = lastIndexOfNewline(b, i, i + j) + 1;
+      } else if (filter != null) {
+        // Skip to the line of the next match in the window, if any.
+        if (!filter.match(in, i, len, RE2.UNANCHORED, match, 1)) {
+          return;
+        }
+        lineStart = lastIndexOfNewline(b, i, match[0]) + 1;
+        if (lineStart == len) {
+          return; // no line after the last '\n'
+        }
+      }
+      int lineEnd = indexOfNewline(b, lineStart, len);
+      scanLine(b, lineStart, lineEnd, offset);
+      i = lineEnd + 1;
+    }
+  }
+
+  // scanLine() finds the matches in b[lineStart:lineEnd], a line at |offset|
+  // in the file.
+  private void scanLine(ByteBuffer b, int lineStart, int lineEnd, long offset) {
+    ByteBuffer line = b.duplicate();
+    line.position(lineStart);
+    line.limit(lineEnd);
+    MatcherInput in = new ByteBufferMatcherInput(line);
+    long start = offset + lineStart;
+    long end = offset + lineEnd;
+    if (reportMatches) {
+      Matcher m = pattern.matcher(in);
+      while (!stopped && count < limit && m.find()) {
+        found(start, end, start + m.start(), start + m.end());
+      }
+    } else {
+      int[] match = new int[2];
+      if (pattern.re2().match(in, 0, lineEnd - lineStart, RE2.UNANCHORED, match, 1)) {
+        found(start, end, start + match[0], start + match[1]);
+      }
+    }
+  }
+
+  private void found(long lineStart, long lineEnd, long start, long end) {
+    count++;
+    if (listener != null && !listener.found(lineStart, lineEnd, start, end)) {
+      stopped = true;
+    }
+  }
+
+  // Returns the index of the first '\n' in b[i:end], or |end|.
+  private static int indexOfNewline(ByteBuffer b, int i, int end) {
+    for (; i < end; i++) {
+      if (b.get(i) == '\n') {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  // Returns the index of the last '\n' in b[start:end], or |start| - 1.
+  private static int lastIndexOfNewline(ByteBuffer b, int start, int end) {
+    int i = end - 1;
+    for (; i >= start; i--) {
+      if (b.get(i) == '\n') {
+        break;
+      }
+    }
+    return i;
+  }
+}
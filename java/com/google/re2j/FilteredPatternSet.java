@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A collection of patterns that are matched against an input together, searching the input with
+ * only those patterns that can possibly match it.
+ *
+ * <p>
+ * When the set is compiled, the literal strings that the inputs matched by each pattern must
+ * contain, its <i>atoms</i>, are extracted from the pattern, as a boolean formula: for example,
+ * {@code hello.*world|goodbye} can only match inputs that contain either both {@code hello} and
+ * {@code world}, or {@code goodbye}. Matching an input first finds all the atoms that the input
+ * contains in a single pass over it, then searches the input with the patterns whose formula holds,
+ * skipping the others. With many patterns, most of which do not match most inputs, this is much
+ * faster than searching with each pattern in turn.
+ *
+ * <p>
+ * Atoms are case-insensitive. Patterns that require no atom, such as {@code \d+}, or only atoms
+ * shorter than the minimum atom length, are searched for every input.
+ *
+ * <pre>
+ * FilteredPatternSet set = new FilteredPatternSet(3);
+ * set.add(Pattern.compile("GET /admin/\\w+"));
+ * set.add(Pattern.compile("(?i)select .* from"));
+ * set.compile();
+ * int[] matches = set.match(line); // the indexes of the patterns that match
+ * </pre>
+ *
+ * @see RegexSet
+ */
+public final class FilteredPatternSet {
+
+  // The minimum length of an atom, in runes.
+  private final int minAtomLength;
+
+  // The patterns, in order of addition.
+  private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+  // The prefilter of each pattern.
+  private final List<Prefilter> prefilters = new ArrayList<Prefilter>();
+
+  // The atoms of all the patterns, indexed as in Prefilter.index; set by
+  // compile().
+  private List<String> atoms;
+
+  // The automaton finding the atoms in an input; null until compiled.
+  private volatile AhoCorasick atomMatcher;
+
+  /**
+   * Creates an empty set that extracts atoms of any length.
+   */
+  public FilteredPatternSet() {
+    this(0);
+  }
+
+  /**
+   * Creates an empty set that extracts atoms of at least the given length. Short atoms are found in
+   * most inputs, so requiring them seldom spares any search: a minimum length of 3 or so keeps the
+   * formulas and the first pass smaller.
+   *
+   * @param minAtomLength the minimum length of an atom, in Unicode code points
+   * @throws IllegalArgumentException if {@code minAtomLength} is negative
+   */
+  public FilteredPatternSet(int minAtomLength) {
+    if (minAtomLength < 0) {
+      throw new IllegalArgumentException("negative minimum atom length: " + minAtomLength);
+    }
+    this.minAtomLength = minAtomLength;
+  }
+
+  /**
+   * Adds a pattern to the set.
+   *
+   * @param pattern the pattern
+   * @return the index of the pattern in the set, which is the number of patterns added before it
+   * @throws IllegalStateException if the set has been compiled
+   */
+  public synchronized int add(Pattern pattern) {
+    if (atomMatcher != null) {
+      throw new IllegalStateException("FilteredPatternSet already compiled");
+    }
+    prefilters.add(Prefilter.build(pattern.simplifiedRegexp(), minAtomLength));
+    patterns.add(pattern);
+    return patterns.size() - 1;
+  }
+
+  /**
+   * Compiles the set, after which no more patterns can be added.
+   *
+   * @throws IllegalStateException if the set has already been compiled
+   */
+  public synchronized void compile() {
+    if (atomMatcher != null) {
+      throw new IllegalStateException("FilteredPatternSet already compiled");
+    }
+    Map<String, Integer> indexes = new LinkedHashMap<String, Integer>();
+    for (Prefilter p : prefilters) {
+      indexAtoms(p, indexes);
+    }
+    atoms = Collections.unmodifiableList(new ArrayList<String>(indexes.keySet()));
+    int[][] strings = new int[atoms.size()][];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = Utils.stringToRunes(atoms.get(i));
+    }
+    atomMatcher = new AhoCorasick(strings);
+  }
+
+  private static void indexAtoms(Prefilter p, Map<String, Integer> indexes) {
+    if (p.op == Prefilter.ATOM) {
+      Integer index = indexes.get(p.atom);
+      if (index == null) {
+        index = indexes.size();
+        indexes.put(p.atom, index);
+      }
+      p.index = index;
+    } else if (p.subs != null) {
+      for (Prefilter sub : p.subs) {
+        indexAtoms(sub, indexes);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of patterns in the set.
+   */
+  public synchronized int size() {
+    return patterns.size();
+  }
+
+  /**
+   * Returns the pattern at the given index.
+   *
+   * @param index the index returned by {@link #add}
+   * @throws IndexOutOfBoundsException if there is no such pattern
+   */
+  public synchronized Pattern pattern(int index) {
+    return patterns.get(index);
+  }
+
+  /**
+   * Returns the atoms extracted from all the patterns, without duplicates. Atoms are in lower case,
+   * or more precisely, each character stands for all those that are equal to it ignoring case.
+   *
+   * @throws IllegalStateException if the set has not been compiled
+   */
+  public List<String> atoms() {
+    checkCompiled();
+    return atoms;
+  }
+
+  /**
+   * Returns the formula over atoms that the inputs matched by a pattern satisfy, for debugging. In
+   * the formula, a conjunction is written as the space-separated list of its terms, a disjunction as
+   * the parenthesized, {@code |}-separated list of its terms; the empty string holds for all inputs.
+   * For example, the formula of {@code hello.*world|goodbye} is {@code (hello world|goodbye)}.
+   *
+   * @param index the index returned by {@link #add}
+   * @throws IndexOutOfBoundsException if there is no such pattern
+   */
+  public synchronized String prefilter(int index) {
+    return prefilters.get(index).toString();
+  }
+
+  /**
+   * Returns the indexes, in increasing order, of the patterns whose atoms the input contains: those
+   * that may match it. Does not search the input with the patterns.
+   *
+   * @param input the input string
+   * @throws IllegalStateException if the set has not been compiled
+   */
+  public int[] candidates(CharSequence input) {
+    return toIndexes(candidates(MachineInput.fromUTF16(input)));
+  }
+
+  /**
+   * Returns the indexes, in increasing order, of the patterns whose atoms the input contains: those
+   * that may match it. Does not search the input with the patterns. If the input is not well-formed
+   * UTF-8, all the patterns may match it: a literal that {@link Matcher#find()} finds by searching
+   * the bytes may be hidden from the atom search, which decodes runes.
+   *
+   * @param input the input, in UTF-8
+   * @throws IllegalStateException if the set has not been compiled
+   */
+  public int[] candidates(byte[] input) {
+    return toIndexes(candidates(MachineInput.fromUTF8(input)));
+  }
+
+  /**
+   * Returns the indexes, in increasing order, of the patterns that match somewhere in the input, as
+   * {@link Matcher#find()} would find.
+   *
+   * @param input the input string
+   * @throws IllegalStateException if the set has not been compiled
+   */
+  public int[] match(CharSequence input) {
+    return match(MachineInput.fromUTF16(input), MatcherInput.utf16(input));
+  }
+
+  /**
+   * Returns the indexes, in increasing order, of the patterns that match somewhere in the input, as
+   * {@link Matcher#find()} would find.
+   *
+   * @param input the input, in UTF-8
+   * @throws IllegalStateException if the set has not been compiled
+   */
+  public int[] match(byte[] input) {
+    return match(MachineInput.fromUTF8(input), MatcherInput.utf8(input));
+  }
+
+  private int[] match(MachineInput in, MatcherInput input) {
+    boolean[] matched = candidates(in);
+    for (int i = 0; i < matched.length; i++) {
+      if (matched[i]) {
+        matched[i] = patterns.get(i).matcher(input).find();
+      }
+    }
+    return toIndexes(matched);
+  }
+
+  private AhoCorasick checkCompiled() {
+    AhoCorasick atomMatcher = this.atomMatcher;
+    if (atomMatcher == null) {
+      throw new IllegalStateException("FilteredPatternSet not compiled");
+    }
+    return atomMatcher;
+  }
+
+  // candidates() returns which patterns may match |in|.
+  private boolean[] candidates(MachineInput in) {
+    AhoCorasick atomMatcher = checkCompiled();
+    if (!in.isWellFormed(0, in.endPos())) {
+      // The runes decoded may straddle an atom that is there all the same.
+      boolean[] all = new boolean[prefilters.size()];
+      Arrays.fill(all, true);
+      return all;
+    }
+    boolean[] contains = new boolean[atoms.size()];
+    int ncontains = 0;
+    // Find the atoms in one pass, stopping early if all are found.
+    for (int pos = 0, s = 0; ncontains < contains.length; ) {
+      int r = in.step(pos);
+      if (r == MachineInput.EOF) {
+        break;
+      }
+      pos += r & 7;
+      s = atomMatcher.next(s, Prefilter.fold(r >> 3));
+      // Once an atom has been found, so have those along its dictionary
+      // chain.
+      for (int t = atomMatcher.output(s);
+          t >= 0 && !contains[atomMatcher.string(t)];
+          t = atomMatcher.dict(t)) {
+        contains[atomMatcher.string(t)] = true;
+        ncontains++;
+      }
+    }
+    boolean[] candidates = new boolean[prefilters.size()];
+    for (int i = 0; i < candidates.length; i++) {
+      candidates[i] = prefilters.get(i).eval(contains);
+    }
+    return candidates;
+  }
+
+  private static int[] toIndexes(boolean[] set) {
+    int n = 0;
+    for (boolean b : set) {
+      if (b) {
+        n++;
+      }
+    }
+    int[] indexes = new int[n];
+    for (int i = 0, j = 0; i < set.length; i++) {
+      if (set[i]) {
+        indexes[j++] = i;
+      }
+    }
+    return indexes;
+  }
+}
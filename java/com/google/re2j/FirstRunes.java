@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// FirstRunes is the set of runes that can start a match of a program, such
+// as [0-9a-fA-F] for [0-9a-f]{32} or [bf] for (foo|bar|baz)\d, for programs
+// that have no literal prefix to skip ahead to.
+//
+// A thread that Machine adds where the rune is not in the set dies at once,
+// so when no threads are running Machine steps over those runes without
+// adding threads (see MachineInput.indexFirst).  Since it stops at each rune
+// it would have stopped at, its results do not change, even on input that
+// is not well-formed.
+final class FirstRunes {
+
+  private final long[] latin1 = new long[4]; // bitset of the runes below 256
+  private final int[] ranges; // sorted disjoint [lo, hi] pairs above 255
+  final ByteScan.Set ascii; // the runes below 128, for ByteScan.indexIn
+
+  private FirstRunes(int[] ranges) {
+    int n = 0;
+    int[] above = new int[ranges.length];
+    for (int i = 0; i < ranges.length; i += 2) {
+      int lo = ranges[i];
+      int hi = ranges[i + 1];
+      for (int r = lo; r <= hi && r < 256; r++) {
+        latin1[r >>> 6] |= 1L << r;
+      }
+      if (hi >= 256) {
+        above[n++] = Math.max(lo, 256);
+        above[n++] = hi;
+      }
+    }
+    this.ranges = Arrays.copyOf(above, n);
+    this.ascii = new ByteScan.Set(latin1[0], latin1[1]);
+  }
+
+  // assign() computes the first runes of |prog|, a program over runes, and
+  // sets prog.first to them.  Leaves prog.first null if the program can
+  // match without consuming a rune, or can start with any rune.
+  static void assign(Prog prog) {
+    CharClass cc = new CharClass();
+    boolean[] visited = new boolean[prog.numInst()];
+    int[] stack = new int[prog.numInst()];
+    int nstack = 0;
+    stack[nstack++] = prog.start;
+    visited[prog.start] = true;
+    while (nstack > 0) {
+      Inst inst = prog.inst[stack[--nstack]];
+      switch (inst.op) {
+        case Inst.ALT:
+        case Inst.ALT_MATCH:
+          if (!visited[inst.arg]) {
+            visited[inst.arg] = true;
+            stack[nstack++] = inst.arg;
+          }
+          if (!visited[inst.out]) {
+            visited[inst.out] = true;
+            stack[nstack++] = inst.out;
+          }
+          break;
+        case Inst.NOP:
+        case Inst.CAPTURE:
+        case Inst.EMPTY_WIDTH:
+          if (!visited[inst.out]) {
+            visited[inst.out] = true;
+            stack[nstack++] = inst.out;
+          }
+          break;
+        case Inst.FAIL:
+          break;
+        case Inst.RUNE1:
+          cc.appendLiteral(inst.runes[0], 0);
+          break;
+        case Inst.RUNE:
+          if (inst.runes.length == 1) {
+            cc.appendLiteral(inst.runes[0], 0);
+          } else {
+            cc.appendClass(inst.runes);
+          }
+          break;
+        default: // MATCH, RUNE_ANY, RUNE_ANY_NOT_NL
+          return;
+      }
+    }
+    prog.first = new FirstRunes(cc.cleanClass().toArray());
+  }
+
+  // Returns whether |r|, which must not be negative, can start a match.
+  boolean contains(int r) {
+    if (r < 256) {
+      return (latin1[r >>> 6] & (1L << r)) != 0;
+    }
+    int lo = 0;
+    int hi = ranges.length / 2;
+    while (lo < hi) {
+      int m = (lo + hi) >>> 1;
+      if (r < ranges[2 * m]) {
+        hi = m;
+      } else if (r > ranges[2 * m + 1]) {
+        lo = m + 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+// A FoldedPrefix is a literal prefix that is matched ignoring case, such as
+// "exception: " in (?i)exception: \w+, for MachineInput.index to skip ahead
+// to as it does to prefixes that are matched exactly.
+//
+// Each rune of the prefix matches the runes of its simple case folding
+// orbit, as Inst.matchRune does.  The search looks for the leading bytes or
+// chars of the first rune's orbit, and then compares ASCII runes directly,
+// decoding only the others.
+final class FoldedPrefix {
+
+  // For each rune of the prefix, the runes of its orbit, and the ASCII ones
+  // among them, or -1: at most two.
+  private final int[][] orbits;
+  private final int[] asciiRune;
+  private final int[] asciiOther;
+
+  // Whether each byte leads the UTF-8 encoding of a rune that the first
+  // rune of the prefix matches.
+  private final boolean[] firstByte = new boolean[256];
+
+  // The leading UTF-16 chars of the non-ASCII runes that the first rune of
+  // the prefix matches.
+  private final char[] firstChars;
+
+  FoldedPrefix(String prefix) {
+    int n = prefix.codePointCount(0, prefix.length());
+    orbits = new int[n][];
+    asciiRune = new int[n];
+    asciiOther = new int[n];
+    for (int i = 0, k = 0; k < n; k++) {
+      int r0 = prefix.codePointAt(i);
+      i += Character.charCount(r0);
+      int size = 1;
+      for (int r = Unicode.simpleFold(r0); r != r0; r = Unicode.simpleFold(r)) {
+        size++;
+      }
+      int[] orbit = new int[size];
+      orbit[0] = r0;
+      for (int j = 1; j < size; j++) {
+        orbit[j] = Unicode.simpleFold(orbit[j - 1]);
+      }
+      orbits[k] = orbit;
+      asciiRune[k] = -1;
+      asciiOther[k] = -1;
+      for (int r : orbit) {
+        if (r <= Unicode.MAX_ASCII) {
+          if (asciiRune[k] < 0) {
+            asciiRune[k] = r;
+          }
+          asciiOther[k] = r;
+        }
+      }
+    }
+    int m = 0;
+    char[] chars = new char[orbits[0].length];
+    for (int r : orbits[0]) {
+      if (r <= Unicode.MAX_ASCII) {
+        firstByte[r] = true;
+      } else {
+        firstByte[leadByteUTF8(r)] = true;
+        chars[m++] = Character.toChars(r)[0];
+      }
+    }
+    firstChars = new char[m];
+    System.arraycopy(chars, 0, firstChars, 0, m);
+  }
+
+  // Returns the first byte of the UTF-8 encoding of |r|, which is not ASCII.
+  private static int leadByteUTF8(int r) {
+    if (r < 0x800) {
+      return 0xC0 | r >> 6;
+    } else if (r < 0x10000) {
+      return 0xE0 | r >> 12;
+    }
+    return 0xF0 | r >> 18;
+  }
+
+  private static boolean contains(int[] orbit, int r) {
+    for (int f : orbit) {
+      if (f == r) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Returns whether the first rune of the prefix matches |r|.
+  boolean matchesFirst(int r) {
+    return contains(orbits[0], r);
+  }
+
+  // Returns the most bytes that the runes matching the prefix decode from.
+  int maxLengthUTF8() {
+    return 4 * orbits.length;
+  }
+
+  // indexUTF8() returns the index of the first byte of b[i:end] where |in|,
+  // whose bytes b[start:end] are, has the prefix, or -1.
+  int indexUTF8(MachineInput in, byte[] b, int start, int i, int end) {
+    for (; i < end; i++) {
+      if (firstByte[b[i] & 0xff] && matchesUTF8(in, b, start, i, end)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean matchesUTF8(MachineInput in, byte[] b, int start, int i, int end) {
+    for (int k = 0; k < orbits.length; k++) {
+      if (i >= end) {
+        return false;
+      }
+      int c = b[i];
+      if (c >= 0) {
+        if (c != asciiRune[k] && c != asciiOther[k]) {
+          return false;
+        }
+        i++;
+      } else {
+        int r = in.step(i - start);
+        if (r == MachineInput.EOF || !contains(orbits[k], r >> 3)) {
+          return false;
+        }
+        i += r & 7;
+      }
+    }
+    return true;
+  }
+
+  // indexUTF16() returns the index of the first char of s[i:end] where
+  // |in|, whose chars s[start:end] are, has the prefix, or -1.
+  int indexUTF16(MachineInput in, CharSequence s, int start, int i, int end) {
+    int a = asciiRune[0];
+    int b = asciiOther[0];
+    for (; i < end; i++) {
+      char c = s.charAt(i);
+      if (c == a || c == b || (c > Unicode.MAX_ASCII && isFirstChar(c))) {
+        if (matchesUTF16(in, s, start, i, end)) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private boolean isFirstChar(char c) {
+    for (char f : firstChars) {
+      if (f == c) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean matchesUTF16(MachineInput in, CharSequence s, int start, int i, int end) {
+    for (int k = 0; k < orbits.length; k++) {
+      if (i >= end) {
+        return false;
+      }
+      char c = s.charAt(i);
+      if (c <= Unicode.MAX_ASCII) {
+        if (c != asciiRune[k] && c != asciiOther[k]) {
+          return false;
+        }
+        i++;
+      } else {
+        int r = in.step(i - start);
+        if (!contains(orbits[k], r >> 3)) {
+          return false;
+        }
+        i += r & 7;
+      }
+    }
+    return true;
+  }
+}
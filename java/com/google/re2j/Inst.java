@@ -27,13 +27,17 @@ final class Inst {
   public static final int RUNE1 = 9;
   public static final int RUNE_ANY = 10;
   public static final int RUNE_ANY_NOT_NL = 11;
+  public static final int BYTE = 12; // only in programs from Compiler.compileUTF8
 
   int op;
   int out; // all but MATCH, FAIL
-  int arg; // ALT, ALT_MATCH, CAPTURE, EMPTY_WIDTH
+  int arg; // ALT, ALT_MATCH, CAPTURE, EMPTY_WIDTH; MATCH in a RegexSet: pattern index
   int[] runes; // length==1 => exact match
   // otherwise a list of [lo,hi] pairs.  hi is *inclusive*.
+  // For BYTE, always a list of [lo,hi] pairs of byte values.
   // REVIEWERS: why not half-open intervals?
+  long[] classes; // RUNE: bitset of the prog.classes it matches; null if none
+
 
   Inst(int op) {
     this.op = op;
@@ -43,22 +47,20 @@ final class Inst {
     return RUNE <= op && op <= RUNE_ANY_NOT_NL;
   }
 
+  // matchClass() returns true if the instruction matches the runes of class
+  // |cls| of prog.classes.  It should only be called when classes != null.
+  boolean matchClass(int cls) {
+    return (classes[cls >>> 6] & (1L << cls)) != 0;
+  }
+
   // MatchRune returns true if the instruction matches (and consumes) r.
   // It should only be called when op == InstRune.
   boolean matchRune(int r) {
     // Special case: single-rune slice is from literal string, not char
-    // class.
+    // class.  Case-insensitive runes are classes of their folding orbits
+    // (see Compiler.foldOrbit), so no case folding happens here.
     if (runes.length == 1) {
-      int r0 = runes[0];
-
-      // If this pattern is case-insensitive, apply Unicode case folding to compare the two runes.
-      // Note that this may result in a case-folding loop when executed on a JVM newer than the version used
-      // to generate Unicode data for re2j, so attempt to reduce the chance of that occurring
-      // by performing case folding on |r0| from the pattern rather than |r| from the input.
-      if ((arg & RE2.FOLD_CASE) != 0) {
-        return Unicode.equalsIgnoreCase(r0, r);
-      }
-      return r == r0;
+      return r == runes[0];
     }
 
     // Peek at the first few pairs.
@@ -88,6 +90,20 @@ final class Inst {
     return false;
   }
 
+  // matchByte() returns true if the instruction matches (and consumes) the
+  // byte value |b|.  It should only be called when op == BYTE.
+  boolean matchByte(int b) {
+    for (int j = 0; j < runes.length; j += 2) {
+      if (b < runes[j]) {
+        return false;
+      }
+      if (b <= runes[j + 1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public String toString() {
     switch (op) {
@@ -120,11 +136,38 @@ final class Inst {
         return "any -> " + out;
       case RUNE_ANY_NOT_NL:
         return "anynotnl -> " + out;
+      case BYTE:
+        return "byte " + escapeBytes(runes) + " -> " + out;
       default:
         throw new IllegalStateException("unhandled case in Inst.toString");
     }
   }
 
+  // Returns the byte ranges |ranges| in hex, as in "[00-7f c0-df]".
+  private static String escapeBytes(int[] ranges) {
+    StringBuilder out = new StringBuilder();
+    out.append('[');
+    for (int j = 0; j < ranges.length; j += 2) {
+      if (j > 0) {
+        out.append(' ');
+      }
+      appendHexByte(out, ranges[j]);
+      if (ranges[j + 1] != ranges[j]) {
+        out.append('-');
+        appendHexByte(out, ranges[j + 1]);
+      }
+    }
+    out.append(']');
+    return out.toString();
+  }
+
+  private static void appendHexByte(StringBuilder out, int b) {
+    if (b < 0x10) {
+      out.append('0');
+    }
+    out.append(Integer.toHexString(b));
+  }
+
   // Returns an RE2 expression matching exactly |runes|.
   private static String escapeRunes(int[] runes) {
     StringBuilder out = new StringBuilder();
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+// A LiteralMatcher matches a regular expression that is a single literal
+// string, possibly case-folded and anchored at the beginning or end of the
+// text, such as Pattern.quote(s), by searching the input for the string:
+// no program runs, no threads are allocated, and no captures are copied.
+//
+// Machine's results are defined on text that is not well-formed too, where
+// the bytes of the string need not be where its runes are decoded, and
+// where Machine skips ahead to the literal prefix only at some positions.
+// A LiteralMatcher gives up on the searches whose result it cannot be sure
+// of, which the other engines then settle.
+final class LiteralMatcher {
+
+  // Results of find() other than the start of a match.
+  static final int NO_MATCH = -1;
+  static final int FAILED = -2; // the result depends on malformed text
+
+  private final RE2 re2;
+  private final int[] runes; // the string
+  private final int[] folded; // for each rune, the other case, or the rune
+  private final boolean beginText; // whether the regexp starts with \A or ^
+  private final boolean endText; // whether the regexp ends with \z or $
+
+  // Whether unanchored searches look for re2.prefix, which is then the
+  // whole string; otherwise they compare the string at each rune.
+  private final boolean searchPrefix;
+
+  private final int utf16Length; // length of the string in chars
+  private final int utf8Length; // length of the string in bytes
+
+  private LiteralMatcher(
+      RE2 re2, int[] runes, int[] folded, boolean beginText, boolean endText, boolean fold) {
+    this.re2 = re2;
+    this.runes = runes;
+    this.folded = folded;
+    this.beginText = beginText;
+    this.endText = endText;
+    int n16 = 0;
+    int n8 = 0;
+    StringBuilder b = new StringBuilder();
+    for (int r : runes) {
+      n16 += Character.charCount(r);
+      n8 += runeLenUTF8(r);
+      b.appendCodePoint(r);
+    }
+    this.utf16Length = n16;
+    this.utf8Length = n8;
+    this.searchPrefix = !fold && !beginText && re2.prefix.equals(b.toString());
+  }
+
+  // compile() returns a LiteralMatcher for |re2|, whose simplified regular
+  // expression is |re|, or null if |re| is not an optionally anchored
+  // literal string without captures.
+  static LiteralMatcher compile(RE2 re2, Regexp re) {
+    Regexp[] subs = re.op == Regexp.Op.CONCAT ? re.subs : new Regexp[] {re};
+    int i = 0;
+    int j = subs.length;
+    boolean beginText = j > 0 && subs[0].op == Regexp.Op.BEGIN_TEXT;
+    if (beginText) {
+      i++;
+    }
+    boolean endText = j > i && subs[j - 1].op == Regexp.Op.END_TEXT;
+    if (endText) {
+      j--;
+    }
+    int n = 0;
+    for (int k = i; k < j; k++) {
+      if (subs[k].op != Regexp.Op.LITERAL) {
+        return null;
+      }
+      n += subs[k].runes.length;
+    }
+    if (n == 0) {
+      return null;
+    }
+    int[] runes = new int[n];
+    int[] folded = new int[n];
+    boolean fold = false;
+    n = 0;
+    for (int k = i; k < j; k++) {
+      for (int r : subs[k].runes) {
+        if (r >= Character.MIN_SURROGATE && r <= Character.MAX_SURROGATE) {
+          return null; // may be half of a surrogate pair in the text
+        }
+        int f = r;
+        if ((subs[k].flags & RE2.FOLD_CASE) != 0) {
+          f = Unicode.simpleFold(r);
+          // Only runes with a single other case, of the same length.
+          if (f != r
+              && (Unicode.simpleFold(f) != r
+                  || Character.charCount(f) != Character.charCount(r)
+                  || runeLenUTF8(f) != runeLenUTF8(r))) {
+            return null;
+          }
+          fold |= f != r;
+        }
+        runes[n] = r;
+        folded[n++] = f;
+      }
+    }
+    return new LiteralMatcher(re2, runes, folded, beginText, endText, fold);
+  }
+
+  // Returns the length of the UTF-8 encoding of rune |r|.
+  private static int runeLenUTF8(int r) {
+    return r < 0x80 ? 1 : r < 0x800 ? 2 : r < 0x10000 ? 3 : 4;
+  }
+
+  // find() returns the start of the leftmost match in |in| from |pos|,
+  // with the RE2 Anchor |anchor|, NO_MATCH if there is none, or FAILED if
+  // the other engines must settle the search.  The match ends at
+  // matchEnd(in, start).
+  int find(MachineInput in, int pos, int anchor) {
+    if (anchor != RE2.UNANCHORED || beginText) {
+      // Machine does not even try |pos| if it skips ahead to the prefix.
+      if (pos != 0 || re2.prefixSkip(in, pos) != 0) {
+        return NO_MATCH;
+      }
+      int end = matchEnd(in, pos);
+      if (end < 0
+          || (anchor == RE2.ANCHOR_BOTH && end != in.endPos())
+          || (endText && (in.context(end) & Utils.EMPTY_END_TEXT) == 0)) {
+        return NO_MATCH;
+      }
+      return pos;
+    }
+    int end = in.endPos();
+    if (endText) {
+      // Only the string ending at the end of the text can match.
+      boolean utf8 = in.isUTF8();
+      int start = end - (utf8 ? utf8Length : utf16Length);
+      if (utf8 ? !in.isWellFormed(pos, end) : end > pos && (in.step(end - 1) & 7) > 1) {
+        return FAILED; // or a surrogate pair straddles the end
+      }
+      if (start < pos
+          || (in.context(end) & Utils.EMPTY_END_TEXT) == 0
+          || (utf8 && !in.isWellFormed(start, end)) // |start| is within a rune
+          || matchEnd(in, start) != end) {
+        return NO_MATCH;
+      }
+      return start;
+    }
+    if (searchPrefix) {
+      int i = in.index(re2, pos);
+      int start = i < 0 ? end : pos + i;
+      // Where the text before the occurrence is well-formed, no match that
+      // Machine would find starts there.
+      if (!in.isWellFormed(pos, start)) {
+        return FAILED;
+      }
+      // The occurrence may run past the end of the input, where Machine
+      // stops, except in the second half of a surrogate pair.
+      return i < 0 || matchEnd(in, start) < 0 ? NO_MATCH : start;
+    }
+    // Case-folded: try every rune, as Machine does, but for skipping ahead
+    // to the prefix, if any.  Where the text is well-formed, the prefix
+    // bytes are where its runes are, so Machine finds the same match.
+    boolean exact = re2.prefix.isEmpty();
+    int r0 = runes[0];
+    int f0 = folded[0];
+    for (int start = pos; ; ) {
+      int r = in.step(start);
+      if (r == MachineInput.EOF) {
+        return exact || in.isWellFormed(pos, end) ? NO_MATCH : FAILED;
+      }
+      int c = r >> 3;
+      if (c == r0 || c == f0) {
+        int e = matchEnd(in, start);
+        if (e >= 0) {
+          return exact || in.isWellFormed(pos, e) ? start : FAILED;
+        }
+      }
+      start += r & 7;
+    }
+  }
+
+  // matchEnd() returns where the runes of the string, compared ignoring
+  // case where it is case-folded, end in |in| from |pos|, or -1 if they are
+  // not there.
+  int matchEnd(MachineInput in, int pos) {
+    for (int i = 0; i < runes.length; i++) {
+      int r = in.step(pos);
+      int c = r >> 3;
+      if (r == MachineInput.EOF || (c != runes[i] && c != folded[i])) {
+        return -1;
+      }
+      pos += r & 7;
+    }
+    return pos;
+  }
+}
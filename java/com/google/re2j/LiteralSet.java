@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A LiteralSet matches a regular expression that is a union of literal
+// strings, such as foo|bar|baz, with an Aho-Corasick automaton rather than a
+// program: it finds the strings that end at each position of the input in a
+// single step, however many strings there are, where Machine would run one
+// thread per string.
+//
+// The strings are kept in priority order, the order in which a backtracking
+// search would try them, so that the leftmost-first match is the first one
+// of those that start leftmost, as Machine would find it.  Each string
+// stands for one path through the regular expression, so it also records
+// where that path enters and leaves each capture: the submatches are known
+// once the string is.
+final class LiteralSet {
+
+  // Unions of more strings are left to the other engines.
+  static final int MAX_STRINGS = 1 << 16;
+
+  // Maximum total length of the strings, in runes.
+  static final int MAX_RUNES = 1 << 20;
+
+  // Marks a case-folded rune in the strings built by expand().
+  private static final int FOLD = 1 << 21;
+
+  private final RE2 re2;
+  private final boolean hasPrefix; // whether re2 has a literal prefix
+
+  private final AhoCorasick automaton;
+
+  // Whether runes are compared by their case folding orbit (see foldKey()):
+  // whether some string is case-folded.
+  private final boolean fold;
+
+  private final int maxLength; // length of the longest string, in runes
+  private final int[] keyLength; // length of each key, in runes
+
+  // For each key, the indexes of the strings with that key, in priority
+  // order.
+  private final int[][] keyStrings;
+
+  // For each string, the runes that must match exactly, or -1 where they
+  // are case-folded; null if the key of the string suffices.
+  private final int[][] exact;
+
+  // For each string, the submatch offsets in runes from its start, indexed
+  // as in the submatch array, or -1 for captures that it does not enter.
+  private final int[][] cap;
+
+  // A string that a regular expression matches, and its submatch offsets.
+  private static final class Literal {
+    final int[] runes;
+    final int[] cap;
+
+    Literal(int[] runes, int ncap) {
+      this.runes = runes;
+      this.cap = new int[ncap];
+      Arrays.fill(cap, -1);
+    }
+  }
+
+  private LiteralSet(RE2 re2, List<Literal> literals) {
+    this.re2 = re2;
+    this.hasPrefix = !re2.prefix.isEmpty();
+    List<int[]> strings = new ArrayList<int[]>(literals.size());
+    cap = new int[literals.size()][];
+    boolean fold = false;
+    for (int i = 0; i < literals.size(); i++) {
+      Literal l = literals.get(i);
+      strings.add(l.runes);
+      cap[i] = l.cap;
+      for (int r : l.runes) {
+        fold |= (r & FOLD) != 0;
+      }
+    }
+    this.fold = fold;
+
+    // Strings with the same key share an automaton string.
+    Map<String, Integer> keys = new HashMap<String, Integer>();
+    List<int[]> keyRunes = new ArrayList<int[]>();
+    List<List<Integer>> stringsOfKey = new ArrayList<List<Integer>>();
+    exact = new int[strings.size()][];
+    int maxLength = 0;
+    for (int i = 0; i < strings.size(); i++) {
+      int[] s = strings.get(i);
+      int[] key = new int[s.length];
+      for (int j = 0; j < s.length; j++) {
+        int r = s[j] & ~FOLD;
+        key[j] = fold ? foldKey(r) : r;
+      }
+      if (fold) {
+        for (int r : s) {
+          if ((r & FOLD) == 0 && Unicode.simpleFold(r) != r) {
+            exact[i] = new int[s.length];
+            for (int j = 0; j < s.length; j++) {
+              exact[i][j] = (s[j] & FOLD) != 0 ? -1 : s[j];
+            }
+            break;
+          }
+        }
+      }
+      StringBuilder b = new StringBuilder();
+      for (int r : key) {
+        b.appendCodePoint(r);
+      }
+      Integer k = keys.get(b.toString());
+      if (k == null) {
+        k = keyRunes.size();
+        keys.put(b.toString(), k);
+        keyRunes.add(key);
+        stringsOfKey.add(new ArrayList<Integer>());
+      }
+      stringsOfKey.get(k).add(i);
+      maxLength = Math.max(maxLength, s.length);
+    }
+    this.maxLength = maxLength;
+    keyLength = new int[keyRunes.size()];
+    keyStrings = new int[keyRunes.size()][];
+    for (int k = 0; k < keyStrings.length; k++) {
+      keyLength[k] = keyRunes.get(k).length;
+      List<Integer> list = stringsOfKey.get(k);
+      keyStrings[k] = new int[list.size()];
+      for (int j = 0; j < list.size(); j++) {
+        keyStrings[k][j] = list.get(j);
+      }
+    }
+    automaton = new AhoCorasick(keyRunes.toArray(new int[keyRunes.size()][]));
+  }
+
+  // compile() returns a LiteralSet for |re2|, whose simplified regular
+  // expression is |re|, or null if |re| is not a union of non-empty literal
+  // strings, or too large a one.
+  static LiteralSet compile(RE2 re2, Regexp re) {
+    List<Literal> literals = expand(re, 2 * (1 + re2.numSubexp));
+    if (literals == null || literals.isEmpty()) {
+      return null;
+    }
+    boolean fold = false;
+    boolean exactCase = false;
+    for (Literal l : literals) {
+      if (l.runes.length == 0) {
+        return null; // matches everywhere; leave it to the other engines
+      }
+      for (int r : l.runes) {
+        fold |= (r & FOLD) != 0;
+        exactCase |= (r & FOLD) == 0 && Unicode.simpleFold(r) != r;
+      }
+    }
+    // match() skips ahead to the literal prefix where Machine would, which
+    // is when no string has a partial match.  When it compares case-folded
+    // runes before checking the exact ones, it cannot tell when that is.
+    if (fold && exactCase && !re2.prefix.isEmpty()) {
+      return null;
+    }
+    return new LiteralSet(re2, literals);
+  }
+
+  // expand() returns the strings that |re| matches, in priority order, with
+  // |ncap| submatch offsets each, or null if they are not a small finite
+  // set.  Case-folded runes are marked with FOLD.
+  private static List<Literal> expand(Regexp re, int ncap) {
+    List<Literal> list = new ArrayList<Literal>();
+    switch (re.op) {
+      case EMPTY_MATCH:
+        list.add(new Literal(Utils.EMPTY_INTS, ncap));
+        return list;
+
+      case LITERAL:
+        {
+          int[] s = new int[re.runes.length];
+          for (int i = 0; i < s.length; i++) {
+            int r = re.runes[i];
+            s[i] = (re.flags & RE2.FOLD_CASE) != 0 && Unicode.simpleFold(r) != r ? r | FOLD : r;
+          }
+          list.add(new Literal(s, ncap));
+          return list;
+        }
+
+      case CHAR_CLASS:
+        {
+          long n = 0;
+          for (int i = 0; i < re.runes.length; i += 2) {
+            n += re.runes[i + 1] - re.runes[i] + 1;
+          }
+          if (n > MAX_STRINGS) {
+            return null;
+          }
+          for (int i = 0; i < re.runes.length; i += 2) {
+            for (int r = re.runes[i]; r <= re.runes[i + 1]; r++) {
+              list.add(new Literal(new int[] {r}, ncap));
+            }
+          }
+          return list;
+        }
+
+      case CAPTURE:
+        {
+          list = expand(re.subs[0], ncap);
+          if (list == null) {
+            return null;
+          }
+          for (Literal l : list) {
+            l.cap[2 * re.cap] = 0;
+            l.cap[2 * re.cap + 1] = l.runes.length;
+          }
+          return list;
+        }
+
+      case QUEST:
+        {
+          List<Literal> sub = expand(re.subs[0], ncap);
+          if (sub == null) {
+            return null;
+          }
+          // x? prefers x, x?? prefers the empty string.
+          if ((re.flags & RE2.NON_GREEDY) != 0) {
+            list.add(new Literal(Utils.EMPTY_INTS, ncap));
+            list.addAll(sub);
+          } else {
+            list.addAll(sub);
+            list.add(new Literal(Utils.EMPTY_INTS, ncap));
+          }
+          return list.size() <= MAX_STRINGS ? list : null;
+        }
+
+      case CONCAT:
+        {
+          list.add(new Literal(Utils.EMPTY_INTS, ncap));
+          for (Regexp sub : re.subs) {
+            List<Literal> x = expand(sub, ncap);
+            if (x == null || (long) list.size() * x.size() > MAX_STRINGS) {
+              return null;
+            }
+            // The first choice of the leftmost operand takes priority.
+            List<Literal> product = new ArrayList<Literal>(list.size() * x.size());
+            long runes = 0;
+            for (Literal a : list) {
+              for (Literal b : x) {
+                int[] s = new int[a.runes.length + b.runes.length];
+                System.arraycopy(a.runes, 0, s, 0, a.runes.length);
+                System.arraycopy(b.runes, 0, s, a.runes.length, b.runes.length);
+                Literal ab = new Literal(s, ncap);
+                // Captures entered later on the path overwrite earlier ones,
+                // as they do in Machine.
+                for (int j = 0; j < ncap; j++) {
+                  ab.cap[j] = b.cap[j] >= 0 ? b.cap[j] + a.runes.length : a.cap[j];
+                }
+                product.add(ab);
+                runes += s.length;
+              }
+              if (runes > MAX_RUNES) {
+                return null;
+              }
+            }
+            list = product;
+          }
+          return list;
+        }
+
+      case ALTERNATE:
+        {
+          long runes = 0;
+          for (Regexp sub : re.subs) {
+            List<Literal> x = expand(sub, ncap);
+            if (x == null || list.size() + x.size() > MAX_STRINGS) {
+              return null;
+            }
+            for (Literal l : x) {
+              runes += l.runes.length;
+            }
+            if (runes > MAX_RUNES) {
+              return null;
+            }
+            list.addAll(x);
+          }
+          return list;
+        }
+
+      default:
+        return null;
+    }
+  }
+
+  // The keys of the Latin-1 runes.
+  private static final int[] FOLD_KEY_LATIN1 = new int[0x100];
+
+  static {
+    for (int r = 0; r < FOLD_KEY_LATIN1.length; r++) {
+      FOLD_KEY_LATIN1[r] = foldKeySlow(r);
+    }
+  }
+
+  // foldKey() returns the smallest rune of the case folding orbit of rune
+  // |r|, which identifies the orbit.
+  private static int foldKey(int r) {
+    return r < FOLD_KEY_LATIN1.length ? FOLD_KEY_LATIN1[r] : foldKeySlow(r);
+  }
+
+  private static int foldKeySlow(int r) {
+    int min = r;
+    for (int f = Unicode.simpleFold(r); f != r; f = Unicode.simpleFold(f)) {
+      if (f < min) {
+        min = f;
+      }
+    }
+    return min;
+  }
+
+  // match() returns the first |ncap| submatch positions of the leftmost
+  // match in |in| from |pos|, with the RE2 Anchor |anchor|: among the
+  // strings matching there, the first in priority order, or the longest if
+  // |longest|.  Returns null if there is no match.
+  int[] match(MachineInput in, int pos, int anchor, int ncap, boolean longest) {
+    boolean anchored = anchor != RE2.UNANCHORED;
+    int end = in.endPos();
+    // The positions of the last rune boundaries, by number of runes stepped
+    // over modulo a power of two above maxLength, to find where the strings
+    // found start.
+    int mask = Integer.highestOneBit(maxLength) * 2 - 1;
+    int[] boundaries = new int[mask + 1];
+    int n = 0; // number of runes stepped over
+    int s = 0; // automaton state
+    int bestStart = -1;
+    int bestEnd = -1;
+    int bestRunes = 0; // number of runes stepped over before bestStart
+    int bestString = 0;
+    int bestLength = 0; // in runes
+    for (; ; ) {
+      if (s == 0) {
+        // No string has a partial match: Machine would have no threads
+        // running, so no match can start earlier than one already found,
+        // and it skips to the literal prefix.
+        if (bestStart >= 0 || (anchored && n > 0)) {
+          break;
+        }
+        if (hasPrefix) {
+          int advance = re2.prefixSkip(in, pos);
+          if (advance < 0 || (advance > 0 && anchored)) {
+            break;
+          }
+          pos += advance;
+        }
+      }
+      boundaries[n & mask] = pos;
+      int r = in.step(pos);
+      if (r == MachineInput.EOF) {
+        break;
+      }
+      pos += r & 7;
+      n++;
+      r >>= 3;
+      s = automaton.next(s, fold ? foldKey(r) : r);
+      // The strings ending here, from the longest down, so from the one
+      // starting first.
+      for (int t = automaton.output(s); t >= 0; t = automaton.dict(t)) {
+        int k = automaton.string(t);
+        int startRunes = n - keyLength[k];
+        if ((anchored && startRunes != 0) || (bestStart >= 0 && startRunes > bestRunes)) {
+          break;
+        }
+        if (anchor == RE2.ANCHOR_BOTH && pos != end) {
+          break;
+        }
+        int start = boundaries[startRunes & mask];
+        int i = first(k, in, start);
+        if (i >= 0
+            && (bestStart < 0
+                || startRunes < bestRunes
+                || (longest ? pos > bestEnd : i < bestString))) {
+          bestStart = start;
+          bestEnd = pos;
+          bestRunes = startRunes;
+          bestString = i;
+          bestLength = keyLength[k];
+        }
+      }
+      // No string starting where the best match does can end beyond here.
+      if ((bestStart >= 0 && n - bestRunes >= maxLength) || (anchored && n >= maxLength)) {
+        break;
+      }
+    }
+    if (bestStart < 0) {
+      return null;
+    }
+    if (ncap == 0) {
+      return Utils.EMPTY_INTS;
+    }
+    int[] cap = new int[ncap];
+    cap[0] = bestStart;
+    cap[1] = bestEnd;
+    if (ncap > 2) {
+      // Convert the offsets in runes to positions.
+      int[] offsets = new int[bestLength + 1];
+      offsets[0] = bestStart;
+      for (int j = 1; j < offsets.length; j++) {
+        offsets[j] = offsets[j - 1] + (in.step(offsets[j - 1]) & 7);
+      }
+      int[] c = this.cap[bestString];
+      for (int j = 2; j < ncap; j++) {
+        cap[j] = c[j] < 0 ? -1 : offsets[c[j]];
+      }
+    }
+    return cap;
+  }
+
+  // first() returns the index of the first string with key |k| that matches
+  // at |start|, or -1.
+  private int first(int k, MachineInput in, int start) {
+    for (int i : keyStrings[k]) {
+      int[] runes = exact[i];
+      if (runes == null) {
+        return i;
+      }
+      int pos = start;
+      boolean ok = true;
+      for (int j = 0; j < runes.length && ok; j++) {
+        int r = in.step(pos);
+        ok = runes[j] < 0 || r >> 3 == runes[j];
+        pos += r & 7;
+      }
+      if (ok) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -99,6 +99,20 @@ class Machine {
   private int[] matchcap;
   private int ncap;
 
+  // Lazily-built DFAs for re2, indexed by DFA kind, and then by DFA kind for
+  // UTF-8 input.
+  private DFA[] dfas;
+
+  // Lazily-built DFA for re2.reverseProg.
+  private DFA reverseDfa;
+
+  // Lazily-created backtracker for re2.
+  private BitState bitState;
+
+  // The threads of a resumable match at its position, and the queue for the
+  // threads at the next; see begin().
+  private Queue resumeq, resumeNextq;
+
   // Make sure to include new fields in the copy constructor
 
   // Pointer to form a linked stack for the pool of Machines. Not included in copy constructor.
@@ -127,6 +141,11 @@ class Machine {
     this.matched = copy.matched;
     this.matchcap = copy.matchcap;
     this.ncap = copy.ncap;
+    this.dfas = copy.dfas;
+    this.reverseDfa = copy.reverseDfa;
+    this.bitState = copy.bitState;
+    this.resumeq = copy.resumeq;
+    this.resumeNextq = copy.resumeNextq;
   }
 
   // init() reinitializes an existing Machine for re-use on a new input.
@@ -208,6 +227,93 @@ class Machine {
     poolSize++;
   }
 
+  // dfaSearch() runs the DFA over the input |in| starting at |pos| with the
+  // RE2 Anchor |anchor|.  It returns the end of the match that match() would
+  // find or DFA.NO_MATCH, except that if |earliest|, or for unanchored
+  // leftmost-longest searches, any match end may be returned.  Returns
+  // DFA.FAILED if the DFA gave up.
+  int dfaSearch(MachineInput in, int pos, int anchor, boolean earliest) {
+    boolean anchored = anchor != RE2.UNANCHORED || (re2.cond & Utils.EMPTY_BEGIN_TEXT) != 0;
+    int kind;
+    if (anchor == RE2.ANCHOR_BOTH) {
+      kind = DFA.FULL_MATCH;
+    } else if (re2.longest) {
+      kind = DFA.LONGEST_MATCH;
+    } else {
+      kind = DFA.FIRST_MATCH;
+    }
+    return dfa(kind, in.utf8() != null).search(in, pos, anchored, earliest);
+  }
+
+  // dfaSearchSet() runs the DFA for the program of a RegexSet over the input
+  // |in|; see DFA.searchSet.
+  boolean dfaSearchSet(MachineInput in, boolean[] matched) {
+    return dfa(DFA.MANY_MATCH, in.utf8() != null).searchSet(in, matched);
+  }
+
+  // Returns the DFA of kind |kind| for re2, over UTF-8 bytes if |utf8|,
+  // creating it if necessary.
+  private DFA dfa(int kind, boolean utf8) {
+    if (dfas == null) {
+      dfas = new DFA[2 * DFA.NUM_KINDS];
+    }
+    int i = utf8 ? DFA.NUM_KINDS + kind : kind;
+    DFA dfa = dfas[i];
+    if (dfa == null) {
+      // Word boundaries need the runes on either side of each position, so
+      // over bytes every state would decode them; the rune DFA is faster.
+      if (utf8 && hasWordBoundary(re2.prog)) {
+        dfa = dfa(kind, false);
+      } else {
+        dfa = new DFA(re2, kind, re2.dfaMemoryBudget, false, utf8);
+      }
+      dfas[i] = dfa;
+    }
+    return dfa;
+  }
+
+  private static boolean hasWordBoundary(Prog prog) {
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      Inst inst = prog.getInst(pc);
+      if (inst.op == Inst.EMPTY_WIDTH
+          && (inst.arg & (Utils.EMPTY_WORD_BOUNDARY | Utils.EMPTY_NO_WORD_BOUNDARY)) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // reverseSearch() runs the reverse DFA backward over the input |in| from
+  // |end|, the end of a leftmost-first match found by an unanchored search
+  // from |pos|, and returns where that match starts.  Returns DFA.NO_MATCH
+  // if no match from |pos| on ends at |end|, or DFA.FAILED if the DFA gave
+  // up or the input cannot be read backward.
+  int reverseSearch(MachineInput in, int pos, int end) {
+    MachineInput rev = in.reverse(pos, end);
+    if (rev == null) {
+      return DFA.FAILED;
+    }
+    if (reverseDfa == null) {
+      reverseDfa = new DFA(re2, DFA.LONGEST_MATCH, re2.dfaMemoryBudget, true, false);
+    }
+    // The longest reverse match ending at |end| reaches back to the leftmost
+    // position from which some match starts, which is where the leftmost-first
+    // match starts.
+    int n = reverseDfa.search(rev, 0, true, false);
+    return n < 0 ? n : end - n;
+  }
+
+  // backtrack() runs a BitState over the input |in| starting at |pos| with the
+  // RE2 Anchor |anchor|, and returns the |ncap| submatch positions that
+  // match() would find, or null if there is no match.  The caller must have
+  // checked BitState.shouldUse().
+  int[] backtrack(MachineInput in, int pos, int anchor, int ncap) {
+    if (bitState == null) {
+      bitState = new BitState(re2);
+    }
+    return bitState.match(in, pos, anchor, ncap);
+  }
+
   // match() runs the machine over the input |in| starting at |pos| with the
   // RE2 Anchor |anchor|.
   // It reports whether a match was found.
@@ -250,7 +356,7 @@ class Machine {
           // Have match; finished exploring alternatives.
           break;
         }
-        if (!re2.prefix.isEmpty() && rune1 != re2.prefixRune && in.canCheckPrefix()) {
+        if (!re2.prefix.isEmpty() && !re2.startsPrefix(rune1) && in.canCheckPrefix()) {
           // Match requires literal prefix; fast search for it.
           int advance = in.index(re2, pos);
           if (advance < 0) {
@@ -263,6 +369,36 @@ class Machine {
           r = in.step(pos + width);
           rune1 = r >> 3;
           width1 = r & 7;
+        } else if (re2.prefix.isEmpty()
+            && (startCond & Utils.EMPTY_BEGIN_LINE) != 0
+            && anchor == RE2.UNANCHORED
+            && (flag & Utils.EMPTY_BEGIN_LINE) == 0) {
+          // Threads would die at once anywhere but at the start of a line.
+          pos = in.indexLineStart(pos);
+          if (pos < 0) {
+            break;
+          }
+          flag = in.context(pos);
+          r = in.step(pos);
+          rune = r >> 3;
+          width = r & 7;
+          r = in.step(pos + width);
+          rune1 = r >> 3;
+          width1 = r & 7;
+        } else if (re2.prefix.isEmpty()
+            && prog.first != null
+            && anchor == RE2.UNANCHORED
+            && rune != -1
+            && !prog.first.contains(rune)) {
+          // Threads would die at once on runes that cannot start a match.
+          pos = in.indexFirst(prog.first, pos);
+          flag = in.context(pos);
+          r = in.step(pos);
+          rune = r >> 3;
+          width = r & 7;
+          r = in.step(pos + width);
+          rune1 = r >> 3;
+          width1 = r & 7;
         }
       }
       if (!matched && (pos == 0 || anchor == RE2.UNANCHORED)) {
@@ -300,6 +436,48 @@ class Machine {
     return matched;
   }
 
+  // begin() starts a resumable unanchored match, which resume() runs a rune
+  // at a time as the input arrives, for StreamMatcher.  It finds the match
+  // that match() finds from the position of the first rune.
+  void begin() {
+    if (resumeq == null) {
+      resumeq = q0;
+      resumeNextq = q1;
+    }
+    free(resumeq);
+    free(resumeNextq);
+    matched = false;
+    Arrays.fill(matchcap, 0, prog.numCap, -1);
+  }
+
+  // resume() runs the resumable match over the rune |rune| at |pos| and
+  // |width| wide, where the EMPTY_* flags are |flag|, and |nextFlag| after
+  // it.  |width| is 0 and |rune| -1 at the end of the input.  Unless it has
+  // found a match, the match may start at |pos|.
+  void resume(int pos, int rune, int width, int flag, int nextFlag) {
+    if (!matched) {
+      if (ncap > 0) {
+        matchcap[0] = pos;
+      }
+      add(resumeq, prog.start, pos, matchcap, flag, null);
+    }
+    step(resumeq, resumeNextq, pos, pos + width, rune, nextFlag, RE2.UNANCHORED, width == 0);
+    Queue q = resumeq;
+    resumeq = resumeNextq;
+    resumeNextq = q;
+  }
+
+  // Reports whether the resumable match has found a match; it is the one
+  // match() finds once no threads are left.
+  boolean resumeMatched() {
+    return matched;
+  }
+
+  // Reports whether the resumable match has no threads left.
+  boolean resumeIdle() {
+    return resumeq.isEmpty();
+  }
+
   // step() executes one step of the machine, running each of the threads
   // on |runq| and appending new threads to |nextq|.
   // The step processes the rune |c| (which may be -1 for EOF),
@@ -317,6 +495,7 @@ class Machine {
       int anchor,
       boolean atEnd) {
     boolean longest = re2.longest;
+    int cls = -1; // the class of |c| in prog.classes, once needed
     for (int j = 0; j < runq.size; ++j) {
       Thread t = runq.denseThreads[j];
       if (t == null) {
@@ -346,7 +525,14 @@ class Machine {
           break;
 
         case Inst.RUNE:
-          add = i.matchRune(c);
+          if (i.classes == null) {
+            add = i.matchRune(c);
+          } else if (c >= 0) {
+            if (cls < 0) {
+              cls = prog.classes.classOf(c);
+            }
+            add = i.matchClass(cls);
+          }
           break;
 
         case Inst.RUNE1:
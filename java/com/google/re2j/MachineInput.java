@@ -47,8 +47,51 @@ abstract class MachineInput {
   abstract boolean canCheckPrefix();
 
   // Returns the index relative to |pos| at which |re2.prefix| is found
-  // in this input stream, or a negative value if not found.
-  abstract int index(RE2 re2, int pos);
+  // in this input stream, ignoring case if it is folded, or a negative
+  // value if not found.
+  int index(RE2 re2, int pos) {
+    return re2.prefixFold != null
+        ? index(re2.prefixFold, pos)
+        : index(re2.prefixSearch, pos);
+  }
+
+  // Returns the index relative to |pos| at which the string that |needle|
+  // searches for is found in this input stream, or a negative value if not
+  // found.
+  abstract int index(StringSearch needle, int pos);
+
+  // Returns the index relative to |pos| at which |prefix| is found in this
+  // input stream, or a negative value if not found.
+  abstract int index(FoldedPrefix prefix, int pos);
+
+  // Returns the position of the first rune at or after |pos| that is in
+  // |first|, stepping from rune to rune as step() does, or the position of
+  // EOF if there is none.
+  int indexFirst(FirstRunes first, int pos) {
+    for (; ; ) {
+      int r = step(pos);
+      if (r == EOF || first.contains(r >> 3)) {
+        return pos;
+      }
+      pos += r & 7;
+    }
+  }
+
+  // Returns the position of the first rune boundary after |pos|, stepping
+  // from rune to rune as step() does, where context() has EMPTY_BEGIN_LINE,
+  // or -1 if there is none.
+  int indexLineStart(int pos) {
+    for (; ; ) {
+      int r = step(pos);
+      if (r == EOF) {
+        return -1;
+      }
+      pos += r & 7;
+      if ((context(pos) & Utils.EMPTY_BEGIN_LINE) != 0) {
+        return pos;
+      }
+    }
+  }
 
   // Returns a bitmask of EMPTY_* flags.
   abstract int context(int pos);
@@ -56,6 +99,41 @@ abstract class MachineInput {
   // Returns the end position in the same units as step().
   abstract int endPos();
 
+  // Returns the rune that ends at |pos|, and its width, as step() returns
+  // them for the position |width| earlier; the rune does not start before
+  // |lo|.  Returns EOF if |pos| <= |lo|.
+  abstract int stepBack(int lo, int pos);
+
+  // Returns a view of the positions [lo, hi) of this input read backward:
+  // position i of the view is position hi - i of this input, and its context
+  // is the context Machine uses at that position, with begin and end swapped.
+  // Returns null if stepping backward could find runes that step() would not,
+  // which happens only if the text is not well-formed.
+  abstract MachineInput reverse(int lo, int hi);
+
+  // Reports whether this input is UTF-8, its positions byte indices, rather
+  // than UTF-16, its positions char indices.
+  boolean isUTF8() {
+    return false;
+  }
+
+  // Returns the array holding this input if it is UTF-8 in an array, with
+  // position |pos| at index utf8Offset() + pos, or null, for a DFA that reads
+  // the bytes themselves (see Compiler.compileUTF8).
+  byte[] utf8() {
+    return null;
+  }
+
+  int utf8Offset() {
+    return 0;
+  }
+
+  // Reports whether positions [lo, hi) hold well-formed text, which step()
+  // decodes exactly as a strict decoder would.
+  boolean isWellFormed(int lo, int hi) {
+    return true;
+  }
+
   //// Implementations
 
   // An implementation of MachineInput for UTF-8 byte arrays.
@@ -132,10 +210,63 @@ abstract class MachineInput {
     }
 
     @Override
-    int index(RE2 re2, int pos) {
+    boolean isUTF8() {
+      return true;
+    }
+
+    @Override
+    byte[] utf8() {
+      return b;
+    }
+
+    @Override
+    int utf8Offset() {
+      return start;
+    }
+
+    @Override
+    int index(StringSearch needle, int pos) {
       pos += start;
-      int i = Utils.indexOf(b, re2.prefixUTF8, pos);
-      return i < 0 ? i : i - pos;
+      // The array may go on past the end of the input.
+      int i = needle.indexUTF8(b, pos, end);
+      return i < 0 ? -1 : i - pos;
+    }
+
+    @Override
+    int index(FoldedPrefix prefix, int pos) {
+      pos += start;
+      int i = prefix.indexUTF8(this, b, start, pos, end);
+      return i < 0 ? -1 : i - pos;
+    }
+
+    @Override
+    int indexFirst(FirstRunes first, int pos) {
+      int i = start + pos;
+      while (i < end) {
+        // Through ASCII with ByteScan, the common case.
+        i = ByteScan.indexIn(b, first.ascii, i, end);
+        if (i == end || b[i] >= 0) {
+          break; // the end, or a rune in |first|
+        }
+        int r = step(i - start);
+        if (r == EOF || first.contains(r >> 3)) {
+          break;
+        }
+        i += r & 7;
+      }
+      return i - start;
+    }
+
+    @Override
+    int indexLineStart(int pos) {
+      // Where the text up to the newline is well-formed, step() stops just
+      // after it, and context() decodes no other newline.
+      int i = ByteScan.indexOf(b, (byte) '\n', start + pos, end);
+      int n = i < 0 ? end : i;
+      if (!isWellFormed(pos, n - start)) {
+        return super.indexLineStart(pos);
+      }
+      return i < 0 ? -1 : i + 1 - start;
     }
 
     @Override
@@ -144,7 +275,7 @@ abstract class MachineInput {
       int r1 = -1;
       if (pos > this.start && pos <= this.end) {
         int start = pos - 1;
-        r1 = b[start--];
+        r1 = b[start--] & 0xff;
         if (r1 >= 0x80) { // decode UTF-8
           // Find start, up to 4 bytes earlier.
           int lim = pos - 4;
@@ -157,16 +288,84 @@ abstract class MachineInput {
           if (start < this.start) {
             start = this.start;
           }
-          r1 = step(start) >> 3;
+          r1 = step(start - this.start) >> 3;
         }
       }
-      int r2 = pos < this.end ? (step(pos) >> 3) : -1;
+      int r2 = pos < this.end ? (step(pos - this.start) >> 3) : -1;
       return Utils.emptyOpContext(r1, r2);
     }
 
     @Override
     int endPos() {
-      return end;
+      return end - start;
+    }
+
+    @Override
+    int stepBack(int lo, int pos) {
+      if (pos <= lo) {
+        return EOF;
+      }
+      // Find the start of the sequence, up to 4 bytes earlier.
+      int i = pos - 1;
+      int lim = Math.max(lo, pos - 4);
+      while (i > lim && (b[start + i] & 0xC0) == 0x80) { // 10xxxxxx
+        i--;
+      }
+      return step(i);
+    }
+
+    @Override
+    MachineInput reverse(int lo, int hi) {
+      return isWellFormed(lo, hi) ? new ReverseInput(this, lo, hi) : null;
+    }
+
+    // Well-formed UTF-8 holds the shortest encodings of code points other
+    // than surrogates.  Then stepBack() finds exactly the runes that step()
+    // finds, and the prefix bytes are found exactly where the prefix runes
+    // are.
+    @Override
+    boolean isWellFormed(int lo, int hi) {
+      int i = start + lo;
+      int n = start + hi;
+      while (i < n) {
+        i = ByteScan.indexNonASCII(b, i, n);
+        if (i == n) {
+          break;
+        }
+        int x = b[i] & 0xff;
+        // The second byte of a sequence, if any, and the range it must be
+        // in for the sequence to be a shortest encoding of a code point
+        // other than a surrogate.
+        int y = i + 1 < n ? b[i + 1] & 0xff : 0;
+        int size;
+        if (x < 0xC2) {
+          return false; // continuation byte, or overlong
+        } else if (x < 0xE0) {
+          size = 2;
+        } else if (x < 0xF0) {
+          size = 3;
+          if ((x == 0xE0 && y < 0xA0) || (x == 0xED && y >= 0xA0)) {
+            return false;
+          }
+        } else if (x < 0xF5) {
+          size = 4;
+          if ((x == 0xF0 && y < 0x90) || (x == 0xF4 && y >= 0x90)) {
+            return false;
+          }
+        } else {
+          return false;
+        }
+        if (i + size > n) {
+          return false;
+        }
+        for (int j = i + 1; j < i + size; j++) {
+          if ((b[j] & 0xC0) != 0x80) {
+            return false;
+          }
+        }
+        i += size;
+      }
+      return true;
     }
   }
 
@@ -199,10 +398,51 @@ abstract class MachineInput {
     }
 
     @Override
-    int index(RE2 re2, int pos) {
+    int index(StringSearch needle, int pos) {
+      pos += start;
+      // The string may go on past the end of the input, and a surrogate pair
+      // may straddle it.
+      int i = needle.indexUTF16(str, pos, Math.min(str.length(), end + needle.s.length()));
+      return i < 0 ? -1 : i - pos;
+    }
+
+    @Override
+    int index(FoldedPrefix prefix, int pos) {
       pos += start;
-      int i = indexOf(str, re2.prefix, pos);
-      return i < 0 ? i : i - pos;
+      int i = prefix.indexUTF16(this, str, start, pos, end);
+      return i < 0 ? -1 : i - pos;
+    }
+
+    @Override
+    int indexFirst(FirstRunes first, int pos) {
+      int i = start + pos;
+      while (i < end) {
+        char c = str.charAt(i);
+        if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+          if (first.contains(c)) {
+            break;
+          }
+          i++;
+        } else {
+          int r = step(i - start);
+          if (first.contains(r >> 3)) {
+            break;
+          }
+          i += r & 7;
+        }
+      }
+      return i - start;
+    }
+
+    @Override
+    int indexLineStart(int pos) {
+      // A newline is never part of a surrogate pair.
+      for (int i = start + pos; i < end; i++) {
+        if (str.charAt(i) == '\n') {
+          return i + 1 - start;
+        }
+      }
+      return -1;
     }
 
     @Override
@@ -215,53 +455,101 @@ abstract class MachineInput {
 
     @Override
     int endPos() {
-      return end;
+      return end - start;
     }
 
-    private int indexOf(CharSequence hayStack, String needle, int pos) {
-      if (hayStack instanceof String) {
-        return ((String) hayStack).indexOf(needle, pos);
+    @Override
+    int stepBack(int lo, int pos) {
+      if (pos <= lo) {
+        return EOF;
       }
-      if (hayStack instanceof StringBuilder) {
-        return ((StringBuilder) hayStack).indexOf(needle, pos);
+      char c = str.charAt(start + pos - 1);
+      if (Character.isLowSurrogate(c)
+          && pos - 2 >= lo
+          && Character.isHighSurrogate(str.charAt(start + pos - 2))) {
+        return Character.toCodePoint(str.charAt(start + pos - 2), c) << 3 | 2;
       }
-      return indexOfFallback(hayStack, needle, pos);
+      return c << 3 | 1;
     }
 
-    // Modified version of {@link String#indexOf(String) that allows a CharSequence.
-    private int indexOfFallback(CharSequence hayStack, String needle, int fromIndex) {
-      if (fromIndex >= hayStack.length()) {
-        return needle.isEmpty() ? 0 : -1;
+    @Override
+    MachineInput reverse(int lo, int hi) {
+      // Stepping forward from |lo| never stops between the two halves of a
+      // surrogate pair, and neither does stepping backward.
+      return new ReverseInput(this, lo, hi);
+    }
+  }
+
+  // A view of part of a MachineInput read backward; see reverse().
+  static class ReverseInput extends MachineInput {
+    final MachineInput in;
+    final int lo;
+    final int hi;
+
+    ReverseInput(MachineInput in, int lo, int hi) {
+      this.in = in;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    int step(int pos) {
+      return in.stepBack(lo, hi - pos);
+    }
+
+    @Override
+    boolean canCheckPrefix() {
+      return false;
+    }
+
+    @Override
+    boolean isUTF8() {
+      return in.isUTF8();
+    }
+
+    @Override
+    int index(StringSearch needle, int pos) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    int index(FoldedPrefix prefix, int pos) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    int context(int pos) {
+      pos = hi - pos;
+      int flag = pos == 0 ? Utils.emptyOpContext(-1, in.step(0) >> 3) : in.context(pos);
+      int mirrored = flag & (Utils.EMPTY_WORD_BOUNDARY | Utils.EMPTY_NO_WORD_BOUNDARY);
+      if ((flag & Utils.EMPTY_BEGIN_LINE) != 0) {
+        mirrored |= Utils.EMPTY_END_LINE;
       }
-      if (fromIndex < 0) {
-        fromIndex = 0;
+      if ((flag & Utils.EMPTY_END_LINE) != 0) {
+        mirrored |= Utils.EMPTY_BEGIN_LINE;
       }
-      if (needle.isEmpty()) {
-        return fromIndex;
+      if ((flag & Utils.EMPTY_BEGIN_TEXT) != 0) {
+        mirrored |= Utils.EMPTY_END_TEXT;
       }
+      if ((flag & Utils.EMPTY_END_TEXT) != 0) {
+        mirrored |= Utils.EMPTY_BEGIN_TEXT;
+      }
+      return mirrored;
+    }
 
-      char first = needle.charAt(0);
-      int max = hayStack.length() - needle.length();
-
-      for (int i = fromIndex; i <= max; i++) {
-        /* Look for first character. */
-        if (hayStack.charAt(i) != first) {
-          while (++i <= max && hayStack.charAt(i) != first) {}
-        }
+    @Override
+    int endPos() {
+      return hi - lo;
+    }
 
-        /* Found first character, now look at the rest of v2 */
-        if (i <= max) {
-          int j = i + 1;
-          int end = j + needle.length() - 1;
-          for (int k = 1; j < end && hayStack.charAt(j) == needle.charAt(k); j++, k++) {}
+    @Override
+    int stepBack(int lo, int pos) {
+      throw new UnsupportedOperationException();
+    }
 
-          if (j == end) {
-            /* Found whole string. */
-            return i;
-          }
-        }
-      }
-      return -1;
+    @Override
+    MachineInput reverse(int lo, int hi) {
+      throw new UnsupportedOperationException();
     }
   }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+// MatchLength holds the minimum and maximum lengths of the matches of a
+// regular expression, in UTF-16 chars and in UTF-8 bytes, the units of the
+// positions in the input: 8 chars for \d{3}-\d{4}, and at least 1 for \w+.
+//
+// RE2.doExecute gives up at once on input too short to hold a match, and,
+// when the match must span the input, as for Matcher.matches(), on input
+// too long for it, without reading the input at all.
+//
+// The lengths are those of the runes that MachineInput decodes, which in
+// UTF-8 that is not well-formed may be longer than the shortest encoding of
+// the rune: up to four bytes for any rune, as 0xF0 0x80 0x81 0xA1 for 'a'.
+final class MatchLength {
+
+  // Lengths no greater than this are counted exactly; longer maximums are
+  // unbounded, and longer minimums are taken to be this.
+  private static final long LIMIT = Integer.MAX_VALUE;
+
+  final int minUTF16;
+  final int maxUTF16; // or -1 if unbounded
+  final int minUTF8;
+  final int maxUTF8; // or -1 if unbounded
+
+  private MatchLength(long minUTF16, long maxUTF16, long minUTF8, long maxUTF8) {
+    this.minUTF16 = (int) Math.min(minUTF16, LIMIT);
+    this.maxUTF16 = maxUTF16 > LIMIT ? -1 : (int) maxUTF16;
+    this.minUTF8 = (int) Math.min(minUTF8, LIMIT);
+    this.maxUTF8 = maxUTF8 > LIMIT ? -1 : (int) maxUTF8;
+  }
+
+  // compute() returns the match lengths of |re|, a simplified regular
+  // expression.
+  static MatchLength compute(Regexp re) {
+    return new MatchLength(min(re, false), max(re, false), min(re, true), max(re, true));
+  }
+
+  // rulesOut() reports whether no match can start at |pos| in |in|: the
+  // input left is shorter than any match, or, if the match must end at the
+  // end of the input, longer than any match.
+  //
+  // The input may end in up to three bytes of a truncated UTF-8 sequence,
+  // which step() takes for EOF: the end of the text is then before them.
+  boolean rulesOut(MachineInput in, int pos, boolean spansInput) {
+    int n = in.endPos() - pos;
+    boolean utf8 = in.isUTF8();
+    if (spansInput) {
+      int max = utf8 ? maxUTF8 : maxUTF16;
+      if (max >= 0 && n - (utf8 ? 3 : 0) > max) {
+        return true;
+      }
+    }
+    if (!utf8 && n > 0 && (in.step(pos + n - 1) & 7) > 1) {
+      n++; // a surrogate pair straddles the end, and may end a match
+    }
+    return n < (utf8 ? minUTF8 : minUTF16);
+  }
+
+  private static long add(long a, long b) {
+    return Math.min(a + b, LIMIT + 1);
+  }
+
+  private static long times(long a, long b) {
+    return a == 0 || b == 0 ? 0 : a > LIMIT / b ? LIMIT + 1 : a * b;
+  }
+
+  // Returns the fewest units that any rune from |lo| up decodes from.
+  private static int minWidth(int lo, boolean utf8) {
+    if (!utf8) {
+      return lo > Character.MAX_VALUE ? 2 : 1;
+    }
+    return lo < 0x80 ? 1 : lo < 0x800 ? 2 : lo < 0x10000 ? 3 : 4;
+  }
+
+  // Returns the most units that any rune up to |hi| decodes from.
+  private static int maxWidth(int hi, boolean utf8) {
+    if (!utf8) {
+      return hi > Character.MAX_VALUE ? 2 : 1;
+    }
+    return 4;
+  }
+
+  // Returns the fewest units, or if |max| the most, that rune |r| of
+  // literal |re| decodes from, taking in the runes it folds to if |re|
+  // ignores case.
+  private static int literalWidth(Regexp re, int r, boolean utf8, boolean max) {
+    int w = max ? maxWidth(r, utf8) : minWidth(r, utf8);
+    if ((re.flags & RE2.FOLD_CASE) != 0) {
+      for (int f = Unicode.simpleFold(r); f != r; f = Unicode.simpleFold(f)) {
+        w = max ? Math.max(w, maxWidth(f, utf8)) : Math.min(w, minWidth(f, utf8));
+      }
+    }
+    return w;
+  }
+
+  // Returns the least length of a match of |re|, or more than LIMIT.
+  private static long min(Regexp re, boolean utf8) {
+    switch (re.op) {
+      case LITERAL:
+        {
+          long n = 0;
+          for (int r : re.runes) {
+            n += literalWidth(re, r, utf8, false);
+          }
+          return n;
+        }
+
+      case CHAR_CLASS:
+        {
+          if (re.runes.length == 0) {
+            return 0; // no match at all
+          }
+          int w = 4;
+          for (int i = 0; i < re.runes.length; i += 2) {
+            w = Math.min(w, minWidth(re.runes[i], utf8));
+          }
+          return w;
+        }
+
+      case ANY_CHAR:
+      case ANY_CHAR_NOT_NL:
+        return 1;
+
+      case CAPTURE:
+      case PLUS:
+        return min(re.subs[0], utf8);
+
+      case REPEAT:
+        return times(re.min, min(re.subs[0], utf8));
+
+      case CONCAT:
+        {
+          long n = 0;
+          for (Regexp sub : re.subs) {
+            n = add(n, min(sub, utf8));
+          }
+          return n;
+        }
+
+      case ALTERNATE:
+        {
+          long n = LIMIT;
+          for (Regexp sub : re.subs) {
+            n = Math.min(n, min(sub, utf8));
+          }
+          return n;
+        }
+
+      default: // empty-width, STAR, QUEST, NO_MATCH
+        return 0;
+    }
+  }
+
+  // Returns the greatest length of a match of |re|, or more than LIMIT if
+  // it is unbounded.
+  private static long max(Regexp re, boolean utf8) {
+    switch (re.op) {
+      case LITERAL:
+        {
+          long n = 0;
+          for (int r : re.runes) {
+            n += literalWidth(re, r, utf8, true);
+          }
+          return n;
+        }
+
+      case CHAR_CLASS:
+        {
+          int w = 0;
+          for (int i = 0; i < re.runes.length; i += 2) {
+            w = Math.max(w, maxWidth(re.runes[i + 1], utf8));
+          }
+          return w;
+        }
+
+      case ANY_CHAR:
+      case ANY_CHAR_NOT_NL:
+        return utf8 ? 4 : 2;
+
+      case CAPTURE:
+      case QUEST:
+        return max(re.subs[0], utf8);
+
+      case STAR:
+      case PLUS:
+        return max(re.subs[0], utf8) == 0 ? 0 : LIMIT + 1;
+
+      case REPEAT:
+        {
+          long n = max(re.subs[0], utf8);
+          return times(re.max < 0 ? LIMIT + 1 : re.max, n);
+        }
+
+      case CONCAT:
+        {
+          long n = 0;
+          for (Regexp sub : re.subs) {
+            n = add(n, max(sub, utf8));
+          }
+          return n;
+        }
+
+      case ALTERNATE:
+        {
+          long n = 0;
+          for (Regexp sub : re.subs) {
+            n = Math.max(n, max(sub, utf8));
+          }
+          return n;
+        }
+
+      default: // empty-width, NO_MATCH
+        return 0;
+    }
+  }
+}
@@ -6,8 +6,6 @@
  */
 package com.google.re2j;
 
-import com.google.re2j.MatcherInput.Encoding;
-import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
 /**
@@ -132,6 +130,36 @@ public final class Matcher {
     return reset(MatcherInput.utf8(bytes));
   }
 
+  /**
+   * Resets the {@code Matcher} and changes the input to the UTF-8 bytes of the buffer from its
+   * position to its limit, as {@link Pattern#matcher(java.nio.ByteBuffer)} does.
+   *
+   * @param buffer the new input buffer
+   * @return the {@code Matcher} itself, for chained method calls
+   */
+  @GwtIncompatible
+  public Matcher reset(java.nio.ByteBuffer buffer) {
+    if (buffer == null) {
+      throw new NullPointerException("input is null");
+    }
+    return reset(new ByteBufferMatcherInput(buffer));
+  }
+
+  /**
+   * Resets the {@code Matcher} and changes the input to the UTF-8 bytes held in the buffers, from
+   * the position to the limit of each in turn, as {@link Pattern#matcher(java.util.List)} does.
+   *
+   * @param buffers the new input buffers
+   * @return the {@code Matcher} itself, for chained method calls
+   */
+  @GwtIncompatible
+  public Matcher reset(java.util.List<? extends java.nio.ByteBuffer> buffers) {
+    if (buffers == null) {
+      throw new NullPointerException("input is null");
+    }
+    return reset(new SegmentedMatcherInput(buffers));
+  }
+
   private Matcher reset(MatcherInput input) {
     if (input == null) {
       throw new NullPointerException("input is null");
@@ -380,17 +408,7 @@ public final class Matcher {
 
   /** Helper: return substring for [start, end). */
   String substring(int start, int end) {
-    // UTF_8 is matched in binary mode. So slice the bytes.
-    if (matcherInput.getEncoding() == Encoding.UTF_8) {
-      try {
-        return new String(matcherInput.asBytes(), start, end - start, "UTF-8");
-      } catch (UnsupportedEncodingException e) {
-        throw new RuntimeException(e); // Not possible.
-      }
-    }
-
-    // This is fast for both StringBuilder and String.
-    return matcherInput.asCharSequence().subSequence(start, end).toString();
+    return matcherInput.substring(start, end);
   }
 
   /** Helper for Pattern: return input length. */
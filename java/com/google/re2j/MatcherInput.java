@@ -47,6 +47,16 @@ abstract class MatcherInput {
 
   abstract int length();
 
+  /**
+   * Return the MachineInput for positions [0, end) of the input.
+   */
+  abstract MachineInput machineInput(int end);
+
+  /**
+   * Return the text at positions [start, end) of the input.
+   */
+  abstract String substring(int start, int end);
+
   static class Utf8MatcherInput extends MatcherInput {
     byte[] bytes;
 
@@ -73,6 +83,17 @@ abstract class MatcherInput {
     public int length() {
       return bytes.length;
     }
+
+    @Override
+    MachineInput machineInput(int end) {
+      return MachineInput.fromUTF8(bytes, 0, end);
+    }
+
+    @Override
+    String substring(int start, int end) {
+      // UTF_8 is matched in binary mode. So slice the bytes.
+      return new String(bytes, start, end - start, Charset.forName("UTF-8"));
+    }
   }
 
   static class Utf16MatcherInput extends MatcherInput {
@@ -101,5 +122,16 @@ abstract class MatcherInput {
     public int length() {
       return charSequence.length();
     }
+
+    @Override
+    MachineInput machineInput(int end) {
+      return MachineInput.fromUTF16(charSequence, 0, end);
+    }
+
+    @Override
+    String substring(int start, int end) {
+      // This is fast for both StringBuilder and String.
+      return charSequence.subSequence(start, end).toString();
+    }
   }
 }
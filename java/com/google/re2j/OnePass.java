@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A OnePass matches an input against a "one-pass" Prog, in which at most one
+// thread of the NFA in Machine is ever alive during an anchored search: from
+// every position, the instructions that consume the next rune have disjoint
+// rune sets, and no instruction can be reached along two different paths.
+// The search is then a single left-to-right walk that updates one capture
+// array in place, with none of Machine's thread queues or capture copying.
+//
+// The Prog is split into nodes, one for prog.start and one for the out of
+// each instruction that consumes a rune.  For each node we list, in priority
+// order, the paths through ALT, NOP, CAPTURE and EMPTY_WIDTH instructions to
+// the instructions that consume a rune or match, with the empty-width
+// conditions and capture slots along the way.
+//
+// See http://swtch.com/~rsc/regexp/regexp3.html#onepass.
+//
+// Called by RE2.doExecute.
+final class OnePass {
+
+  // Larger programs are not analyzed.
+  private static final int MAX_INST = 1000;
+
+  // The paths from one pc to the instructions that consume a rune or match.
+  private static final class Node {
+    int[] cond; // EMPTY_* conditions required along each path
+    int[][] caps; // capture slots set along each path
+    Inst[] leaf; // instruction at the end of each path
+    int[] next; // for rune instructions, the index of the node at leaf.out
+    boolean needsFlag; // whether any path has conditions
+  }
+
+  private final Node[] nodes; // nodes[0] is for prog.start
+
+  private OnePass(Node[] nodes) {
+    this.nodes = nodes;
+  }
+
+  // compile() returns a OnePass for |prog|, or null if |prog| is not one-pass.
+  static OnePass compile(Prog prog) {
+    int n = prog.numInst();
+    if (n > MAX_INST) {
+      return null;
+    }
+    int[] nodeOf = new int[n];
+    Arrays.fill(nodeOf, -1);
+    List<Integer> pcs = new ArrayList<Integer>();
+    List<Node> nodes = new ArrayList<Node>();
+    nodeOf[prog.start] = 0;
+    pcs.add(prog.start);
+    boolean[] visited = new boolean[n];
+    for (int i = 0; i < pcs.size(); i++) {
+      Node node = analyze(prog, pcs.get(i), visited);
+      if (node == null) {
+        return null;
+      }
+      for (int j = 0; j < node.leaf.length; j++) {
+        Inst leaf = node.leaf[j];
+        if (leaf.op == Inst.MATCH) {
+          continue;
+        }
+        if (nodeOf[leaf.out] < 0) {
+          nodeOf[leaf.out] = pcs.size();
+          pcs.add(leaf.out);
+        }
+        node.next[j] = nodeOf[leaf.out];
+      }
+      nodes.add(node);
+    }
+    return new OnePass(nodes.toArray(new Node[nodes.size()]));
+  }
+
+  // Accumulates the paths of a node.
+  private static final class PathList {
+    final List<Integer> cond = new ArrayList<Integer>();
+    final List<int[]> caps = new ArrayList<int[]>();
+    final List<Inst> leaf = new ArrayList<Inst>();
+  }
+
+  // analyze() returns the node for |pc|, or null if it shows that the
+  // program is not one-pass.
+  private static Node analyze(Prog prog, int pc, boolean[] visited) {
+    Arrays.fill(visited, false);
+    PathList paths = new PathList();
+    if (!walk(prog, pc, 0, new int[prog.numInst()], 0, visited, paths)) {
+      return null;
+    }
+    int n = paths.leaf.size();
+    Node node = new Node();
+    node.cond = new int[n];
+    node.caps = paths.caps.toArray(new int[n][]);
+    node.leaf = paths.leaf.toArray(new Inst[n]);
+    node.next = new int[n];
+    int[][] runes = new int[n][];
+    for (int i = 0; i < n; i++) {
+      node.cond[i] = paths.cond.get(i);
+      node.needsFlag |= node.cond[i] != 0;
+      node.next[i] = -1;
+      if (node.leaf[i].op == Inst.MATCH) {
+        continue;
+      }
+      runes[i] = runeRanges(node.leaf[i]);
+      for (int j = 0; j < i; j++) {
+        if (runes[j] != null && overlap(runes[i], runes[j])) {
+          return null;
+        }
+      }
+    }
+    return node;
+  }
+
+  // walk() adds to |paths| the paths from |pc|, given the conditions |cond|
+  // and capture slots caps[:ncaps] of the path to |pc|.  Returns false if
+  // some instruction can be reached twice.
+  private static boolean walk(
+      Prog prog, int pc, int cond, int[] caps, int ncaps, boolean[] visited, PathList paths) {
+    if (pc == 0) {
+      return true; // FAIL
+    }
+    if (visited[pc]) {
+      return false;
+    }
+    visited[pc] = true;
+    Inst inst = prog.inst[pc];
+    switch (inst.op) {
+      case Inst.FAIL:
+        return true;
+
+      case Inst.ALT:
+      case Inst.ALT_MATCH:
+        return walk(prog, inst.out, cond, caps, ncaps, visited, paths)
+            && walk(prog, inst.arg, cond, caps, ncaps, visited, paths);
+
+      case Inst.EMPTY_WIDTH:
+        return walk(prog, inst.out, cond | inst.arg, caps, ncaps, visited, paths);
+
+      case Inst.NOP:
+        return walk(prog, inst.out, cond, caps, ncaps, visited, paths);
+
+      case Inst.CAPTURE:
+        caps[ncaps] = inst.arg;
+        return walk(prog, inst.out, cond, caps, ncaps + 1, visited, paths);
+
+      default: // MATCH or RUNE*
+        paths.cond.add(cond);
+        paths.caps.add(Arrays.copyOf(caps, ncaps));
+        paths.leaf.add(inst);
+        return true;
+    }
+  }
+
+  // Returns the runes matched by rune instruction |inst| as a sorted list of
+  // disjoint [lo, hi] pairs.
+  private static int[] runeRanges(Inst inst) {
+    switch (inst.op) {
+      case Inst.RUNE_ANY:
+        return new int[] {0, Integer.MAX_VALUE};
+      case Inst.RUNE_ANY_NOT_NL:
+        return new int[] {0, '\n' - 1, '\n' + 1, Integer.MAX_VALUE};
+      case Inst.RUNE1:
+        return new int[] {inst.runes[0], inst.runes[0]};
+      default:
+        break;
+    }
+    if (inst.runes.length != 1) {
+      return inst.runes;
+    }
+    return new int[] {inst.runes[0], inst.runes[0]};
+  }
+
+  // Reports whether the sorted range lists |x| and |y| intersect.
+  private static boolean overlap(int[] x, int[] y) {
+    int i = 0;
+    int j = 0;
+    while (i < x.length && j < y.length) {
+      if (x[i + 1] < y[j]) {
+        i += 2;
+      } else if (y[j + 1] < x[i]) {
+        j += 2;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // match() runs an anchored search of |in| from |pos|, as Machine.match
+  // would with a single thread started at |pos|, with leftmost-longest
+  // semantics if |longest|.  Returns the |ncap| submatch positions, or null if
+  // there is no match.
+  int[] match(MachineInput in, int pos, int anchor, int ncap, boolean longest) {
+    int[] cap = new int[ncap];
+    Arrays.fill(cap, -1);
+    cap[0] = pos;
+    int[] matchcap = null;
+    int end = in.endPos();
+    Node node = nodes[0];
+    int r = in.step(pos);
+    for (; ; ) {
+      int c = r >> 3;
+      int flag = 0; // bitmask of EMPTY_* flags
+      if (node.needsFlag) {
+        flag = pos == 0 ? Utils.emptyOpContext(-1, c) : in.context(pos);
+      }
+      int next = -1;
+      for (int i = 0; i < node.leaf.length; i++) {
+        if ((node.cond[i] & ~flag) != 0) {
+          continue;
+        }
+        Inst inst = node.leaf[i];
+        if (inst.op == Inst.MATCH) {
+          if (anchor == RE2.ANCHOR_BOTH && pos != end) {
+            continue;
+          }
+          if (!longest || matchcap == null || matchcap[1] < pos) {
+            if (matchcap == null) {
+              matchcap = new int[ncap];
+            }
+            System.arraycopy(cap, 0, matchcap, 0, ncap);
+            setCaps(matchcap, node.caps[i], pos);
+            matchcap[1] = pos;
+          }
+          if (!longest) {
+            break; // cuts all lower-priority paths
+          }
+          continue;
+        }
+        if (next < 0 && r != MachineInput.EOF && matchRune(inst, c)) {
+          next = i;
+        }
+      }
+      if (next < 0) {
+        break;
+      }
+      setCaps(cap, node.caps[next], pos);
+      node = nodes[node.next[next]];
+      pos += r & 7;
+      r = in.step(pos);
+    }
+    return matchcap;
+  }
+
+  private static void setCaps(int[] cap, int[] slots, int pos) {
+    for (int slot : slots) {
+      if (slot < cap.length) {
+        cap[slot] = pos;
+      }
+    }
+  }
+
+  private static boolean matchRune(Inst inst, int c) {
+    switch (inst.op) {
+      case Inst.RUNE:
+        return inst.matchRune(c);
+      case Inst.RUNE1:
+        return c == inst.runes[0];
+      case Inst.RUNE_ANY:
+        return true;
+      default: // RUNE_ANY_NOT_NL
+        return c != '\n';
+    }
+  }
+}
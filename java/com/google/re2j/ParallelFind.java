@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// ParallelFind finds the matches that successive calls to Matcher.find()
+// would find in an input, splitting the input into chunks that it searches
+// concurrently.
+//
+// Each chunk is searched speculatively, as if a search began at its start:
+// from there, for matches that start in the chunk, each search going on
+// where Matcher.find() would after the last.  The chunks are then joined in
+// order.  If the sequential search enters a chunk at or before its start,
+// having found no match in between, it finds just what the speculative one
+// found: the chunks start at "sync points", which the runes decoded from
+// any earlier position do not straddle, and in well-formed input, a search
+// from any position before a rune tries the same starts from that rune on.
+// Otherwise, as when the last match of a chunk runs on into the next, the
+// search goes on sequentially from where it is, until it finds a match that
+// the speculative search also found, from which on the two are the same.
+//
+// When the matches of the pattern are bounded in length, a search for a
+// match starting before the end of a chunk needs only the input up to that
+// length past it, with a few more bytes for the context after the match;
+// otherwise it reads on until it finds a match, past the chunk if need be.
+@GwtIncompatible
+final class ParallelFind {
+
+  // The least input worth a chunk of its own.
+  private static final int MIN_CHUNK = 1 << 16;
+
+  // How far past the even split of the input to look for a sync point.
+  private static final int SLACK = 16;
+
+  private final RE2 re2;
+  private final MatcherInput input;
+  private final int length;
+  private final boolean utf8;
+  private final int maxLength; // of a match in the units of the input, or -1 if unbounded
+
+  ParallelFind(RE2 re2, MatcherInput input) {
+    this.re2 = re2;
+    this.input = input;
+    length = input.length();
+    utf8 = input.getEncoding() == MatcherInput.Encoding.UTF_8;
+    maxLength = utf8 ? re2.matchLength.maxUTF8 : re2.matchLength.maxUTF16;
+  }
+
+  // Returns the number of chunks to split the input into: a few for each
+  // processor, if the input is long enough.
+  int defaultChunks() {
+    int processors = Runtime.getRuntime().availableProcessors();
+    return Math.max(1, Math.min(length / MIN_CHUNK, 4 * processors));
+  }
+
+  // run() returns the [start, end) pairs of the matches, splitting the
+  // input into at most |chunks| chunks, which it searches with |executor|.
+  int[] run(ExecutorService executor, int chunks) throws InterruptedException {
+    int[] bounds = split(chunks);
+    int n = bounds.length - 1;
+    if (n == 1) {
+      return find(0, bounds[1]);
+    }
+    List<Future<int[]>> futures = new ArrayList<Future<int[]>>(n);
+    try {
+      for (int k = 0; k < n; k++) {
+        final int start = bounds[k];
+        final int end = bounds[k + 1];
+        futures.add(
+            executor.submit(
+                new Callable<int[]>() {
+                  @Override
+                  public int[] call() {
+                    return searchChunk(start, end);
+                  }
+                }));
+      }
+      Matches out = new Matches();
+      int[] group = new int[2];
+      int pos = 0; // where the sequential search goes on
+      for (int k = 0; k < n; k++) {
+        int[] spec = get(futures.get(k));
+        int start = bounds[k];
+        int end = bounds[k + 1];
+        if (spec != null && pos <= start) {
+          out.add(spec, 0);
+          if (spec.length > 0) {
+            pos = resume(spec, spec.length - 2);
+          }
+          continue;
+        }
+        while (search(pos, end, group)) {
+          int j = spec == null ? -1 : indexOf(spec, group[0], group[1]);
+          if (j >= 0) {
+            out.add(spec, j);
+            pos = resume(spec, spec.length - 2);
+            break;
+          }
+          out.add(group, 0);
+          pos = resume(group, 0);
+        }
+      }
+      return out.toArray();
+    } finally {
+      for (Future<int[]> f : futures) {
+        f.cancel(true);
+      }
+    }
+  }
+
+  private static int[] get(Future<int[]> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  // split() returns the bounds of up to |chunks| chunks of the input, each
+  // but the first starting at a sync point.  The last ends past the end of
+  // the input, where an empty match may start.
+  private int[] split(int chunks) {
+    MachineInput in = input.machineInput(length);
+    int[] bounds = new int[chunks + 1];
+    int n = 1;
+    for (int k = 1; k < chunks; k++) {
+      int p = (int) ((long) length * k / chunks);
+      for (int limit = Math.min(p + SLACK, length); p < limit && !isSyncPoint(in, p); p++) {}
+      if (p > bounds[n - 1] && p < length && isSyncPoint(in, p)) {
+        bounds[n++] = p;
+      }
+    }
+    bounds[n++] = length + 1;
+    int[] b = new int[n];
+    System.arraycopy(bounds, 0, b, 0, n);
+    return b;
+  }
+
+  // Reports whether no rune decoded from a position before |p| runs past
+  // it, so that every search that steps from rune to rune stops at |p|.
+  // A sequence cut short by the end of the input decodes as EOF, where the
+  // search stops before reaching |p| at all.
+  private static boolean isSyncPoint(MachineInput in, int p) {
+    for (int i = Math.max(0, p - 3); i < p; i++) {
+      int r = in.step(i);
+      if (r == MachineInput.EOF || i + (r & 7) > p) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // searchChunk() returns the [start, end) pairs of the matches that start
+  // in [start, end) of a search from |start|, or null if that part of the
+  // input is not well-formed UTF-8, for which the sequential search may
+  // try other starts.
+  private int[] searchChunk(int start, int end) {
+    if (utf8 && !input.machineInput(length).isWellFormed(start, Math.min(end, length))) {
+      return null;
+    }
+    return find(start, end);
+  }
+
+  // find() returns the [start, end) pairs of the matches that start in
+  // [start, end) of a search from |start|.
+  private int[] find(int start, int end) {
+    Matches out = new Matches();
+    int[] group = new int[2];
+    for (int pos = start; search(pos, end, group); pos = resume(group, 0)) {
+      out.add(group, 0);
+    }
+    return out.toArray();
+  }
+
+  // search() finds the match that Matcher.find() would find from |pos| if
+  // it starts before |limit|, and stores its bounds in |group|.
+  private boolean search(int pos, int limit, int[] group) {
+    if (pos >= limit) {
+      return false;
+    }
+    int end = length;
+    if (maxLength >= 0) {
+      end = (int) Math.min(end, (long) limit + maxLength + 4);
+    }
+    return re2.match(input, pos, end, RE2.UNANCHORED, group, 1) && group[0] < limit;
+  }
+
+  // Returns where Matcher.find() goes on after the match at m[i:i+2].
+  private static int resume(int[] m, int i) {
+    return m[i] == m[i + 1] ? m[i + 1] + 1 : m[i + 1]; // empty match - nudge forward
+  }
+
+  // Returns the index in |m| of the match [start, end), or -1.
+  private static int indexOf(int[] m, int start, int end) {
+    int lo = 0;
+    int hi = m.length / 2;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (m[2 * mid] < start) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return 2 * lo < m.length && m[2 * lo] == start && m[2 * lo + 1] == end ? 2 * lo : -1;
+  }
+
+  // A growable list of [start, end) pairs.
+  private static final class Matches {
+    private int[] a = new int[16];
+    private int n;
+
+    // add() appends the pairs m[from:].
+    void add(int[] m, int from) {
+      int len = m.length - from;
+      if (n + len > a.length) {
+        int[] b = new int[Math.max(2 * a.length, n + len)];
+        System.arraycopy(a, 0, b, 0, n);
+        a = b;
+      }
+      System.arraycopy(m, from, a, n, len);
+      n += len;
+    }
+
+    int[] toArray() {
+      int[] b = new int[n];
+      System.arraycopy(a, 0, b, 0, n);
+      return b;
+    }
+  }
+}
@@ -56,6 +56,9 @@ public final class Pattern implements Serializable {
   // The flags at construction time.
   private final int flags;
 
+  // The DFA memory budget at construction time.
+  private final int dfaMemoryBudget;
+
   // The compiled RE2 regexp.
   private transient final RE2 re2;
 
@@ -69,6 +72,7 @@ public final class Pattern implements Serializable {
     }
     this.pattern = pattern;
     this.flags = flags;
+    this.dfaMemoryBudget = re2.dfaMemoryBudget;
     this.re2 = re2;
   }
 
@@ -80,6 +84,14 @@ public final class Pattern implements Serializable {
     re2.reset();
   }
 
+  /**
+   * Returns the DFA memory budget, in bytes, given when this pattern was compiled; see {@link
+   * #compile(String, int, int)}.
+   */
+  public int dfaMemoryBudget() {
+    return dfaMemoryBudget;
+  }
+
   /**
    * Returns the flags used in the constructor.
    */
@@ -98,6 +110,12 @@ public final class Pattern implements Serializable {
     return re2;
   }
 
+  // Returns the simplified syntax tree of this pattern, with its flags
+  // applied.  Used by the classes that combine several patterns.
+  Regexp simplifiedRegexp() {
+    return Simplify.simplify(Parser.parse(re2.expr, re2Flags(flags)));
+  }
+
   /**
    * Creates and returns a new {@code Pattern} corresponding to compiling {@code regex} with the
    * default flags (0).
@@ -106,7 +124,7 @@ public final class Pattern implements Serializable {
    * @throws PatternSyntaxException if the pattern is malformed
    */
   public static Pattern compile(String regex) {
-    return compile(regex, regex, 0);
+    return compile(regex, regex, 0, DFA.DEFAULT_MEMORY_BUDGET);
   }
 
   /**
@@ -120,6 +138,25 @@ public final class Pattern implements Serializable {
    * @throws IllegalArgumentException if an unknown flag is given
    */
   public static Pattern compile(String regex, int flags) {
+    return compile(regex, flags, DFA.DEFAULT_MEMORY_BUDGET);
+  }
+
+  /**
+   * Creates and returns a new {@code Pattern} corresponding to compiling {@code regex} with the
+   * given {@code flags}, whose matchers may each use about {@code dfaMemoryBudget} bytes to cache
+   * the states of the lazily-built DFA that runs searches not needing any groups. When the cache
+   * fills up too quickly, searches fall back to the slower NFA; a budget of zero disables the DFA.
+   * The budget does not change the observable behaviour.
+   *
+   * @param regex the regular expression
+   * @param flags bitwise OR of the flag constants {@code CASE_INSENSITIVE}, {@code DOTALL}, and
+   * {@code MULTILINE}
+   * @param dfaMemoryBudget the memory budget in bytes
+   * @throws PatternSyntaxException if the regular expression is malformed
+   * @throws IllegalArgumentException if an unknown flag is given, or {@code dfaMemoryBudget} is
+   * negative
+   */
+  public static Pattern compile(String regex, int flags, int dfaMemoryBudget) {
     String flregex = regex;
     if ((flags & CASE_INSENSITIVE) != 0) {
       flregex = "(?i)" + flregex;
@@ -136,19 +173,28 @@ public final class Pattern implements Serializable {
           "Flags should only be a combination "
               + "of MULTILINE, DOTALL, CASE_INSENSITIVE, DISABLE_UNICODE_GROUPS, LONGEST_MATCH");
     }
-    return compile(flregex, regex, flags);
+    if (dfaMemoryBudget < 0) {
+      throw new IllegalArgumentException("negative DFA memory budget: " + dfaMemoryBudget);
+    }
+    return compile(flregex, regex, flags, dfaMemoryBudget);
   }
 
   /**
    * Helper: create new Pattern with given regex and flags. Flregex is the regex with flags applied.
    */
-  private static Pattern compile(String flregex, String regex, int flags) {
+  private static Pattern compile(String flregex, String regex, int flags, int dfaMemoryBudget) {
+    RE2 re2 = RE2.compileImpl(flregex, re2Flags(flags), (flags & LONGEST_MATCH) != 0);
+    re2.dfaMemoryBudget = dfaMemoryBudget;
+    return new Pattern(regex, flags, re2);
+  }
+
+  // Returns the RE2 parser flags for the Pattern flags |flags|.
+  private static int re2Flags(int flags) {
     int re2Flags = RE2.PERL;
     if ((flags & DISABLE_UNICODE_GROUPS) != 0) {
       re2Flags &= ~RE2.UNICODE_GROUPS;
     }
-    return new Pattern(
-        regex, flags, RE2.compileImpl(flregex, re2Flags, (flags & LONGEST_MATCH) != 0));
+    return re2Flags;
   }
 
   /**
@@ -188,6 +234,91 @@ public final class Pattern implements Serializable {
     return new Matcher(this, MatcherInput.utf8(input));
   }
 
+  /**
+   * Creates a new {@code Matcher} matching the pattern against the UTF-8 bytes of the buffer from
+   * its position to its limit. The bytes are read where they are, without copying, whether the
+   * buffer is a heap, direct or memory-mapped one; offsets such as {@link Matcher#start()} are
+   * relative to the position. The buffer's position and limit are left unchanged, and later
+   * changes to them do not affect the matcher, but its contents must not change while it is in
+   * use.
+   *
+   * @param input the input buffer
+   */
+  // Not imported: GWT, which has no java.nio.ByteBuffer, leaves this method
+  // out of the compilation, but not the imports.
+  @GwtIncompatible
+  public Matcher matcher(java.nio.ByteBuffer input) {
+    return new Matcher(this, new ByteBufferMatcherInput(input));
+  }
+
+  /**
+   * Creates a new {@code Matcher} matching the pattern against UTF-8 input held in pieces: the
+   * bytes of each buffer from its position to its limit, in the order of the list, as if they were
+   * joined. The buffers are read where they are, without joining them; a rune or a match may span
+   * several. Offsets such as {@link Matcher#start()} count from the position of the first buffer,
+   * across all. Byte arrays can be passed wrapped with {@link java.nio.ByteBuffer#wrap(byte[])},
+   * which does not copy them either. As with {@link #matcher(java.nio.ByteBuffer)}, the buffers'
+   * positions and limits are left unchanged, but their contents must not change while the
+   * matcher is in use.
+   *
+   * @param input the input buffers
+   */
+  @GwtIncompatible
+  public Matcher matcher(java.util.List<? extends java.nio.ByteBuffer> input) {
+    return new Matcher(this, new SegmentedMatcherInput(input));
+  }
+
+  /**
+   * Creates a new {@code StreamMatcher} matching the pattern against UTF-8 input that is fed to it
+   * in pieces.
+   */
+  public StreamMatcher streamMatcher() {
+    return new StreamMatcher(this);
+  }
+
+  /**
+   * Creates a new {@code FileScanner} searching the lines of UTF-8 files for the pattern.
+   */
+  @GwtIncompatible
+  public FileScanner fileScanner() {
+    return new FileScanner(this);
+  }
+
+  /**
+   * Returns the start and end of each match that successive calls to {@link Matcher#find()} would
+   * find in {@code input}, in pairs: {@code [start0, end0, start1, end1, ...]}. Long input is split
+   * into chunks, which tasks submitted to {@code executor}, such as a {@code ForkJoinPool}, search
+   * concurrently, and the calling thread joins their results. Patterns whose matches are bounded in
+   * length gain the most; for others, the search of a chunk may read on past it to the next match.
+   *
+   * @param input the input string
+   * @param executor the executor to run the tasks
+   * @throws InterruptedException if the calling thread is interrupted while waiting for the tasks
+   */
+  // Not imported: GWT has no ExecutorService.
+  @GwtIncompatible
+  public int[] findAll(CharSequence input, java.util.concurrent.ExecutorService executor)
+      throws InterruptedException {
+    ParallelFind find = new ParallelFind(re2, MatcherInput.utf16(input));
+    return find.run(executor, find.defaultChunks());
+  }
+
+  /**
+   * Returns the start and end of each match that successive calls to {@link Matcher#find()} would
+   * find in the UTF-8 bytes of {@code input}, in pairs, searching chunks of long input concurrently
+   * as {@link #findAll(CharSequence, java.util.concurrent.ExecutorService)} does.
+   *
+   * @param input the input byte array
+   * @param executor the executor to run the tasks
+   * @throws InterruptedException if the calling thread is interrupted while waiting for the tasks
+   */
+  @GwtIncompatible
+  public int[] findAll(byte[] input, java.util.concurrent.ExecutorService executor)
+      throws InterruptedException {
+    ParallelFind find = new ParallelFind(re2, MatcherInput.utf8(input));
+    return find.run(executor, find.defaultChunks());
+  }
+
   // This is visible for testing.
   Matcher matcher(MatcherInput input) {
     return new Matcher(this, input);
@@ -335,7 +466,7 @@ public final class Pattern implements Serializable {
   Object readResolve() {
     // The deserialized version will be missing the RE2 instance, so we need to create a new,
     // compiled version.
-    return Pattern.compile(pattern, flags);
+    return Pattern.compile(pattern, flags, dfaMemoryBudget);
   }
 
   @Override
@@ -348,13 +479,16 @@ public final class Pattern implements Serializable {
     }
 
     Pattern other = (Pattern) o;
-    return flags == other.flags && pattern.equals(other.pattern);
+    return flags == other.flags
+        && dfaMemoryBudget == other.dfaMemoryBudget
+        && pattern.equals(other.pattern);
   }
 
   @Override
   public int hashCode() {
     int result = pattern.hashCode();
     result = 31 * result + flags;
+    result = 31 * result + dfaMemoryBudget;
     return result;
   }
 
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+// Original C++ source here:
+// https://github.com/google/re2/blob/main/re2/prefilter.cc
+
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+// A Prefilter is a boolean formula over literal strings, its atoms, that
+// holds for every input that a regular expression matches somewhere in: an
+// atom holds if the input contains it.  For example, the prefilter of
+// abc+(de|fg) is "abc AND (de OR fg)".  Inputs for which it does not hold
+// need not be searched.
+//
+// Atoms and inputs are compared after mapping each rune to a representative
+// of its case folding orbit (see fold()), so that a prefilter also holds for
+// case-insensitive matches.
+//
+// Used by FilteredPatternSet.
+final class Prefilter {
+
+  static final int ALL = 0; // holds for every input
+  static final int NONE = 1; // holds for no input
+  static final int ATOM = 2; // holds if the input contains atom
+  static final int AND = 3; // holds if all of subs hold
+  static final int OR = 4; // holds if one of subs holds
+
+  // Exact sets larger than this are turned into formulas.
+  private static final int MAX_EXACT = 16;
+
+  // Character classes with more runes than this hold for any input.
+  private static final int MAX_CLASS = 4;
+
+  private static final Prefilter ALL_PREFILTER = new Prefilter(ALL, null, null);
+  private static final Prefilter NONE_PREFILTER = new Prefilter(NONE, null, null);
+
+  final int op;
+  final String atom; // for ATOM
+  final List<Prefilter> subs; // for AND, OR
+  int index = -1; // for ATOM: index of atom, assigned by FilteredPatternSet
+
+  private Prefilter(int op, String atom, List<Prefilter> subs) {
+    this.op = op;
+    this.atom = atom;
+    this.subs = subs;
+  }
+
+  // eval() reports whether the prefilter holds given which atoms the input
+  // contains, by index.
+  boolean eval(boolean[] contains) {
+    switch (op) {
+      case ALL:
+        return true;
+      case NONE:
+        return false;
+      case ATOM:
+        return contains[index];
+      case AND:
+        for (Prefilter sub : subs) {
+          if (!sub.eval(contains)) {
+            return false;
+          }
+        }
+        return true;
+      default: // OR
+        for (Prefilter sub : subs) {
+          if (sub.eval(contains)) {
+            return true;
+          }
+        }
+        return false;
+    }
+  }
+
+  // Formats like RE2's Prefilter::DebugString: AND is juxtaposition, OR is
+  // a parenthesised |-separated list, ALL is the empty string.
+  @Override
+  public String toString() {
+    switch (op) {
+      case ALL:
+        return "";
+      case NONE:
+        return "*no-matches*";
+      case ATOM:
+        return atom;
+      default:
+        {
+          StringBuilder b = new StringBuilder();
+          if (op == OR) {
+            b.append('(');
+          }
+          for (int i = 0; i < subs.size(); i++) {
+            if (i > 0) {
+              b.append(op == OR ? '|' : ' ');
+            }
+            b.append(subs.get(i));
+          }
+          if (op == OR) {
+            b.append(')');
+          }
+          return b.toString();
+        }
+    }
+  }
+
+  // Lower-case representatives of the case folding orbits of the Latin-1
+  // runes.
+  private static final int[] FOLD_LATIN1 = new int[0x100];
+
+  static {
+    for (int r = 0; r < FOLD_LATIN1.length; r++) {
+      FOLD_LATIN1[r] = foldSlow(r);
+    }
+  }
+
+  // fold() returns the representative of the case folding orbit of rune
+  // |r|: the lower case of its smallest member.
+  static int fold(int r) {
+    return r < FOLD_LATIN1.length ? FOLD_LATIN1[r] : foldSlow(r);
+  }
+
+  private static int foldSlow(int r) {
+    int min = r;
+    for (int f = Unicode.simpleFold(r); f != r; f = Unicode.simpleFold(f)) {
+      if (f < min) {
+        min = f;
+      }
+    }
+    return Characters.toLowerCase(min);
+  }
+
+  // build() returns the prefilter of the simplified regular expression
+  // |re|.  Atoms shorter than |minAtomLength| runes are taken to hold for
+  // every input, so that the formula does not depend on them.
+  static Prefilter build(Regexp re, int minAtomLength) {
+    Builder b = new Builder(minAtomLength);
+    return b.takeMatch(b.info(re));
+  }
+
+  // andOr() returns the conjunction (op == AND) or disjunction (op == OR) of
+  // |a| and |b|, simplified.
+  private static Prefilter andOr(int op, Prefilter a, Prefilter b) {
+    // Put the trivial operand, if any, first.
+    if (b.op == ALL || b.op == NONE) {
+      Prefilter t = a;
+      a = b;
+      b = t;
+    }
+    if (a.op == ALL || a.op == NONE) {
+      // ALL AND b = b; NONE OR b = b; ALL OR b = ALL; NONE AND b = NONE.
+      if ((a.op == ALL && op == AND) || (a.op == NONE && op == OR)) {
+        return b;
+      }
+      return a;
+    }
+    List<Prefilter> subs = new ArrayList<Prefilter>();
+    for (Prefilter p : new Prefilter[] {a, b}) {
+      if (p.op == op) {
+        subs.addAll(p.subs);
+      } else {
+        subs.add(p);
+      }
+    }
+    return new Prefilter(op, null, subs);
+  }
+
+  // Info is what is known of a subexpression while building a prefilter:
+  // either the exact set of (folded) strings it matches, or a prefilter.
+  private static final class Info {
+    TreeSet<String> exact; // null if not exact
+    Prefilter match;
+
+    static Info exact(TreeSet<String> exact) {
+      Info info = new Info();
+      info.exact = exact;
+      return info;
+    }
+
+    static Info match(Prefilter match) {
+      Info info = new Info();
+      info.match = match;
+      return info;
+    }
+  }
+
+  private static final class Builder {
+    private final int minAtomLength;
+
+    Builder(int minAtomLength) {
+      this.minAtomLength = minAtomLength;
+    }
+
+    Info info(Regexp re) {
+      switch (re.op) {
+        case NO_MATCH:
+          return Info.match(NONE_PREFILTER);
+
+        case EMPTY_MATCH:
+        case BEGIN_LINE:
+        case END_LINE:
+        case BEGIN_TEXT:
+        case END_TEXT:
+        case WORD_BOUNDARY:
+        case NO_WORD_BOUNDARY:
+          return Info.exact(strings(""));
+
+        case LITERAL:
+          {
+            StringBuilder b = new StringBuilder();
+            for (int r : re.runes) {
+              b.appendCodePoint(fold(r));
+            }
+            return Info.exact(strings(b.toString()));
+          }
+
+        case CHAR_CLASS:
+          {
+            int n = 0;
+            for (int i = 0; i < re.runes.length; i += 2) {
+              n += re.runes[i + 1] - re.runes[i] + 1;
+              if (n > MAX_CLASS) {
+                return Info.match(ALL_PREFILTER);
+              }
+            }
+            if (n == 0) {
+              return Info.match(NONE_PREFILTER);
+            }
+            TreeSet<String> exact = new TreeSet<String>();
+            for (int i = 0; i < re.runes.length; i += 2) {
+              for (int r = re.runes[i]; r <= re.runes[i + 1]; r++) {
+                exact.add(new String(Character.toChars(fold(r))));
+              }
+            }
+            return Info.exact(exact);
+          }
+
+        case ANY_CHAR:
+        case ANY_CHAR_NOT_NL:
+        case STAR:
+        case QUEST:
+          return Info.match(ALL_PREFILTER);
+
+        case CAPTURE:
+          return info(re.subs[0]);
+
+        case PLUS:
+          return Info.match(takeMatch(info(re.subs[0])));
+
+        case REPEAT:
+          // Simplify has expanded the repetitions that it can.
+          if (re.min == 0) {
+            return Info.match(ALL_PREFILTER);
+          }
+          return Info.match(takeMatch(info(re.subs[0])));
+
+        case CONCAT:
+          {
+            // Concatenate the exact sets of runs of exact subexpressions,
+            // as long as the cross products stay small.
+            Prefilter match = null;
+            TreeSet<String> exact = null;
+            for (Regexp sub : re.subs) {
+              Info ci = info(sub);
+              if (ci.exact == null
+                  || (exact != null && ci.exact.size() * exact.size() > MAX_EXACT)) {
+                // The exact run is over.
+                match = and(match, exact == null ? null : takeMatch(Info.exact(exact)));
+                exact = null;
+                match = and(match, takeMatch(ci));
+              } else {
+                exact = exact == null ? ci.exact : crossProduct(exact, ci.exact);
+              }
+            }
+            if (match == null) {
+              return Info.exact(exact == null ? strings("") : exact);
+            }
+            return Info.match(and(match, exact == null ? null : takeMatch(Info.exact(exact))));
+          }
+
+        case ALTERNATE:
+          {
+            Info info = info(re.subs[0]);
+            for (int i = 1; i < re.subs.length; i++) {
+              Info ci = info(re.subs[i]);
+              if (info.exact != null
+                  && ci.exact != null
+                  && info.exact.size() + ci.exact.size() <= MAX_EXACT) {
+                info.exact.addAll(ci.exact);
+              } else {
+                info = Info.match(andOr(OR, takeMatch(info), takeMatch(ci)));
+              }
+            }
+            return info;
+          }
+
+        default:
+          throw new IllegalStateException("unexpected op: " + re.op);
+      }
+    }
+
+    // Returns the conjunction of |a| and |b|, either of which may be null.
+    private static Prefilter and(Prefilter a, Prefilter b) {
+      if (a == null) {
+        return b;
+      }
+      if (b == null) {
+        return a;
+      }
+      return andOr(AND, a, b);
+    }
+
+    // takeMatch() returns the prefilter of |info|, converting its exact set
+    // if it has one.
+    Prefilter takeMatch(Info info) {
+      if (info.exact != null) {
+        info.match = orStrings(info.exact);
+        info.exact = null;
+      }
+      return info.match;
+    }
+
+    // orStrings() returns the disjunction of the atoms |strings|.
+    private Prefilter orStrings(TreeSet<String> strings) {
+      // A string containing another one of the set is redundant: an input
+      // that contains it also contains the other.
+      List<String> atoms = new ArrayList<String>();
+      for (String s : strings) {
+        if (s.isEmpty() || s.codePointCount(0, s.length()) < minAtomLength) {
+          // Every input contains the empty string.
+          return ALL_PREFILTER;
+        }
+        atoms.add(s);
+      }
+      Prefilter or = NONE_PREFILTER;
+      outer:
+      for (String s : atoms) {
+        for (String t : atoms) {
+          if (t.length() < s.length() && s.contains(t)) {
+            continue outer;
+          }
+        }
+        or = andOr(OR, or, new Prefilter(ATOM, s, null));
+      }
+      return or;
+    }
+  }
+
+  private static TreeSet<String> strings(String s) {
+    TreeSet<String> set = new TreeSet<String>();
+    set.add(s);
+    return set;
+  }
+
+  private static TreeSet<String> crossProduct(TreeSet<String> a, TreeSet<String> b) {
+    TreeSet<String> set = new TreeSet<String>();
+    for (String s : a) {
+      for (String t : b) {
+        set.add(s + t);
+      }
+    }
+    return set;
+  }
+}
@@ -21,6 +21,8 @@ final class Prog {
   int start; // index of start instruction
   int numCap = 2; // number of CAPTURE insts in re
   // 2 => implicit ( and ) for whole match $0
+  RuneClasses classes; // set by RuneClasses.assign; null if not computed
+  FirstRunes first; // set by FirstRunes.assign; null if any rune may start a match
 
   // Constructs an empty program.
   Prog() {}
@@ -76,6 +78,21 @@ final class Prog {
     return i.op == Inst.MATCH;
   }
 
+  // foldPrefix() returns a literal string that all matches for the regexp
+  // must start with when some of its runes are compared ignoring case, each
+  // matching its whole case folding orbit, by appending it to |prefix|.
+  // A case-insensitive rune is the class of its orbit, of which the first
+  // rune stands for it.
+  void foldPrefix(StringBuilder prefix) {
+    Inst i = skipNop(start);
+    while (Inst.isRuneOp(i.op)
+        && ((i.arg & RE2.FOLD_CASE) != 0
+            || (i.runes.length == 1 && Unicode.simpleFold(i.runes[0]) == i.runes[0]))) {
+      prefix.appendCodePoint(i.runes[0]);
+      i = skipNop(i.out);
+    }
+  }
+
   // startCond() returns the leading empty-width conditions that must be true
   // in any match.  It returns -1 (all bits set) if no matches are possible.
   int startCond() {
@@ -20,8 +20,6 @@
 
 package com.google.re2j;
 
-import com.google.re2j.MatcherInput.Encoding;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -111,9 +109,24 @@ class RE2 {
   boolean longest;
 
   String prefix; // required UTF-16 prefix in unanchored matches
-  byte[] prefixUTF8; // required UTF-8 prefix in unanchored matches
+  StringSearch prefixSearch; // searches for prefix, in UTF-16 or UTF-8
   boolean prefixComplete; // true iff prefix is the entire regexp
   int prefixRune; // first rune in prefix
+  FoldedPrefix prefixFold; // non-null iff prefix is matched ignoring case
+  OnePass onePass; // non-null iff prog is one-pass
+  Prog reverseProg; // prog reversed, to find where matches start; may be null
+  boolean endAnchored; // true iff reverseProg is set and every match ends at \z
+  LiteralSet literals; // non-null iff the regexp is a union of literal strings
+  LiteralMatcher literalMatcher; // non-null iff the regexp is a single literal string
+  DotStarMatcher dotStarMatcher; // non-null iff the regexp is literal strings and .*
+  RequiredLiteral required; // literal in every match, if any and there is no prefix
+  MatchLength matchLength; // bounds on the length of matches; null for sets
+  private volatile Prog utf8Prog; // prog lowered to UTF-8 bytes; built on first use
+  boolean backtrack = true; // false iff Machine runs where BitState would; for testing
+
+  // Memory budget, in bytes, for the DFA state cache of each pooled machine;
+  // set before the RE2 is first used.
+  int dfaMemoryBudget = DFA.DEFAULT_MEMORY_BUDGET;
 
   // Cache of machines for running regexp. Forms a Treiber stack.
   private final AtomicReference<Machine> pooled = new AtomicReference<Machine>();
@@ -130,9 +143,21 @@ class RE2 {
     this.numSubexp = re2.numSubexp;
     this.longest = re2.longest;
     this.prefix = re2.prefix;
-    this.prefixUTF8 = re2.prefixUTF8;
+    this.prefixSearch = re2.prefixSearch;
     this.prefixComplete = re2.prefixComplete;
     this.prefixRune = re2.prefixRune;
+    this.prefixFold = re2.prefixFold;
+    this.onePass = re2.onePass;
+    this.reverseProg = re2.reverseProg;
+    this.endAnchored = re2.endAnchored;
+    this.literals = re2.literals;
+    this.literalMatcher = re2.literalMatcher;
+    this.dotStarMatcher = re2.dotStarMatcher;
+    this.required = re2.required;
+    this.matchLength = re2.matchLength;
+    this.utf8Prog = re2.utf8Prog;
+    this.backtrack = re2.backtrack;
+    this.dfaMemoryBudget = re2.dfaMemoryBudget;
   }
 
   private RE2(String expr, Prog prog, int numSubexp, boolean longest) {
@@ -190,15 +215,59 @@ class RE2 {
     StringBuilder prefixBuilder = new StringBuilder();
     re2.prefixComplete = prog.prefix(prefixBuilder);
     re2.prefix = prefixBuilder.toString();
-    try {
-      re2.prefixUTF8 = re2.prefix.getBytes("UTF-8");
-    } catch (UnsupportedEncodingException e) {
-      throw new IllegalStateException("can't happen");
-    }
+    re2.prefixSearch = new StringSearch(re2.prefix);
     if (!re2.prefix.isEmpty()) {
       re2.prefixRune = re2.prefix.codePointAt(0);
     }
     re2.namedGroups = re.namedGroups;
+    re2.matchLength = MatchLength.compute(re);
+    re2.onePass = OnePass.compile(prog);
+    // Machine may skip to a UTF-16 prefix that starts inside a surrogate pair,
+    // where stepping backward from the end of the match would not stop.
+    if (!hasSurrogates(re2.prefix)) {
+      re2.reverseProg = Compiler.compileReverse(re);
+      re2.endAnchored = (re2.reverseProg.startCond() & Utils.EMPTY_BEGIN_TEXT) != 0;
+    }
+    re2.literals = LiteralSet.compile(re2, re);
+    if (re2.numSubexp == 0) {
+      re2.literalMatcher = LiteralMatcher.compile(re2, re);
+      re2.dotStarMatcher = DotStarMatcher.compile(re);
+    }
+    if (re2.prefix.isEmpty() && re2.literals == null) {
+      // Case-insensitive expressions may still have a prefix to skip to.
+      StringBuilder foldBuilder = new StringBuilder();
+      prog.foldPrefix(foldBuilder);
+      String fold = foldBuilder.toString();
+      if (!fold.isEmpty() && !hasSurrogates(fold)) {
+        re2.prefix = fold;
+        re2.prefixSearch = new StringSearch(fold);
+        re2.prefixRune = fold.codePointAt(0);
+        re2.prefixFold = new FoldedPrefix(fold);
+      }
+    }
+    if (re2.prefix.isEmpty() && re2.literals == null && re2.literalMatcher == null) {
+      re2.required = RequiredLiteral.compile(re);
+    }
+    return re2;
+  }
+
+  // Returns whether |s| has any surrogate chars.
+  private static boolean hasSurrogates(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // compileSet() returns an RE2 for the program that Compiler.compileSet
+  // builds from |res|.  It is only to be used with matchSet().
+  static RE2 compileSet(Regexp[] res) {
+    RE2 re2 = new RE2("", Compiler.compileSet(res), 0, false);
+    re2.prefix = "";
+    re2.prefixSearch = new StringSearch("");
     return re2;
   }
 
@@ -216,6 +285,18 @@ class RE2 {
     return prog.numInst();
   }
 
+  // utf8Prog() returns prog lowered to read UTF-8 bytes, for DFAs run over
+  // UTF-8 input.  Machines on different threads may build it at the same
+  // time; they build the same program.
+  Prog utf8Prog() {
+    Prog p = utf8Prog;
+    if (p == null) {
+      p = Compiler.compileUTF8(prog);
+      utf8Prog = p;
+    }
+    return p;
+  }
+
   // get() returns a machine to use for matching |this|.  It uses |this|'s
   // machine cache if possible, to avoid unnecessary allocation.
   Machine get() {
@@ -288,10 +369,74 @@ class RE2 {
     return expr;
   }
 
+  // ruledOut() reports whether the length of the input from |pos| rules out
+  // a match with the RE2 Anchor |anchor|.  Then no engine need read it.
+  private boolean ruledOut(MachineInput in, int pos, int anchor) {
+    if (matchLength == null) {
+      return false;
+    }
+    // A match that starts at the start of the text and ends at its end
+    // spans the input.
+    boolean spansInput =
+        anchor == ANCHOR_BOTH || (endAnchored && (cond & Utils.EMPTY_BEGIN_TEXT) != 0);
+    return matchLength.rulesOut(in, pos, spansInput);
+  }
+
   // doExecute() finds the leftmost match in the input and returns
   // the position of its subexpressions.
   // Derived from exec.go.
   private int[] doExecute(MachineInput in, int pos, int anchor, int ncap) {
+    if (cond == Utils.EMPTY_ALL) { // impossible
+      return null;
+    }
+    boolean anchored = anchor != UNANCHORED || (cond & Utils.EMPTY_BEGIN_TEXT) != 0;
+    if (anchored && pos != 0) {
+      return null;
+    }
+    if (ruledOut(in, pos, anchor)) {
+      return null;
+    }
+    if (literalMatcher != null && ncap <= 2) {
+      // Literal strings are searched for without running a program.
+      int start = literalMatcher.find(in, pos, anchor);
+      if (start == LiteralMatcher.NO_MATCH) {
+        return null;
+      } else if (start >= 0) {
+        return ncap == 0
+            ? Utils.EMPTY_INTS
+            : new int[] {start, literalMatcher.matchEnd(in, start)};
+      }
+    }
+    if (dotStarMatcher != null && ncap <= 2) {
+      // So are literal strings separated by .*.
+      int[] match = new int[2];
+      int start = dotStarMatcher.find(in, pos, anchor, match);
+      if (start == DotStarMatcher.NO_MATCH) {
+        return null;
+      } else if (start >= 0) {
+        return ncap == 0 ? Utils.EMPTY_INTS : match;
+      }
+    }
+    if (literals != null) {
+      // Unions of literal strings are matched without running a program.
+      return literals.match(in, pos, anchor, ncap, longest);
+    }
+    if (required != null && !anchored) {
+      // No match starts before the first window that can hold the literal.
+      pos = required.skip(in, pos);
+      if (pos < 0) {
+        return null;
+      }
+    }
+    if (onePass != null && ncap > 2) {
+      // A match starting at |pos| is the leftmost one, and then what the
+      // one-pass search finds is what Machine would.  If the search is
+      // unanchored and nothing matches at |pos|, fall back to Machine.
+      int[] cap = prefixSkip(in, pos) == 0 ? onePass.match(in, pos, anchor, ncap, longest) : null;
+      if (cap != null || anchored) {
+        return cap;
+      }
+    }
     Machine m = get();
     // The Treiber stack cannot reuse nodes, unless the node to be reused has only ever been at
     // the bottom of the stack (i.e., next == null).
@@ -305,11 +450,100 @@ class RE2 {
     }
 
     m.init(ncap);
-    int[] cap = m.match(in, pos, anchor) ? m.submatches() : null;
+    int[] cap;
+    // The DFA settles searches that need at most the overall match.  For
+    // unanchored leftmost-first searches, it finds where the match ends and the
+    // reverse DFA where it starts, so that the submatches, if needed, are
+    // found from there.  Otherwise unanchored searches only tell where some
+    // match ends, and the DFA is just a filter in front of the NFA.
+    boolean reverse = !anchored && !longest && reverseProg != null;
+    int dfaEnd = DFA.FAILED;
+    int start = DFA.FAILED;
+    int end = in.endPos();
+    if (endAnchored && (in.context(end) & Utils.EMPTY_END_TEXT) != 0) {
+      // Every match ends at |end|, so the leftmost one starts at the
+      // leftmost position from which some match reaches it, which the
+      // reverse DFA finds by reading backward only as far as that.
+      start = m.reverseSearch(in, pos, end);
+      if (start == DFA.NO_MATCH || (start >= 0 && anchored && start != pos)) {
+        dfaEnd = DFA.NO_MATCH;
+      } else if (start >= 0) {
+        dfaEnd = end;
+      }
+    }
+    if (dfaEnd == DFA.FAILED && (ncap <= 2 || reverse)) {
+      dfaEnd = m.dfaSearch(in, pos, anchor, ncap == 0 || (!anchored && !reverse));
+      if (dfaEnd >= 0 && reverse && ncap > 0) {
+        start = dfaEnd == pos ? pos : m.reverseSearch(in, pos, dfaEnd);
+      }
+    }
+    if (dfaEnd == DFA.NO_MATCH) {
+      cap = null;
+    } else if (dfaEnd >= 0 && ncap == 0) {
+      cap = Utils.EMPTY_INTS;
+    } else if (dfaEnd >= 0 && anchored && ncap == 2) {
+      cap = new int[] {pos, dfaEnd};
+    } else if (start >= 0 && ncap == 2) {
+      cap = new int[] {start, dfaEnd};
+    } else if (start >= 0 && onePass != null) {
+      cap = onePass.match(in, start, anchor, ncap, longest);
+    } else {
+      if (start < 0) {
+        start = pos;
+      }
+      // No match starts before |start|, so searching from there finds the
+      // same match as searching from |pos|.
+      if (backtrack && BitState.shouldUse(prog, in.endPos() - start)) {
+        // Small programs on short inputs backtrack faster than the NFA runs.
+        cap = m.backtrack(in, start, anchor, ncap);
+      } else {
+        cap = m.match(in, start, anchor) ? m.submatches() : null;
+      }
+    }
     put(m, isNew);
     return cap;
   }
 
+  // matchSet() sets matched[i] for each regexp i of a set compiled by
+  // compileSet() that matches somewhere in |in|.  Returns false if the DFA
+  // gave up, in which case |matched| is incomplete.
+  boolean matchSet(MachineInput in, boolean[] matched) {
+    Machine m = get();
+    boolean isNew = false;
+    if (m == null) {
+      m = new Machine(this);
+      isNew = true;
+    } else if (m.next != null) {
+      m = new Machine(m);
+      isNew = true;
+    }
+    boolean ok = m.dfaSearchSet(in, matched);
+    put(m, isNew);
+    return ok;
+  }
+
+  // startsPrefix() returns whether rune |r| matches the first rune of the
+  // prefix.
+  boolean startsPrefix(int r) {
+    return r == prefixRune || (prefixFold != null && prefixFold.matchesFirst(r));
+  }
+
+  // prefixSkip() returns how far Machine.match, having no threads running at
+  // |pos|, skips ahead to the next occurrence of the literal prefix: 0 if it
+  // stays at |pos|, or -1 if there is no occurrence.  The other engines skip
+  // the same way so that they agree with Machine even on input that is not
+  // well-formed, where the prefix bytes need not be where its runes are.
+  int prefixSkip(MachineInput in, int pos) {
+    if (prefix.isEmpty() || !in.canCheckPrefix()) {
+      return 0;
+    }
+    int r = in.step(pos);
+    if (r != MachineInput.EOF && startsPrefix(in.step(pos + (r & 7)) >> 3)) {
+      return 0;
+    }
+    return in.index(this, pos);
+  }
+
   /**
    * Returns true iff this regexp matches the string {@code s}.
    */
@@ -346,10 +580,32 @@ class RE2 {
     // In Russ' own words:
     // That is, I believe doExecute needs to know the bounds of the whole input
     // as well as the bounds of the subpiece that is being searched.
-    MachineInput machineInput =
-        input.getEncoding() == Encoding.UTF_16
-            ? MachineInput.fromUTF16(input.asCharSequence(), 0, end)
-            : MachineInput.fromUTF8(input.asBytes(), 0, end);
+    MachineInput machineInput = input.machineInput(end);
+    if (ruledOut(machineInput, start, anchor)) {
+      return false;
+    }
+    if (literalMatcher != null && ngroup <= 1) {
+      // Fill in |group| directly, so that Matcher allocates nothing per match.
+      int pos = literalMatcher.find(machineInput, start, anchor);
+      if (pos == LiteralMatcher.NO_MATCH) {
+        return false;
+      } else if (pos >= 0) {
+        if (ngroup == 1 && group != null) {
+          group[0] = pos;
+          group[1] = literalMatcher.matchEnd(machineInput, pos);
+        }
+        return true;
+      }
+    }
+    if (dotStarMatcher != null && ngroup <= 1) {
+      int[] match = ngroup == 1 && group != null ? group : new int[2];
+      int pos = dotStarMatcher.find(machineInput, start, anchor, match);
+      if (pos == DotStarMatcher.NO_MATCH) {
+        return false;
+      } else if (pos >= 0) {
+        return true;
+      }
+    }
     int[] groupMatch = doExecute(machineInput, start, anchor, 2 * ngroup);
 
     if (groupMatch == null) {
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of regular expressions that are matched against an input together, reporting which of
+ * them match.
+ *
+ * <p>
+ * Patterns are added with {@link #add}, then the set is compiled with {@link #compile}, after which
+ * it can match inputs, concurrently if need be. A pattern of the set matches an input if it matches
+ * anywhere in the input, as {@link Matcher#find()} would find. All the patterns are compiled into
+ * a single automaton, which finds all those that match in a single pass over the input, no matter
+ * how many patterns there are.
+ *
+ * <pre>
+ * RegexSet set = new RegexSet();
+ * set.add("GET /admin");
+ * set.add("(?i)select .* from");
+ * set.compile();
+ * int[] matches = set.match(line); // the indexes of the patterns that match
+ * </pre>
+ */
+public final class RegexSet {
+
+  // The flags at construction time.
+  private final int flags;
+
+  // The patterns, in order of addition.
+  private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+  // The parsed and simplified patterns, until the set is compiled.
+  private List<Regexp> regexps = new ArrayList<Regexp>();
+
+  // The RE2 for the program matching all the patterns; null until compiled.
+  private volatile RE2 re2;
+
+  // The DFA memory budget, in bytes.
+  private final int dfaMemoryBudget;
+
+  /**
+   * Creates an empty set whose patterns are compiled with the default flags (0).
+   */
+  public RegexSet() {
+    this(0);
+  }
+
+  /**
+   * Creates an empty set whose patterns are compiled with the given {@code flags}.
+   *
+   * @param flags bitwise OR of the flag constants of {@link Pattern}
+   * @throws IllegalArgumentException if an unknown flag is given
+   */
+  public RegexSet(int flags) {
+    this(flags, DFA.DEFAULT_MEMORY_BUDGET);
+  }
+
+  /**
+   * Creates an empty set whose patterns are compiled with the given {@code flags}, and whose
+   * matchers may each use about {@code dfaMemoryBudget} bytes to cache the states of the
+   * lazily-built automaton that matches all the patterns at once. Sets of many patterns may need a
+   * larger budget than the default: when the cache fills up too quickly, each pattern is matched
+   * on its own instead. The budget does not change the observable behaviour.
+   *
+   * @param flags bitwise OR of the flag constants of {@link Pattern}
+   * @param dfaMemoryBudget the memory budget in bytes
+   * @throws IllegalArgumentException if an unknown flag is given, or {@code dfaMemoryBudget} is
+   * negative
+   */
+  public RegexSet(int flags, int dfaMemoryBudget) {
+    if ((flags
+            & ~(Pattern.MULTILINE
+                | Pattern.DOTALL
+                | Pattern.CASE_INSENSITIVE
+                | Pattern.DISABLE_UNICODE_GROUPS
+                | Pattern.LONGEST_MATCH))
+        != 0) {
+      throw new IllegalArgumentException(
+          "Flags should only be a combination "
+              + "of MULTILINE, DOTALL, CASE_INSENSITIVE, DISABLE_UNICODE_GROUPS, LONGEST_MATCH");
+    }
+    if (dfaMemoryBudget < 0) {
+      throw new IllegalArgumentException("negative DFA memory budget: " + dfaMemoryBudget);
+    }
+    this.flags = flags;
+    this.dfaMemoryBudget = dfaMemoryBudget;
+  }
+
+  /**
+   * Adds a pattern to the set.
+   *
+   * @param regex the regular expression
+   * @return the index of the pattern in the set, which is the number of patterns added before it
+   * @throws PatternSyntaxException if the regular expression is malformed
+   * @throws IllegalStateException if the set has been compiled
+   */
+  public synchronized int add(String regex) {
+    if (re2 != null) {
+      throw new IllegalStateException("RegexSet already compiled");
+    }
+    Pattern pattern = Pattern.compile(regex, flags);
+    regexps.add(pattern.simplifiedRegexp());
+    patterns.add(pattern);
+    return patterns.size() - 1;
+  }
+
+  /**
+   * Compiles the set, after which no more patterns can be added.
+   *
+   * @throws IllegalStateException if the set has already been compiled
+   */
+  public synchronized void compile() {
+    if (re2 != null) {
+      throw new IllegalStateException("RegexSet already compiled");
+    }
+    RE2 re2 = RE2.compileSet(regexps.toArray(new Regexp[regexps.size()]));
+    re2.dfaMemoryBudget = dfaMemoryBudget;
+    regexps = null;
+    this.re2 = re2;
+  }
+
+  /**
+   * Returns the number of patterns in the set.
+   */
+  public synchronized int size() {
+    return patterns.size();
+  }
+
+  /**
+   * Returns the pattern at the given index.
+   *
+   * @param index the index returned by {@link #add}
+   * @throws IndexOutOfBoundsException if there is no such pattern
+   */
+  public synchronized Pattern pattern(int index) {
+    return patterns.get(index);
+  }
+
+  /**
+   * Returns the DFA memory budget, in bytes; see {@link #RegexSet(int, int)}.
+   */
+  public int dfaMemoryBudget() {
+    return dfaMemoryBudget;
+  }
+
+  /**
+   * Returns the indexes, in increasing order, of the patterns that match somewhere in the input.
+   *
+   * @param input the input string
+   * @throws IllegalStateException if the set has not been compiled
+   */
+  public int[] match(CharSequence input) {
+    return match(MachineInput.fromUTF16(input), MatcherInput.utf16(input));
+  }
+
+  /**
+   * Returns the indexes, in increasing order, of the patterns that match somewhere in the input.
+   * Input that is not well-formed UTF-8 is matched against each pattern in turn, as {@link
+   * Matcher#find()} matches it, which is slower.
+   *
+   * @param input the input, in UTF-8
+   * @throws IllegalStateException if the set has not been compiled
+   */
+  public int[] match(byte[] input) {
+    return match(MachineInput.fromUTF8(input), MatcherInput.utf8(input));
+  }
+
+  private int[] match(MachineInput in, MatcherInput input) {
+    RE2 re2 = this.re2;
+    if (re2 == null) {
+      throw new IllegalStateException("RegexSet not compiled");
+    }
+    boolean[] matched = new boolean[patterns.size()];
+    // Where the UTF-8 is not well-formed, the runes that the automaton
+    // decodes need not be those that Matcher.find() tries, which may search
+    // for a literal byte by byte, so there the patterns are matched one by
+    // one too.
+    if (!in.isWellFormed(0, in.endPos()) || !re2.matchSet(in, matched)) {
+      // The DFA ran out of memory, or the input is not well-formed: match
+      // the patterns one by one.
+      for (int i = 0; i < matched.length; i++) {
+        matched[i] = patterns.get(i).matcher(input).find();
+      }
+    }
+    int n = 0;
+    for (boolean m : matched) {
+      if (m) {
+        n++;
+      }
+    }
+    int[] indexes = new int[n];
+    for (int i = 0, j = 0; i < matched.length; i++) {
+      if (matched[i]) {
+        indexes[j++] = i;
+      }
+    }
+    return indexes;
+  }
+}
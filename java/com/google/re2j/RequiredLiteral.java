@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+// A RequiredLiteral is a literal string that every match of a regular
+// expression contains, such as " ERROR " in \d+ ERROR \w+, with the largest
+// number of runes that can come before it in a match, if there is one: 5
+// for " /api/" in .?(GET|POST) /api/.
+//
+// An unanchored search looks for the string first.  If the input does not
+// contain it, nothing matches, and if the distance back to the start of the
+// match is bounded, no match starts before that distance back from the
+// first occurrence, so the engines start there.
+//
+// Used by RE2.doExecute for expressions without a literal prefix, for which
+// Machine skips ahead by itself.
+final class RequiredLiteral {
+
+  final StringSearch literal;
+  final int maxOffset; // in runes, or -1 if unbounded
+
+  private RequiredLiteral(String literal, int maxOffset) {
+    this.literal = new StringSearch(literal);
+    this.maxOffset = maxOffset;
+  }
+
+  // What is known of the matches of a regular expression: their minimum
+  // and maximum lengths in runes, and the longest literal that they all
+  // contain, if any, with the maximum number of runes before it.  -1 stands
+  // for unbounded.
+  private static final class Info {
+    int maxLength;
+    int[] literal; // null if none
+    int offset;
+
+    Info(int maxLength) {
+      this.maxLength = maxLength;
+    }
+
+    Info(int maxLength, int[] literal, int offset) {
+      this.maxLength = maxLength;
+      this.literal = literal;
+      this.offset = offset;
+    }
+  }
+
+  // compile() returns the required literal of |re|, a simplified regular
+  // expression, or null if it has none.
+  static RequiredLiteral compile(Regexp re) {
+    Info info = info(re);
+    if (info.literal == null) {
+      return null;
+    }
+    StringBuilder b = new StringBuilder();
+    for (int r : info.literal) {
+      b.appendCodePoint(r);
+    }
+    return new RequiredLiteral(b.toString(), info.offset);
+  }
+
+  private static int add(int a, int b) {
+    return a < 0 || b < 0 ? -1 : a + b;
+  }
+
+  private static Info info(Regexp re) {
+    switch (re.op) {
+      case NO_MATCH:
+      case EMPTY_MATCH:
+      case BEGIN_LINE:
+      case END_LINE:
+      case BEGIN_TEXT:
+      case END_TEXT:
+      case WORD_BOUNDARY:
+      case NO_WORD_BOUNDARY:
+        return new Info(0);
+
+      case LITERAL:
+        {
+          for (int r : re.runes) {
+            // Case-folded runes are not searched for, nor surrogates, which
+            // may be half of a pair in the input.
+            if (((re.flags & RE2.FOLD_CASE) != 0 && Unicode.simpleFold(r) != r)
+                || (r >= Character.MIN_SURROGATE && r <= Character.MAX_SURROGATE)) {
+              return new Info(re.runes.length);
+            }
+          }
+          return new Info(re.runes.length, re.runes, 0);
+        }
+
+      case CHAR_CLASS:
+      case ANY_CHAR:
+      case ANY_CHAR_NOT_NL:
+        return new Info(1);
+
+      case CAPTURE:
+        return info(re.subs[0]);
+
+      case STAR:
+        return new Info(-1);
+
+      case QUEST:
+        return new Info(info(re.subs[0]).maxLength);
+
+      case PLUS:
+        {
+          // The first repetition holds the literal.
+          Info sub = info(re.subs[0]);
+          sub.maxLength = -1;
+          return sub;
+        }
+
+      case REPEAT:
+        {
+          Info sub = info(re.subs[0]);
+          int max = re.max < 0 || sub.maxLength < 0 ? -1 : re.max * sub.maxLength;
+          return re.min == 0 ? new Info(max) : new Info(max, sub.literal, sub.offset);
+        }
+
+      case CONCAT:
+        {
+          Info info = new Info(0);
+          for (Regexp sub : re.subs) {
+            Info si = info(sub);
+            if (si.literal != null
+                && (info.literal == null || si.literal.length > info.literal.length)) {
+              info.literal = si.literal;
+              info.offset = add(info.maxLength, si.offset);
+            }
+            info.maxLength = add(info.maxLength, si.maxLength);
+          }
+          return info;
+        }
+
+      case ALTERNATE:
+        {
+          Info info = new Info(0);
+          for (Regexp sub : re.subs) {
+            int max = info(sub).maxLength;
+            info.maxLength = info.maxLength < 0 || max < 0 ? -1 : Math.max(info.maxLength, max);
+          }
+          return info;
+        }
+
+      default:
+        throw new IllegalStateException("unexpected op: " + re.op);
+    }
+  }
+
+  // skip() returns the position from which searching |in| from |pos|
+  // finds the same leftmost match, or -1 if nothing matches.
+  //
+  // Machine finds the runes of the literal where they are decoded, which is
+  // where its bytes are only if the text is well-formed; otherwise the
+  // search starts at |pos|.
+  int skip(MachineInput in, int pos) {
+    int i = in.index(literal, pos);
+    if (i < 0) {
+      return in.isWellFormed(pos, in.endPos()) ? -1 : pos;
+    }
+    if (maxOffset < 0 || !in.isWellFormed(pos, pos + i)) {
+      return pos;
+    }
+    // Step back over at most maxOffset runes.
+    int p = pos + i;
+    for (int n = 0; n < maxOffset && p > pos; n++) {
+      p -= in.stepBack(pos, p) & 7;
+    }
+    return p;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// RuneClasses partitions the runes into the equivalence classes of a
+// program: runes in [bounds[i], bounds[i + 1]) belong to class i, and no
+// instruction of the program can tell them apart.  Classes are also split
+// at '\n' and around the word characters, so that each class has a single
+// kind for the EMPTY_* conditions.
+//
+// A machine running the program finds the class of each input rune once,
+// by table lookup for Latin-1 and binary search above, and then tests each
+// RUNE instruction's bitset of classes (see Inst.matchClass) instead of
+// searching its ranges.
+final class RuneClasses {
+
+  // Programs are given classes only if the bitsets of all their RUNE
+  // instructions take at most this many words together.
+  private static final int MAX_BITSET_WORDS = 1 << 16;
+
+  private final int[] bounds;
+  private final int[] latin1Class = new int[256];
+
+  RuneClasses(int[] bounds) {
+    this.bounds = bounds;
+    for (int r = 0, i = 0; r < latin1Class.length; r++) {
+      if (i + 1 < bounds.length && bounds[i + 1] == r) {
+        i++;
+      }
+      latin1Class[r] = i;
+    }
+  }
+
+  // assign() computes the classes of |prog|, a program over runes, and the
+  // bitset of each of its RUNE instructions.  Leaves prog.classes null if
+  // the bitsets would take too much memory, or would not pay off because
+  // the program has no RUNE instructions.
+  static void assign(Prog prog) {
+    int nrune = 0;
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      if (prog.inst[pc].op == Inst.RUNE) {
+        nrune++;
+      }
+    }
+    if (nrune == 0) {
+      return;
+    }
+    RuneClasses classes = new RuneClasses(bounds(prog));
+    int words = (classes.size() + 63) >>> 6;
+    if ((long) nrune * words > MAX_BITSET_WORDS) {
+      return;
+    }
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      Inst inst = prog.inst[pc];
+      if (inst.op != Inst.RUNE) {
+        continue;
+      }
+      long[] set = new long[words];
+      if (inst.runes.length == 1) {
+        classes.add(set, inst.runes[0]);
+      } else {
+        for (int j = 0; j < inst.runes.length; j += 2) {
+          int hi = inst.runes[j + 1];
+          for (int k = classes.classOf(inst.runes[j]);
+              k < classes.bounds.length && classes.bounds[k] <= hi;
+              k++) {
+            set[k >>> 6] |= 1L << k;
+          }
+        }
+      }
+      inst.classes = set;
+    }
+    prog.classes = classes;
+  }
+
+  private void add(long[] set, int r) {
+    int k = classOf(r);
+    set[k >>> 6] |= 1L << k;
+  }
+
+  // Returns the number of classes.
+  int size() {
+    return bounds.length;
+  }
+
+  // Returns the class of rune |r|, which must not be negative.
+  int classOf(int r) {
+    if (r < latin1Class.length) {
+      return latin1Class[r];
+    }
+    int lo = 0;
+    int hi = bounds.length;
+    while (hi - lo > 1) {
+      int m = (lo + hi) >>> 1;
+      if (bounds[m] <= r) {
+        lo = m;
+      } else {
+        hi = m;
+      }
+    }
+    return lo;
+  }
+
+  // Returns the sorted starting runes of the classes of |prog|, split
+  // wherever the set of matching instructions changes.
+  static int[] bounds(Prog prog) {
+    int[] b = new int[64];
+    int n = 0;
+    int[] fixed = {0, '\n', '\n' + 1, '0', '9' + 1, 'A', 'Z' + 1, '_', '_' + 1, 'a', 'z' + 1};
+    for (int r : fixed) {
+      b = addBound(b, n++, r);
+    }
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      Inst inst = prog.inst[pc];
+      switch (inst.op) {
+        case Inst.RUNE:
+          if (inst.runes.length == 1) {
+            b = addBound(b, n++, inst.runes[0]);
+            b = addBound(b, n++, inst.runes[0] + 1);
+          } else {
+            for (int j = 0; j < inst.runes.length; j += 2) {
+              b = addBound(b, n++, inst.runes[j]);
+              b = addBound(b, n++, inst.runes[j + 1] + 1);
+            }
+          }
+          break;
+        case Inst.RUNE1:
+          b = addBound(b, n++, inst.runes[0]);
+          b = addBound(b, n++, inst.runes[0] + 1);
+          break;
+        default:
+          break;
+      }
+    }
+    return sortedBounds(b, n, Integer.MAX_VALUE);
+  }
+
+  // Returns the sorted distinct values of b[0:n] below |limit|.
+  static int[] sortedBounds(int[] b, int n, int limit) {
+    Arrays.sort(b, 0, n);
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      if ((m == 0 || b[m - 1] != b[i]) && b[i] < limit) {
+        b[m++] = b[i];
+      }
+    }
+    return Arrays.copyOf(b, m);
+  }
+
+  // Stores |r| at b[n], growing |b| if needed, and returns |b|.
+  static int[] addBound(int[] b, int n, int r) {
+    if (n == b.length) {
+      b = Arrays.copyOf(b, 2 * n);
+    }
+    b[n] = r;
+    return b;
+  }
+}
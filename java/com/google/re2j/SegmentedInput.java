@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.nio.ByteBuffer;
+
+// An implementation of MachineInput for UTF-8 text held in an ordered list
+// of ByteBuffers, the segments, read as if they were one array.  |pos| and
+// |width| are byte indices in the whole text: segment k holds positions
+// [starts[k], starts[k + 1]).  A rune may be split between segments, and a
+// literal may span several.
+//
+// The bytes are read one at a time, through the segment last read from,
+// which is usually the one that holds the next byte too.  index() searches
+// the array behind a segment in place, where it has one, for literals that
+// the segment holds entirely; those that may cross into the next segment,
+// and those in segments with no accessible array, it searches for in
+// windows copied from the segments, as ByteBufferInput does.
+@GwtIncompatible
+final class SegmentedInput extends MachineInput {
+
+  // As in ByteBufferInput.
+  private static final int MIN_WINDOW = 256;
+  private static final int MAX_WINDOW = 1 << 16;
+
+  private final ByteBuffer[] segments; // none empty, each from index 0
+  private final int[] starts; // starts[segments.length] is the length
+  private final int end;
+
+  // The segment last read from, its positions [curLo, curHi), and the
+  // array behind it with the index of position 0 in the array, or null.
+  private ByteBuffer cur;
+  private int curLo = 0;
+  private int curHi = -1;
+  private byte[] array;
+  private int offset;
+
+  // Views of the segments whose positions copy() moves, and the array
+  // index() copies windows into; allocated on first use.
+  private ByteBuffer[] readers;
+  private byte[] window;
+
+  SegmentedInput(ByteBuffer[] segments, int[] starts, int end) {
+    if (end > starts[segments.length]) {
+      throw new IndexOutOfBoundsException(
+          "end is greater than length: " + end + " > " + starts[segments.length]);
+    }
+    this.segments = segments;
+    this.starts = starts;
+    this.end = end;
+  }
+
+  // Returns the index of the segment holding position |i| < end.
+  private int segmentOf(int i) {
+    int lo = 0;
+    int hi = segments.length - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (starts[mid] <= i) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  // Returns the byte at position |i| < end.
+  private byte get(int i) {
+    if (i < curLo || i >= curHi) {
+      int k = segmentOf(i);
+      cur = segments[k];
+      curLo = starts[k];
+      curHi = starts[k + 1];
+      if (cur.hasArray()) {
+        array = cur.array();
+        offset = cur.arrayOffset() - curLo;
+      } else {
+        array = null;
+      }
+    }
+    return array != null ? array[offset + i] : cur.get(i - curLo);
+  }
+
+  // Copies the |n| bytes at position |i| to |dst|.
+  private void copy(int i, byte[] dst, int n) {
+    if (readers == null) {
+      readers = new ByteBuffer[segments.length];
+    }
+    for (int k = segmentOf(i), j = 0; j < n; k++) {
+      int len = Math.min(n - j, starts[k + 1] - i);
+      ByteBuffer s = segments[k];
+      if (s.hasArray()) {
+        System.arraycopy(s.array(), s.arrayOffset() + i - starts[k], dst, j, len);
+      } else {
+        if (readers[k] == null) {
+          readers[k] = s.duplicate();
+        }
+        readers[k].position(i - starts[k]);
+        readers[k].get(dst, j, len);
+      }
+      i += len;
+      j += len;
+    }
+  }
+
+  @Override
+  int step(int i) {
+    if (i >= end) {
+      return EOF;
+    }
+    // As UTF8Input.step() decodes.
+    int x = get(i++) & 0xff;
+    if ((x & 0x80) == 0) {
+      return x << 3 | 1;
+    } else if ((x & 0xE0) == 0xC0) { // 110xxxxx
+      x = x & 0x1F;
+      if (i >= end) {
+        return EOF;
+      }
+      x = x << 6 | (get(i++) & 0x3F);
+      return x << 3 | 2;
+    } else if ((x & 0xF0) == 0xE0) { // 1110xxxx
+      x = x & 0x0F;
+      if (i + 1 >= end) {
+        return EOF;
+      }
+      x = x << 6 | (get(i++) & 0x3F);
+      x = x << 6 | (get(i++) & 0x3F);
+      return x << 3 | 3;
+    } else { // 11110xxx
+      x = x & 0x07;
+      if (i + 2 >= end) {
+        return EOF;
+      }
+      x = x << 6 | (get(i++) & 0x3F);
+      x = x << 6 | (get(i++) & 0x3F);
+      x = x << 6 | (get(i++) & 0x3F);
+      return x << 3 | 4;
+    }
+  }
+
+  @Override
+  boolean canCheckPrefix() {
+    return true;
+  }
+
+  @Override
+  boolean isUTF8() {
+    return true;
+  }
+
+  @Override
+  int index(StringSearch needle, int pos) {
+    return index(needle, null, needle.utf8.length, pos);
+  }
+
+  @Override
+  int index(FoldedPrefix prefix, int pos) {
+    return index(null, prefix, prefix.maxLengthUTF8(), pos);
+  }
+
+  // Returns the index relative to |pos| of |needle|, or if it is null of
+  // |prefix|, whose occurrences are at most |length| bytes long, or -1.
+  // Each step searches the bytes from |i| to the end of a segment, in place,
+  // or a window copied from |i| on; as in ByteBufferInput, an occurrence
+  // found is the leftmost one only if those bytes hold all it may span, or
+  // run to the end of the input, and the next step starts where that stops
+  // being so.
+  private int index(StringSearch needle, FoldedPrefix prefix, int length, int pos) {
+    int max = Math.max(MAX_WINDOW, 2 * length);
+    int size = Math.max(MIN_WINDOW, 2 * length);
+    for (int i = pos; ; ) {
+      int k = i < end ? segmentOf(i) : -1;
+      ByteBuffer s = k >= 0 ? segments[k] : null;
+      int segEnd = k >= 0 ? Math.min(starts[k + 1], end) : end;
+      int n;
+      int j;
+      if (s != null && s.hasArray() && (segEnd - i >= length || segEnd == end)) {
+        // Position p is at index p + off of the array.
+        byte[] a = s.array();
+        int off = s.arrayOffset() - starts[k];
+        n = segEnd - i;
+        j =
+            needle != null
+                ? needle.indexUTF8(a, i + off, segEnd + off)
+                : prefix.indexUTF8(this, a, off, i + off, segEnd + off);
+        j = j < 0 ? -1 : j - off - i;
+      } else {
+        n = Math.min(size, end - i);
+        if (window == null || window.length < n) {
+          window = new byte[size];
+        }
+        copy(i, window, n);
+        j =
+            needle != null
+                ? needle.indexUTF8(window, 0, n)
+                : prefix.indexUTF8(MachineInput.fromUTF8(window, 0, n), window, 0, 0, n);
+        size = Math.min(2 * size, max);
+      }
+      boolean last = i + n == end;
+      int settled = last ? n + 1 : n - length + 1;
+      if (j >= 0 && j < settled) {
+        return i + j - pos;
+      } else if (last) {
+        return -1;
+      }
+      i += settled;
+    }
+  }
+
+  @Override
+  int indexFirst(FirstRunes first, int i) {
+    // As in ByteBufferInput.indexFirst().
+    while (i < end) {
+      int c = get(i);
+      if (c >= 0) {
+        while (!first.contains(c)) {
+          if (++i == end || (c = get(i)) < 0) {
+            break;
+          }
+        }
+        if (i == end || c >= 0) {
+          break; // the end, or a rune in |first|
+        }
+      }
+      int r = step(i);
+      if (r == EOF || first.contains(r >> 3)) {
+        break;
+      }
+      i += r & 7;
+    }
+    return i;
+  }
+
+  @Override
+  int indexLineStart(int pos) {
+    // As in UTF8Input.indexLineStart().
+    boolean ascii = true;
+    for (int i = pos; i < end; i++) {
+      int c = get(i);
+      if (c == '\n') {
+        return ascii || isWellFormed(pos, i) ? i + 1 : super.indexLineStart(pos);
+      }
+      ascii &= c >= 0;
+    }
+    return ascii || isWellFormed(pos, end) ? -1 : super.indexLineStart(pos);
+  }
+
+  @Override
+  int context(int pos) {
+    int r1 = -1;
+    if (pos > 0 && pos <= end) {
+      int start = pos - 1;
+      r1 = get(start--) & 0xff;
+      if (r1 >= 0x80) { // decode UTF-8
+        // Find start, up to 4 bytes earlier.
+        int lim = Math.max(pos - 4, 0);
+        while (start >= lim && (get(start) & 0xC0) == 0x80) { // 10xxxxxx
+          start--;
+        }
+        r1 = step(Math.max(start, 0)) >> 3;
+      }
+    }
+    int r2 = pos < end ? (step(pos) >> 3) : -1;
+    return Utils.emptyOpContext(r1, r2);
+  }
+
+  @Override
+  int endPos() {
+    return end;
+  }
+
+  @Override
+  int stepBack(int lo, int pos) {
+    if (pos <= lo) {
+      return EOF;
+    }
+    // Find the start of the sequence, up to 4 bytes earlier.
+    int i = pos - 1;
+    int lim = Math.max(lo, pos - 4);
+    while (i > lim && (get(i) & 0xC0) == 0x80) { // 10xxxxxx
+      i--;
+    }
+    return step(i);
+  }
+
+  @Override
+  MachineInput reverse(int lo, int hi) {
+    return isWellFormed(lo, hi) ? new ReverseInput(this, lo, hi) : null;
+  }
+
+  // As UTF8Input.isWellFormed() checks.
+  @Override
+  boolean isWellFormed(int i, int n) {
+    while (i < n) {
+      int x = get(i) & 0xff;
+      if (x < 0x80) {
+        i++;
+        continue;
+      }
+      int y = i + 1 < n ? get(i + 1) & 0xff : 0;
+      int size;
+      if (x < 0xC2) {
+        return false; // continuation byte, or overlong
+      } else if (x < 0xE0) {
+        size = 2;
+      } else if (x < 0xF0) {
+        size = 3;
+        if ((x == 0xE0 && y < 0xA0) || (x == 0xED && y >= 0xA0)) {
+          return false;
+        }
+      } else if (x < 0xF5) {
+        size = 4;
+        if ((x == 0xF0 && y < 0x90) || (x == 0xF4 && y >= 0x90)) {
+          return false;
+        }
+      } else {
+        return false;
+      }
+      if (i + size > n) {
+        return false;
+      }
+      for (int j = i + 1; j < i + size; j++) {
+        if ((get(j) & 0xC0) != 0x80) {
+          return false;
+        }
+      }
+      i += size;
+    }
+    return true;
+  }
+}
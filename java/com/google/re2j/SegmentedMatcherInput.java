@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * MatcherInput for UTF-8 text in an ordered list of ByteBuffers, the bytes remaining in each, from
+ * its position to its limit, following on from those of the one before. The bytes are matched
+ * where they are, without joining the buffers. Offsets are relative to the position of the first
+ * buffer, counting the bytes of all those before.
+ */
+@GwtIncompatible
+final class SegmentedMatcherInput extends MatcherInput {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  // The remaining bytes of each nonempty buffer, from index 0, unaffected by
+  // later changes to the positions and limits of the buffers given, and the
+  // offset of each in the whole input, followed by its length.
+  private final ByteBuffer[] segments;
+  private final int[] starts;
+
+  SegmentedMatcherInput(List<? extends ByteBuffer> buffers) {
+    ByteBuffer[] segments = new ByteBuffer[buffers.size()];
+    int[] starts = new int[buffers.size() + 1];
+    int n = 0;
+    long length = 0;
+    for (ByteBuffer b : buffers) {
+      if (b == null) {
+        throw new NullPointerException("segment is null");
+      }
+      if (b.hasRemaining()) {
+        starts[n] = (int) length;
+        segments[n++] = b.slice();
+        length += b.remaining();
+        if (length > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException("input is longer than " + Integer.MAX_VALUE);
+        }
+      }
+    }
+    starts[n] = (int) length;
+    this.segments = new ByteBuffer[n];
+    this.starts = new int[n + 1];
+    System.arraycopy(segments, 0, this.segments, 0, n);
+    System.arraycopy(starts, 0, this.starts, 0, n + 1);
+  }
+
+  @Override
+  Encoding getEncoding() {
+    return Encoding.UTF_8;
+  }
+
+  @Override
+  CharSequence asCharSequence() {
+    return substring(0, length());
+  }
+
+  @Override
+  byte[] asBytes() {
+    return bytes(0, length());
+  }
+
+  @Override
+  int length() {
+    return starts[segments.length];
+  }
+
+  @Override
+  MachineInput machineInput(int end) {
+    // Input that one segment holds is read as that segment alone.
+    if (segments.length == 0) {
+      return MachineInput.fromUTF8(new byte[0], 0, end);
+    }
+    if (end <= starts[1]) {
+      ByteBuffer b = segments[0];
+      if (b.hasArray()) {
+        int offset = b.arrayOffset();
+        return MachineInput.fromUTF8(b.array(), offset, offset + end);
+      }
+      return new ByteBufferInput(b, end);
+    }
+    return new SegmentedInput(segments, starts, end);
+  }
+
+  @Override
+  String substring(int start, int end) {
+    return new String(bytes(start, end), UTF_8);
+  }
+
+  // Returns a copy of the bytes at positions [start, end).
+  private byte[] bytes(int start, int end) {
+    byte[] b = new byte[end - start];
+    for (int k = 0, i = 0; k < segments.length && start + i < end; k++) {
+      int lo = Math.max(start + i, starts[k]);
+      int hi = Math.min(end, starts[k + 1]);
+      if (lo < hi) {
+        ByteBuffer reader = segments[k].duplicate();
+        reader.position(lo - starts[k]);
+        reader.get(b, i, hi - lo);
+        i += hi - lo;
+      }
+    }
+    return b;
+  }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A matcher for UTF-8 input that arrives in pieces, such as the chunks of an HTTP body, which need
+ * not be put together first. Each piece is passed to {@link #feed}, and the end of the input is
+ * marked by {@link #finish}; in between, {@link #find} steps through the matches found so far,
+ * with positions counted in bytes from the start of the input.
+ *
+ * <p>
+ * The matches are those that {@link Matcher#find()} would find in turn in all the input at once,
+ * and their groups those that {@link RE2} reports for them. The matcher runs its automaton over
+ * each piece as it is fed, keeping the threads of the automaton, their submatches and the
+ * empty-width context from one piece to the next. It holds on to few bytes of input: only the last
+ * few of the input, and, while a match found may yet give way to a longer one, the input since its
+ * end, where the search for the next match starts. Its memory does not otherwise grow with the
+ * input.
+ *
+ * <p>
+ * Positions are {@code int}s, so the input may be at most {@link Integer#MAX_VALUE} bytes long. If
+ * it is not well-formed UTF-8, the matches may differ from those of {@link Matcher#find()}.
+ *
+ * <p>
+ * Instances of this class are not safe for use by multiple concurrent threads.
+ */
+public final class StreamMatcher {
+
+  // The bytes that must have arrived after the position of a rune for the
+  // machine to step over it: the rune, and the one after it that the
+  // context after the rune depends on.
+  private static final int LOOKAHEAD = 2 * 4;
+
+  // The input before a position that its context depends on.
+  private static final int LOOKBEHIND = 4;
+
+  private final Pattern pattern;
+  private final RE2 re2;
+  private final Machine machine;
+  private final int groupCount;
+
+  // The runes that can start a match, or null, as Machine uses them.
+  private final FirstRunes first;
+
+  // The bytes at positions [base, base + size) of the input, in buf[0:size].
+  private byte[] buf = new byte[64];
+  private int base;
+  private int size;
+
+  // The position of the next rune for the machine to step over, and the
+  // EMPTY_* flags there if |flagPos| is |pos|.
+  private int pos;
+  private int flag;
+  private int flagPos;
+
+  // Whether finish() has been called, and whether no more matches can be
+  // found.
+  private boolean finished;
+  private boolean done;
+
+  // The group positions of the matches found and not yet returned by
+  // find(), from index |next|, and those of the last one returned.
+  private final List<int[]> found = new ArrayList<int[]>();
+  private int next;
+  private int[] groups;
+
+  StreamMatcher(Pattern pattern) {
+    this.pattern = pattern;
+    re2 = pattern.re2();
+    groupCount = re2.numberOfCapturingGroups();
+    machine = new Machine(re2);
+    machine.init(2 * (1 + groupCount));
+    first = re2.prefix.isEmpty() ? re2.prog.first : null;
+    reset();
+  }
+
+  /** Returns the {@code Pattern} associated with this {@code StreamMatcher}. */
+  public Pattern pattern() {
+    return pattern;
+  }
+
+  /**
+   * Resets the {@code StreamMatcher} for new input, discarding the input fed so far and any
+   * matches.
+   *
+   * @return the {@code StreamMatcher} itself, for chained method calls
+   */
+  public StreamMatcher reset() {
+    base = 0;
+    size = 0;
+    pos = 0;
+    flagPos = -1;
+    finished = false;
+    done = re2.cond == Utils.EMPTY_ALL; // impossible
+    found.clear();
+    next = 0;
+    groups = null;
+    machine.begin();
+    return this;
+  }
+
+  /**
+   * Feeds the next piece of the input, {@code len} bytes of {@code b} from {@code off}, and finds
+   * the matches that it settles.
+   *
+   * @return the {@code StreamMatcher} itself, for chained method calls
+   * @throws IllegalStateException if {@link #finish} has been called
+   * @throws IndexOutOfBoundsException if {@code off} and {@code len} are out of bounds of {@code b}
+   */
+  public StreamMatcher feed(byte[] b, int off, int len) {
+    if (finished) {
+      throw new IllegalStateException("input already finished");
+    }
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException("bad piece: " + off + " + " + len + " of " + b.length);
+    }
+    if (len > Integer.MAX_VALUE - (base + size)) {
+      throw new IllegalStateException("input longer than " + Integer.MAX_VALUE + " bytes");
+    }
+    if (done) {
+      base += size + len;
+      size = 0;
+      return this;
+    }
+    if (size + len > buf.length) {
+      byte[] nb = new byte[Math.max(2 * buf.length, size + len)];
+      System.arraycopy(buf, 0, nb, 0, size);
+      buf = nb;
+    }
+    System.arraycopy(b, off, buf, size, len);
+    size += len;
+    run();
+    return this;
+  }
+
+  /**
+   * Marks the end of the input, and finds the remaining matches.
+   *
+   * @return the {@code StreamMatcher} itself, for chained method calls
+   */
+  public StreamMatcher finish() {
+    if (!finished) {
+      finished = true;
+      run();
+    }
+    return this;
+  }
+
+  /**
+   * Moves on to the next match in the input fed so far. It returns {@code false} if there is none
+   * yet, in which case more input may hold one, or, once the input is finished, if there are no
+   * more matches.
+   *
+   * @return true if it finds a match
+   */
+  public boolean find() {
+    if (next == found.size()) {
+      return false;
+    }
+    groups = found.get(next++);
+    if (next == found.size()) {
+      found.clear();
+      next = 0;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the start position of the most recent match.
+   *
+   * @throws IllegalStateException if there is no match
+   */
+  public int start() {
+    return start(0);
+  }
+
+  /**
+   * Returns the end position of the most recent match.
+   *
+   * @throws IllegalStateException if there is no match
+   */
+  public int end() {
+    return end(0);
+  }
+
+  /**
+   * Returns the start position of a subgroup of the most recent match, or -1 if the group was not
+   * matched.
+   *
+   * @param group the group index; 0 is the overall match
+   * @throws IllegalStateException if there is no match
+   * @throws IndexOutOfBoundsException if {@code group < 0} or {@code group > groupCount()}
+   */
+  public int start(int group) {
+    checkGroup(group);
+    return groups[2 * group];
+  }
+
+  /**
+   * Returns the end position of a subgroup of the most recent match, or -1 if the group was not
+   * matched.
+   *
+   * @param group the group index; 0 is the overall match
+   * @throws IllegalStateException if there is no match
+   * @throws IndexOutOfBoundsException if {@code group < 0} or {@code group > groupCount()}
+   */
+  public int end(int group) {
+    checkGroup(group);
+    return groups[2 * group + 1];
+  }
+
+  /**
+   * Returns the number of subgroups in this pattern.
+   *
+   * @return the number of subgroups; the overall match (group 0) does not count
+   */
+  public int groupCount() {
+    return groupCount;
+  }
+
+  private void checkGroup(int group) {
+    if (group < 0 || group > groupCount) {
+      throw new IndexOutOfBoundsException("Group index out of bounds: " + group);
+    }
+    if (groups == null) {
+      throw new IllegalStateException("perhaps no match attempted");
+    }
+  }
+
+  // run() steps the machine over the runes of the input that have arrived
+  // with the bytes after them that it needs, or over all of them once the
+  // input is finished, and then drops the bytes it no longer needs.
+  private void run() {
+    MachineInput in = MachineInput.fromUTF8(buf, 0, size);
+    int end = base + size;
+    boolean beginText = (re2.cond & Utils.EMPTY_BEGIN_TEXT) != 0;
+    while (!done && (finished || end - pos >= LOOKAHEAD)) {
+      if (pos > end) {
+        done = true; // past an empty match at the end
+        break;
+      }
+      int r = in.step(pos - base);
+      int rune = r >> 3;
+      int width = r & 7;
+      if (machine.resumeIdle()) {
+        if (machine.resumeMatched()) {
+          settle();
+          continue;
+        }
+        if (beginText && pos != 0) {
+          done = true; // anchored match, past beginning of text
+          break;
+        }
+        if (rune != -1
+            && (first != null
+                ? !first.contains(rune)
+                : !re2.prefix.isEmpty() && !re2.startsPrefix(rune))) {
+          // Threads would die at once on runes that cannot start a match.
+          pos += width;
+          continue;
+        }
+      }
+      if (flagPos != pos) {
+        flag = in.context(pos - base);
+      }
+      int nextFlag = in.context(pos + width - base);
+      machine.resume(pos, rune, width, flag, nextFlag);
+      if (width == 0) { // EOF
+        if (machine.resumeMatched()) {
+          settle();
+        } else {
+          done = true;
+        }
+        continue;
+      }
+      pos += width;
+      flag = nextFlag;
+      flagPos = pos;
+    }
+    drop();
+  }
+
+  // settle() records the match that the machine has found, and starts the
+  // search for the next one where Matcher.find() would.
+  private void settle() {
+    int[] match = machine.submatches();
+    found.add(match);
+    pos = match[0] == match[1] ? match[1] + 1 : match[1]; // empty match - nudge forward
+    flagPos = -1;
+    machine.begin();
+  }
+
+  // drop() discards the bytes before those that the machine may yet need:
+  // the context of |pos|, and the end of a match that may give way to a
+  // longer one, where the search would start again.
+  private void drop() {
+    if (done) {
+      base += size;
+      size = 0;
+      return;
+    }
+    int keep = pos;
+    if (machine.resumeMatched()) {
+      keep = Math.min(keep, machine.submatches()[1]);
+    }
+    keep = Math.max(keep - LOOKBEHIND, base);
+    System.arraycopy(buf, keep - base, buf, 0, base + size - keep);
+    size -= keep - base;
+    base = keep;
+  }
+}
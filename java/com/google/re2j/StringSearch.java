@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.io.UnsupportedEncodingException;
+
+// A StringSearch finds a fixed string, such as the literal prefix of a
+// regexp, in UTF-8 or UTF-16 text.  How it searches is chosen once, when the
+// regexp is compiled, by the length of the string in bytes or chars:
+//
+//   - one unit: a scan for it;
+//   - up to MAX_RARE units: a scan for the unit least likely to be in the
+//     text, comparing the rest of the string around each one found;
+//   - up to MAX_HORSPOOL units: Boyer-Moore-Horspool, which shifts the
+//     string by as much as the last unit under it allows;
+//   - longer: Two-Way (Crochemore and Perrin, 1991), which takes time linear
+//     in the text however much the string repeats itself.
+//
+// The scans and Boyer-Moore-Horspool take time proportional to the text
+// times the length of the string in the worst case, but the string is short.
+// Text in a String or StringBuilder is searched by its own indexOf instead,
+// which the JVM may compile specially, except for long strings.
+final class StringSearch {
+
+  private static final int SINGLE = 0;
+  private static final int RARE = 1;
+  private static final int HORSPOOL = 2;
+  private static final int TWO_WAY = 3;
+
+  private static final int MAX_RARE = 16;
+  private static final int MAX_HORSPOOL = 32;
+
+  // Units that are common in text, most common first; any other is rare.
+  private static final String COMMON =
+      " etaoinsrhldcu\nmfpgwyb,.vk0123456789ETAOINSRHLDCUMFPGWYBVK-_/:=\"'()\t";
+
+  final String s; // the string
+  final byte[] utf8; // its UTF-8 encoding
+
+  private final Needle bytes; // for searching UTF-8
+  private final Needle chars; // for searching UTF-16
+
+  StringSearch(String s) {
+    this.s = s;
+    try {
+      this.utf8 = s.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException("can't happen");
+    }
+    int[] b = new int[utf8.length];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = utf8[i] & 0xFF;
+    }
+    int[] c = new int[s.length()];
+    for (int i = 0; i < c.length; i++) {
+      c[i] = s.charAt(i);
+    }
+    this.bytes = new Needle(b, true);
+    this.chars = new Needle(c, false);
+  }
+
+  // The string as units, bytes or chars, and the tables for searching for it.
+  private static final class Needle {
+    final int[] x;
+    final int strategy;
+    final int rare; // for RARE and TWO_WAY, the offset of the rarest unit
+    final int rare2; // for RARE, the offset of the next rarest unit
+    final int[] shift; // for HORSPOOL, the shift by the low byte of the last unit
+    final int ell; // for TWO_WAY, the critical position minus one
+    final int period; // for TWO_WAY, the shift after a match of the right half
+    final boolean periodic; // for TWO_WAY, whether the period is exact
+
+    Needle(int[] x, boolean utf8) {
+      this.x = x;
+      int m = x.length;
+      int rare = 0;
+      int[] shift = null;
+      int ell = 0;
+      int period = 0;
+      boolean periodic = false;
+      for (int i = 1; i < m; i++) {
+        if (rank(x[i], utf8) < rank(x[rare], utf8)) {
+          rare = i;
+        }
+      }
+      // A unit other than the rarest, which tells more about the text.
+      int rare2 = rare == 0 ? m - 1 : 0;
+      for (int i = 0; i < m; i++) {
+        if (i != rare && x[i] != x[rare]
+            && (x[rare2] == x[rare] || rank(x[i], utf8) < rank(x[rare2], utf8))) {
+          rare2 = i;
+        }
+      }
+      if (m <= 1) {
+        strategy = SINGLE;
+      } else if (m <= MAX_RARE) {
+        strategy = RARE;
+      } else if (m <= MAX_HORSPOOL) {
+        strategy = HORSPOOL;
+        shift = new int[256];
+        for (int i = 0; i < 256; i++) {
+          shift[i] = m;
+        }
+        // Chars that share a low byte share a shift, the smallest.
+        for (int i = 0; i < m - 1; i++) {
+          shift[x[i] & 0xFF] = m - 1 - i;
+        }
+      } else {
+        strategy = TWO_WAY;
+        int[] p = new int[1];
+        int[] q = new int[1];
+        int i = maxSuffix(x, p, false);
+        int j = maxSuffix(x, q, true);
+        if (i > j) {
+          ell = i;
+          period = p[0];
+        } else {
+          ell = j;
+          period = q[0];
+        }
+        periodic = period + ell + 1 <= m;
+        for (int k = 0; periodic && k <= ell; k++) {
+          periodic = x[k] == x[k + period];
+        }
+        if (!periodic) {
+          period = Math.max(ell + 1, m - ell - 1) + 1;
+        }
+      }
+      this.rare = rare;
+      this.rare2 = rare2;
+      this.shift = shift;
+      this.ell = ell;
+      this.period = period;
+      this.periodic = periodic;
+    }
+  }
+
+  // Returns how common |u|, a byte if |utf8| and a char otherwise, is in
+  // text: higher is more common.
+  private static int rank(int u, boolean utf8) {
+    if (u < 0x80) {
+      int i = COMMON.indexOf(u);
+      return i < 0 ? 0 : 2 * COMMON.length() - i;
+    }
+    if (!utf8) {
+      return COMMON.length() / 2;
+    }
+    // Continuation bytes are in every sequence, lead bytes in one each.
+    return u < 0xC0 ? COMMON.length() : u < 0xF5 ? COMMON.length() / 2 : 0;
+  }
+
+  // maxSuffix() returns the start, minus one, of the maximal suffix of |x|,
+  // for the ordering of units reversed if |reversed|, and sets p[0] to its
+  // period.
+  private static int maxSuffix(int[] x, int[] p, boolean reversed) {
+    int m = x.length;
+    int ms = -1;
+    int j = 0;
+    int k = 1;
+    p[0] = 1;
+    while (j + k < m) {
+      int a = x[j + k];
+      int b = x[ms + k];
+      if (reversed ? a > b : a < b) {
+        j += k;
+        k = 1;
+        p[0] = j - ms;
+      } else if (a == b) {
+        if (k != p[0]) {
+          k++;
+        } else {
+          j += p[0];
+          k = 1;
+        }
+      } else {
+        ms = j;
+        j = ms + 1;
+        k = 1;
+        p[0] = 1;
+      }
+    }
+    return ms;
+  }
+
+  // indexUTF8() returns the index of the first occurrence of the string in
+  // |b| that lies within [from, to), or -1 if there is none.
+  int indexUTF8(byte[] b, int from, int to) {
+    Needle n = bytes;
+    switch (n.strategy) {
+      case SINGLE:
+        return utf8.length == 0 ? (from <= to ? from : -1) : ByteScan.indexOf(b, utf8[0], from, to);
+      case RARE:
+        return scanUTF8(b, n.rare, n.rare2, from, to);
+      case HORSPOOL:
+        return horspoolUTF8(n.shift, b, from, to);
+      default:
+        return twoWayUTF8(n, b, from, to);
+    }
+  }
+
+  // Returns the first occurrence in |b| within [from, to), found by scanning
+  // for its byte at offset |r| and comparing the others around it.
+  private int scanUTF8(byte[] b, int r, int r2, int from, int to) {
+    byte[] u = utf8;
+    byte c = u[r];
+    byte c2 = u[r2];
+    int d = r2 - r;
+    int max = to - u.length + r;
+    for (int i = from + r; i <= max; i++) {
+      i = ByteScan.indexOf(b, c, c2, d, i, max + 1);
+      if (i < 0) {
+        break;
+      }
+      if (equalsUTF8(b, i - r)) {
+        return i - r;
+      }
+    }
+    return -1;
+  }
+
+  private int horspoolUTF8(int[] shift, byte[] b, int from, int to) {
+    byte[] u = utf8;
+    int m1 = u.length - 1;
+    byte c = u[m1];
+    for (int i = from + m1; i < to; ) {
+      byte d = b[i];
+      if (d == c && equalsUTF8(b, i - m1)) {
+        return i - m1;
+      }
+      i += shift[d & 0xFF];
+    }
+    return -1;
+  }
+
+  private int twoWayUTF8(Needle n, byte[] b, int from, int to) {
+    int[] x = n.x;
+    int m = x.length;
+    int ell = n.ell;
+    int period = n.period;
+    int memory = -1;
+    int r = n.rare;
+    byte c = utf8[r];
+    int last = to - m;
+    for (int j = from; j <= last; ) {
+      if (memory < 0) {
+        // No occurrence starts until its rare byte is in place.
+        int k = ByteScan.indexOf(b, c, j + r, last + r + 1);
+        if (k < 0) {
+          return -1;
+        }
+        j = k - r;
+      }
+      int i = Math.max(ell, memory) + 1;
+      while (i < m && x[i] == (b[i + j] & 0xFF)) {
+        i++;
+      }
+      if (i < m) {
+        j += i - ell;
+        memory = -1;
+        continue;
+      }
+      int lo = n.periodic ? memory : -1;
+      i = ell;
+      while (i > lo && x[i] == (b[i + j] & 0xFF)) {
+        i--;
+      }
+      if (i <= lo) {
+        return j;
+      }
+      j += period;
+      if (n.periodic) {
+        memory = m - period - 1;
+      }
+    }
+    return -1;
+  }
+
+  // Reports whether the string is in |b| at |i|.
+  private boolean equalsUTF8(byte[] b, int i) {
+    byte[] u = utf8;
+    for (int k = 0; k < u.length; k++) {
+      if (b[i + k] != u[k]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // indexUTF16() returns the index of the first occurrence of the string in
+  // |str| that lies within [from, to), or -1 if there is none.
+  int indexUTF16(CharSequence str, int from, int to) {
+    Needle n = chars;
+    if (n.strategy != TWO_WAY && (str instanceof String || str instanceof StringBuilder)) {
+      // Faster than any loop over charAt.
+      int i =
+          str instanceof String
+              ? ((String) str).indexOf(s, from)
+              : ((StringBuilder) str).indexOf(s, from);
+      return i < 0 || i + s.length() > to ? -1 : i;
+    }
+    switch (n.strategy) {
+      case SINGLE:
+        return s.isEmpty() ? (from <= to ? from : -1) : scanUTF16(str, 0, 0, from, to);
+      case RARE:
+        return scanUTF16(str, n.rare, n.rare2, from, to);
+      case HORSPOOL:
+        return horspoolUTF16(n.shift, str, from, to);
+      default:
+        return twoWayUTF16(n, str, from, to);
+    }
+  }
+
+  private int scanUTF16(CharSequence str, int r, int r2, int from, int to) {
+    char c = s.charAt(r);
+    char c2 = s.charAt(r2);
+    int d = r2 - r;
+    int max = to - s.length() + r;
+    for (int i = from + r; i <= max; i++) {
+      if (str.charAt(i) != c) {
+        while (++i <= max && str.charAt(i) != c) {}
+        if (i > max) {
+          break;
+        }
+      }
+      if (str.charAt(i + d) == c2 && equalsUTF16(str, i - r)) {
+        return i - r;
+      }
+    }
+    return -1;
+  }
+
+  // Returns the index of the first |c| in |str| within [from, max], or -1.
+  private static int indexOf(CharSequence str, char c, int from, int max) {
+    if (str instanceof String) {
+      int i = ((String) str).indexOf(c, from);
+      return i > max ? -1 : i;
+    }
+    for (int i = from; i <= max; i++) {
+      if (str.charAt(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int horspoolUTF16(int[] shift, CharSequence str, int from, int to) {
+    int m1 = s.length() - 1;
+    char c = s.charAt(m1);
+    for (int i = from + m1; i < to; ) {
+      char d = str.charAt(i);
+      if (d == c && equalsUTF16(str, i - m1)) {
+        return i - m1;
+      }
+      i += shift[d & 0xFF];
+    }
+    return -1;
+  }
+
+  private int twoWayUTF16(Needle n, CharSequence str, int from, int to) {
+    int[] x = n.x;
+    int m = x.length;
+    int ell = n.ell;
+    int period = n.period;
+    int memory = -1;
+    int r = n.rare;
+    char c = s.charAt(r);
+    int last = to - m;
+    for (int j = from; j <= last; ) {
+      if (memory < 0) {
+        int k = indexOf(str, c, j + r, last + r);
+        if (k < 0) {
+          return -1;
+        }
+        j = k - r;
+      }
+      int i = Math.max(ell, memory) + 1;
+      while (i < m && x[i] == str.charAt(i + j)) {
+        i++;
+      }
+      if (i < m) {
+        j += i - ell;
+        memory = -1;
+        continue;
+      }
+      int lo = n.periodic ? memory : -1;
+      i = ell;
+      while (i > lo && x[i] == str.charAt(i + j)) {
+        i--;
+      }
+      if (i <= lo) {
+        return j;
+      }
+      j += period;
+      if (n.periodic) {
+        memory = m - period - 1;
+      }
+    }
+    return -1;
+  }
+
+  // Reports whether the string is in |str| at |i|.
+  private boolean equalsUTF16(CharSequence str, int i) {
+    String u = s;
+    for (int k = 0; k < u.length(); k++) {
+      if (str.charAt(i + k) != u.charAt(k)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
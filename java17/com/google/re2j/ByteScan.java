@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// ByteScan for Java 17 and later, which replaces java/.../ByteScan.java in
+// the multi-release JAR and must return the same results.
+//
+// Where the JVM was started with --add-modules jdk.incubator.vector, scans
+// of at least a vector of bytes run through VectorByteScan first, which
+// stops at the first byte found or at the tail too short for a vector.  The
+// loops below go on from there, or from the start where the module is not
+// available, so they are those of the portable version.
+final class ByteScan {
+
+  private ByteScan() {}
+
+  // The fewest bytes that VectorByteScan scans, or Integer.MAX_VALUE if it
+  // is not used.
+  private static final int MIN_VECTOR = minVector();
+
+  private static int minVector() {
+    if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      return Integer.MAX_VALUE;
+    }
+    try {
+      // Narrower vectors suggest that the JIT does not compile them to
+      // SIMD instructions, and then they are slower than the loops below.
+      int n = VectorByteScan.length();
+      return n >= 16 ? n : Integer.MAX_VALUE;
+    } catch (LinkageError e) {
+      return Integer.MAX_VALUE;
+    }
+  }
+
+  // Set is a set of ASCII bytes, such as the ASCII runes of a FirstRunes.
+  static final class Set {
+
+    // The most runs of bytes that VectorByteScan compares with.
+    private static final int MAX_RUNS = 4;
+
+    private final long lo; // bitset of the bytes below 64
+    private final long hi; // bitset of the bytes from 64 to 127
+
+    // The runs of consecutive bytes in the set, as [first, last] pairs, or
+    // null if there are more than MAX_RUNS of them.
+    final byte[] runs;
+
+    Set(long lo, long hi) {
+      this.lo = lo;
+      this.hi = hi;
+      byte[] runs = new byte[2 * MAX_RUNS];
+      int n = 0;
+      for (int c = 0; c < 128; c++) {
+        if (!contains(c)) {
+          continue;
+        }
+        if (n == runs.length) {
+          runs = null;
+          break;
+        }
+        runs[n++] = (byte) c;
+        while (c + 1 < 128 && contains(c + 1)) {
+          c++;
+        }
+        runs[n++] = (byte) c;
+      }
+      this.runs = runs == null ? null : Arrays.copyOf(runs, n);
+    }
+
+    // Returns whether |c|, an ASCII byte, is in the set.
+    boolean contains(int c) {
+      return ((c < 64 ? lo : hi) & (1L << c)) != 0;
+    }
+  }
+
+  // Returns the index of the first |c| in |b| within [from, to), or -1.
+  static int indexOf(byte[] b, byte c, int from, int to) {
+    int i = from;
+    if (to - i >= MIN_VECTOR) {
+      i = VectorByteScan.indexOf(b, c, i, to);
+    }
+    for (; i < to; i++) {
+      if (b[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Returns the first index i in [from, to) where b[i] is |c| and b[i + d]
+  // is |c2|, or -1.  b[i + d] must be in |b| for every such i.
+  static int indexOf(byte[] b, byte c, byte c2, int d, int from, int to) {
+    int i = from;
+    if (to - i >= MIN_VECTOR) {
+      i = VectorByteScan.indexOf(b, c, c2, d, i, to);
+    }
+    for (; i < to; i++) {
+      if (b[i] == c && b[i + d] == c2) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Returns the index of the first byte in |b| within [from, to) that is
+  // not ASCII, or |to|.
+  static int indexNonASCII(byte[] b, int from, int to) {
+    int i = from;
+    if (to - i >= MIN_VECTOR) {
+      i = VectorByteScan.indexNonASCII(b, i, to);
+    }
+    // Eight bytes at a time, since ASCII has no high bits.
+    while (i + 8 <= to
+        && (b[i] | b[i + 1] | b[i + 2] | b[i + 3] | b[i + 4] | b[i + 5] | b[i + 6] | b[i + 7])
+            >= 0) {
+      i += 8;
+    }
+    while (i < to && b[i] >= 0) {
+      i++;
+    }
+    return i;
+  }
+
+  // Returns the index of the first byte in |b| within [from, to) that is in
+  // |set| or is not ASCII, or |to|.
+  static int indexIn(byte[] b, Set set, int from, int to) {
+    int i = from;
+    if (to - i >= MIN_VECTOR && set.runs != null) {
+      i = VectorByteScan.indexIn(b, set.runs, i, to);
+    }
+    for (; i < to; i++) {
+      int c = b[i];
+      if (c < 0 || set.contains(c)) {
+        return i;
+      }
+    }
+    return to;
+  }
+}
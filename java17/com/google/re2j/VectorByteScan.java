@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// VectorByteScan runs the scans of ByteScan a vector of bytes at a time,
+// with the incubating Vector API.  Only ByteScan refers to it, and only once
+// it has found the jdk.incubator.vector module, so that this class is not
+// loaded without it.
+//
+// Each method scans the whole vectors that fit in [from, to), and returns
+// the index of the first byte it was looking for in them or, if there is
+// none, the index of the first byte it did not scan.
+final class VectorByteScan {
+
+  private VectorByteScan() {}
+
+  private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+  private static final int LENGTH = SPECIES.length();
+
+  // Returns the number of bytes in a vector.
+  static int length() {
+    return LENGTH;
+  }
+
+  static int indexOf(byte[] b, byte c, int from, int to) {
+    int i = from;
+    for (int max = to - LENGTH; i <= max; i += LENGTH) {
+      VectorMask<Byte> m = ByteVector.fromArray(SPECIES, b, i).eq(c);
+      if (m.anyTrue()) {
+        return i + m.firstTrue();
+      }
+    }
+    return i;
+  }
+
+  static int indexOf(byte[] b, byte c, byte c2, int d, int from, int to) {
+    int i = from;
+    for (int max = to - LENGTH; i <= max; i += LENGTH) {
+      VectorMask<Byte> m =
+          ByteVector.fromArray(SPECIES, b, i)
+              .eq(c)
+              .and(ByteVector.fromArray(SPECIES, b, i + d).eq(c2));
+      if (m.anyTrue()) {
+        return i + m.firstTrue();
+      }
+    }
+    return i;
+  }
+
+  static int indexNonASCII(byte[] b, int from, int to) {
+    int i = from;
+    for (int max = to - LENGTH; i <= max; i += LENGTH) {
+      VectorMask<Byte> m = ByteVector.fromArray(SPECIES, b, i).lt((byte) 0);
+      if (m.anyTrue()) {
+        return i + m.firstTrue();
+      }
+    }
+    return i;
+  }
+
+  // |runs| holds [first, last] pairs of ASCII bytes, as in ByteScan.Set.
+  static int indexIn(byte[] b, byte[] runs, int from, int to) {
+    int i = from;
+    for (int max = to - LENGTH; i <= max; i += LENGTH) {
+      ByteVector v = ByteVector.fromArray(SPECIES, b, i);
+      VectorMask<Byte> m = v.lt((byte) 0);
+      for (int k = 0; k < runs.length; k += 2) {
+        m =
+            m.or(
+                v.compare(VectorOperators.GE, runs[k])
+                    .and(v.compare(VectorOperators.LE, runs[k + 1])));
+      }
+      if (m.anyTrue()) {
+        return i + m.firstTrue();
+      }
+    }
+    return i;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that the backtracker finds the same submatches as the NFA.
+ */
+@RunWith(JUnit4.class)
+public class BitStateTest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "(a+)(b+)?",
+    "(a|ab)(c|bcd)(d*)",
+    "(ab|a)+?c",
+    "(a*)+$",
+    "(a*)*(b)",
+    "(\\bfoo\\b)|(o+)",
+    "(?m)^(x)$",
+    "(?i)(k+)(s)",
+    "(?s)(.)(.)?x",
+    "(é+)|(a)",
+    "(\\w+)\\s(\\w+)",
+    "x(a|b)*y",
+    "\\A(a)|(b)\\z",
+    "((?i:k)*\\A+|(?i:k)*|(?s:.)*?(a|ab)?(?s:.))*(?m:$)",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "a",
+    "abcd",
+    "aab",
+    "xabcbcdx",
+    "foo bar foo_ foo",
+    "x\nx\n",
+    "kKKKsſS",
+    "éé xéyx",
+    "xababy",
+    "𐐀a𐐀",
+  };
+
+  private static void assertSameAsNFA(String pattern, boolean longest) {
+    RE2 re2 = RE2.compileImpl(pattern, longest ? RE2.POSIX | RE2.PERL_X : RE2.PERL, longest);
+    final BitState b = new BitState(re2);
+    NFATestUtils.assertSameAsNFA(
+        re2,
+        new NFATestUtils.Engine() {
+          @Override
+          public int[] match(MachineInput in, int pos, int anchor, int ncap) {
+            return b.match(in, pos, anchor, ncap);
+          }
+        },
+        INPUTS);
+  }
+
+  @Test
+  public void testLeftmostFirst() {
+    for (String pattern : PATTERNS) {
+      assertSameAsNFA(pattern, false);
+    }
+  }
+
+  @Test
+  public void testLeftmostLongest() {
+    for (String pattern : PATTERNS) {
+      if (pattern.contains("\\b") || pattern.contains("(?")) {
+        continue; // not POSIX syntax
+      }
+      assertSameAsNFA(pattern, true);
+    }
+  }
+
+  @Test
+  public void testBudget() {
+    Prog prog = RE2.compile("(a+)(b+)").prog;
+    assertTrue(BitState.shouldUse(prog, 1000));
+    assertFalse(BitState.shouldUse(prog, BitState.MAX_BITS));
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < BitState.MAX_PROG / 2; i++) {
+      b.append("(a)");
+    }
+    assertFalse(BitState.shouldUse(RE2.compile(b.toString()).prog, 0));
+  }
+
+  @Test
+  public void testMatcherGroups() {
+    Matcher m = Pattern.compile("(\\w+)@(\\w+)\\.com").matcher("mail bob@example.com, amy@x.com");
+    assertTrue(m.find());
+    assertEquals("bob", m.group(1));
+    assertEquals("example", m.group(2));
+    assertTrue(m.find());
+    assertEquals("amy", m.group(1));
+    assertFalse(m.find());
+  }
+}
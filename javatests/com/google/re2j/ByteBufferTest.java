@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that matching against heap, direct and memory-mapped ByteBuffers finds what matching
+ * against the same bytes in an array finds.
+ */
+@RunWith(JUnit4.class)
+public class ByteBufferTest {
+
+  static final String[] PATTERNS = {
+    "abc",
+    "b.*c",
+    "(?i)straße",
+    "(?i)xyz\\w*",
+    "(a+)(b)?",
+    "\\bfoo\\b",
+    "^b",
+    "(?m)^c$",
+    "c$",
+    "[éx]+",
+    "\\x{10400}|é",
+    "needle",
+    "(?i)needle\\d",
+    "[~^]\\d+",
+  };
+
+  // Returns the inputs to match |PATTERNS| against.
+  static byte[][] inputs() {
+    StringBuilder hay = new StringBuilder();
+    for (int i = 0; i < 3000; i++) {
+      hay.append(i % 7 == 0 ? "é" : "a");
+    }
+    String far = hay.toString();
+    return new byte[][] {
+      GoTestUtils.utf8(""),
+      GoTestUtils.utf8("abc abc"),
+      GoTestUtils.utf8("ab\nc\nbc"),
+      GoTestUtils.utf8("foo foofoo foo"),
+      GoTestUtils.utf8("STRASSE Straße strasse xyzzy XYZ"),
+      GoTestUtils.utf8("aab ab b aaa é𐐀ééxx"),
+      // Literals far off, past the first windows ByteBufferInput copies,
+      // and straddling them.
+      GoTestUtils.utf8(far + "needle" + far + "NEEDLE7~12"),
+      GoTestUtils.utf8(far.substring(0, 250) + "needle" + far.substring(0, 1790) + "Needle3"),
+      // Not well-formed UTF-8.
+      {
+        'a', (byte) 0xC3, 'b', 'c', (byte) 0xA9, (byte) 0xFF, 'a', 'b', 'c', (byte) 0xF0,
+        (byte) 0x90
+      },
+    };
+  }
+
+  // Returns the matches that |m| finds, and their groups.
+  static String findAll(Matcher m) {
+    StringBuilder b = new StringBuilder();
+    while (m.find()) {
+      for (int g = 0; g <= m.groupCount(); g++) {
+        b.append(m.start(g)).append('-').append(m.end(g)).append(' ').append(m.group(g));
+        b.append(';');
+      }
+    }
+    b.append(m.reset().matches());
+    b.append(m.lookingAt());
+    return b.toString();
+  }
+
+  // Returns a buffer holding |b| from its position to its limit, with bytes
+  // around them not to match.
+  private static ByteBuffer pad(ByteBuffer buf, byte[] b) {
+    buf.put((byte) 'a').put((byte) 0xA9).put(b).put((byte) 'c');
+    buf.position(2);
+    buf.limit(2 + b.length);
+    return buf;
+  }
+
+  @Test
+  public void testSameAsArray() {
+    for (String regex : PATTERNS) {
+      Pattern p = Pattern.compile(regex);
+      for (byte[] b : inputs()) {
+        String want = findAll(p.matcher(b));
+        ByteBuffer heap = pad(ByteBuffer.allocate(b.length + 3), b);
+        ByteBuffer direct = pad(ByteBuffer.allocateDirect(b.length + 3), b);
+        assertEquals(regex, want, findAll(p.matcher(heap)));
+        assertEquals(regex, want, findAll(p.matcher(direct)));
+        // A heap buffer whose array is not accessible, and one whose array
+        // starts before it.
+        assertEquals(regex, want, findAll(p.matcher(heap.asReadOnlyBuffer())));
+        heap.position(1);
+        ByteBuffer slice = heap.slice();
+        slice.position(1);
+        slice.limit(1 + b.length);
+        assertEquals(regex, want, findAll(p.matcher(slice)));
+        // The position and limit are left as they were.
+        assertEquals(1, slice.position());
+        assertEquals(1 + b.length, slice.limit());
+      }
+    }
+  }
+
+  @Test
+  public void testMapped() throws Exception {
+    File file = File.createTempFile("re2j", ".txt");
+    file.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(GoTestUtils.utf8("first line\nsecond: ä, ö\nthird line\n"));
+    } finally {
+      out.close();
+    }
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      Matcher m = Pattern.compile("(?m)^(\\w+) line$").matcher(mapped);
+      assertTrue(m.find());
+      assertEquals("first", m.group(1));
+      assertTrue(m.find());
+      assertEquals("third", m.group(1));
+      assertEquals(26, m.start());
+      assertFalse(m.find());
+      mapped.position(11);
+      m.reset(mapped);
+      assertTrue(m.find());
+      assertEquals("third", m.group(1));
+      assertEquals(15, m.start());
+      m = Pattern.compile("second: (.*)").matcher(mapped);
+      assertTrue(m.lookingAt());
+      assertEquals("ä, ö", m.group(1));
+      assertEquals(11, mapped.position());
+    } finally {
+      raf.close();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that the scans of ByteScan find what a loop over the bytes finds. Run with the Java 17
+ * layer and --add-modules jdk.incubator.vector (./gradlew testJava17), they test the vector scans,
+ * and arrays long enough for several vectors and a tail are included.
+ */
+@RunWith(JUnit4.class)
+public class ByteScanTest {
+
+  // Sets of ASCII bytes, as FirstRunes makes them: up to four runs of bytes,
+  // and more, which the vector scans leave to the loops.
+  private static final String[] SETS = {"", "a", "bf", "0-9", "0-9A-Fa-f", "0-9A-Z_a-z", "aceg!~"};
+
+  private static ByteScan.Set set(String spec) {
+    long[] bits = new long[2];
+    for (int i = 0; i < spec.length(); i++) {
+      char lo = spec.charAt(i);
+      char hi = lo;
+      if (i + 2 < spec.length() && spec.charAt(i + 1) == '-') {
+        hi = spec.charAt(i + 2);
+        i += 2;
+      }
+      for (int c = lo; c <= hi; c++) {
+        bits[c >>> 6] |= 1L << c;
+      }
+    }
+    return new ByteScan.Set(bits[0], bits[1]);
+  }
+
+  // Returns arrays of random bytes, mostly ASCII, of the lengths around
+  // those of vectors.
+  private static byte[][] inputs() {
+    Random rand = new Random(1);
+    int[] lengths = {0, 1, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 127, 128, 129, 200, 1000};
+    byte[][] inputs = new byte[lengths.length * 3][];
+    for (int i = 0; i < inputs.length; i++) {
+      byte[] b = new byte[lengths[i / 3]];
+      // Rarer and rarer bytes that are not lowercase letters.
+      int odds = 4 << (4 * (i % 3));
+      for (int j = 0; j < b.length; j++) {
+        b[j] = (byte) (rand.nextInt(odds) == 0 ? rand.nextInt(256) : 'a' + rand.nextInt(26));
+      }
+      inputs[i] = b;
+    }
+    return inputs;
+  }
+
+  @Test
+  public void testIndexOf() {
+    for (byte[] b : inputs()) {
+      for (int from = 0; from <= b.length; from += 1 + from / 8) {
+        for (int c : new int[] {'a', 'q', '\n', 0x80, 0xff}) {
+          int want = -1;
+          for (int i = from; i < b.length; i++) {
+            if (b[i] == (byte) c) {
+              want = i;
+              break;
+            }
+          }
+          assertEquals(want, ByteScan.indexOf(b, (byte) c, from, b.length));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIndexOfPair() {
+    for (byte[] b : inputs()) {
+      for (int d : new int[] {-3, -1, 1, 2, 5}) {
+        int lo = Math.max(0, -d);
+        int hi = Math.min(b.length, b.length - d);
+        for (int from = lo; from <= hi; from += 1 + from / 8) {
+          for (int c : new int[] {'e', 'z', 0x80}) {
+            int want = -1;
+            for (int i = from; i < hi; i++) {
+              if (b[i] == (byte) c && b[i + d] == 'a') {
+                want = i;
+                break;
+              }
+            }
+            assertEquals(want, ByteScan.indexOf(b, (byte) c, (byte) 'a', d, from, hi));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIndexNonASCII() {
+    for (byte[] b : inputs()) {
+      for (int from = 0; from <= b.length; from += 1 + from / 8) {
+        int want = from;
+        while (want < b.length && b[want] >= 0) {
+          want++;
+        }
+        assertEquals(want, ByteScan.indexNonASCII(b, from, b.length));
+      }
+    }
+  }
+
+  @Test
+  public void testIndexIn() {
+    for (String spec : SETS) {
+      ByteScan.Set set = set(spec);
+      for (byte[] b : inputs()) {
+        for (int from = 0; from <= b.length; from += 1 + from / 8) {
+          int want = from;
+          while (want < b.length && b[want] >= 0 && !set.contains(b[want])) {
+            want++;
+          }
+          assertEquals(spec, want, ByteScan.indexIn(b, set, from, b.length));
+        }
+      }
+    }
+  }
+}
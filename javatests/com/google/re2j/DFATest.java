@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that searches answered by the DFA agree with the NFA.
+ */
+@RunWith(JUnit4.class)
+public class DFATest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "abc",
+    "a*",
+    "(a|ab)(c|bcd)",
+    "(ab|a)+?c",
+    "\\bfoo\\b",
+    "\\Bo+\\B",
+    "(?m)^x$",
+    "^a|b$",
+    "\\Aab|b\\z",
+    "(?i)k+s",
+    "(?s).{2,3}x",
+    "[^a]+",
+    "é+",
+    "(\\w+)\\s(\\w+)",
+    "(a*)*$",
+    "[bé]c|𐐀",
+    "((?i:k)*\\A+|(?i:k)*|(?s:.)*?(a|ab)?(?s:.))*(?m:$)",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "a",
+    "abcd",
+    "xabcbcdx",
+    "foo bar foo_ foo",
+    "x\nx\n",
+    "ab\nab",
+    "kKKKsſS",
+    "éé xéyx",
+    "\nK1_éK",
+    "𐐀a𐐀",
+  };
+
+  private static RE2 compile(String pattern, boolean longest, int budget) {
+    RE2 re2 = RE2.compileImpl(pattern, longest ? RE2.POSIX | RE2.PERL_X : RE2.PERL, longest);
+    re2.dfaMemoryBudget = budget;
+    return re2;
+  }
+
+  // Checks that searches with the DFA find what the NFA alone finds.
+  private static void assertSameAsNFA(
+      String pattern, boolean longest, String[] inputs, byte[]... malformed) {
+    int flags = longest ? RE2.POSIX | RE2.PERL_X : RE2.PERL;
+    NFATestUtils.assertSameAsNFA(
+        compile(pattern, longest, DFA.DEFAULT_MEMORY_BUDGET),
+        NFATestUtils.nfa(pattern, flags, longest),
+        inputs,
+        malformed);
+  }
+
+  @Test
+  public void testLeftmostFirst() {
+    for (String pattern : PATTERNS) {
+      assertSameAsNFA(pattern, false, INPUTS);
+    }
+  }
+
+  @Test
+  public void testLeftmostLongest() {
+    for (String pattern : PATTERNS) {
+      if (pattern.contains("\\b") || pattern.contains("\\B") || pattern.contains("(?")) {
+        continue; // not POSIX syntax
+      }
+      assertSameAsNFA(pattern, true, INPUTS);
+    }
+  }
+
+  @Test
+  public void testReverseProg() {
+    assertEquals(
+        "0       fail\n"
+            + "1*      empty 4 -> 2\n"
+            + "2       rune1 \"c\" -> 3\n"
+            + "3       rune1 \"b\" -> 4\n"
+            + "4       alt -> 3, 5\n"
+            + "5       rune1 \"a\" -> 6\n"
+            + "6       empty 8 -> 7\n"
+            + "7       match\n",
+        RE2.compile("^(ab+)c$").reverseProg.toString());
+  }
+
+  @Test
+  public void testEndAnchored() {
+    // Matches that can only end at the end of the text are found by reading
+    // backward from there.
+    String[] patterns = {"\\.(jpg|png|gif)$", "[0-9]{2}\\z", "(\\w+)\\.?(x|é)$", "(a|ab)(c|bcd)?$"};
+    for (String pattern : patterns) {
+      assertTrue(pattern, RE2.compile(pattern).endAnchored);
+      assertSameAsNFA(pattern, false, INPUTS);
+      if (!pattern.contains("\\z")) {
+        assertSameAsNFA(pattern, true, INPUTS);
+      }
+    }
+    for (String pattern : new String[] {"a$|b", "(?m)a$", "a\\b"}) {
+      assertFalse(pattern, RE2.compile(pattern).endAnchored);
+    }
+    Matcher m = Pattern.compile("/(\\w+)\\.png$").matcher("a/b.png/c.png");
+    assertTrue(m.find());
+    assertEquals("c", m.group(1));
+    assertFalse(m.find());
+  }
+
+  @Test
+  public void testMalformedUTF8() {
+    // Reading these backward finds runes that reading forward does not, so
+    // the start of the match is not found by the reverse DFA.
+    byte[][] inputs = {
+      {'a', (byte) 0xC3, 'b', 'c'},
+      {(byte) 0xA9, 'b', 'c', 'b'},
+      {'x', (byte) 0xE2, (byte) 0x82, 'b', 'c'},
+      {(byte) 0xC0, (byte) 0x80, 'b', 'c', (byte) 0xF0},
+    };
+    for (String pattern : new String[] {"b+c?", "(?s).b", "[^a]c", "\\bb"}) {
+      assertSameAsNFA(pattern, false, new String[0], inputs);
+    }
+  }
+
+  @Test
+  public void testLineStarts() throws Exception {
+    // Where no threads are running, searches for these skip to the next line.
+    String s = "x1\n2x\n\n€3\nab";
+    assertEquals(3, MachineInput.fromUTF16(s).indexLineStart(0));
+    assertEquals(7, MachineInput.fromUTF16(s).indexLineStart(6));
+    assertEquals(-1, MachineInput.fromUTF16(s).indexLineStart(10));
+    byte[] b = s.getBytes("UTF-8");
+    assertEquals(12, MachineInput.fromUTF8(b).indexLineStart(7));
+    // An overlong newline starts a line too, as Machine decodes it.
+    byte[] overlong = {'a', (byte) 0xC0, (byte) 0x8A, 'b', '\n', 'c'};
+    assertEquals(3, MachineInput.fromUTF8(overlong).indexLineStart(0));
+    for (String pattern : new String[] {"(?m)^\\d", "(?m)^(a|€)+$", "(?m)^$"}) {
+      assertSameAsNFA(pattern, false, INPUTS, overlong);
+    }
+  }
+
+  @Test
+  public void testUTF8Prog() {
+    // The lowered program accepts the overlong encodings of 'a' too, as
+    // MachineInput decodes them.
+    assertEquals(
+        "0       fail\n"
+            + "1*      nop -> 12\n"
+            + "2       match\n"
+            + "3       byte [21 61 a1 e1] -> 2\n"
+            + "4       byte [01 41 81 c1] -> 3\n"
+            + "5       byte [00 40 80 c0] -> 4\n"
+            + "6       byte [61] -> 2\n"
+            + "7       byte [c1] -> 3\n"
+            + "8       alt -> 6, 7\n"
+            + "9       byte [e0] -> 4\n"
+            + "10      alt -> 8, 9\n"
+            + "11      byte [80 88 90 98 a0 a8 b0 b8 f0 f8] -> 5\n"
+            + "12      alt -> 10, 11\n",
+        Compiler.compileUTF8(RE2.compile("a").prog).toString());
+  }
+
+  @Test
+  public void testOverlongUTF8() {
+    // Overlong newlines and letters, and sequences cut short by the end of
+    // the input, searched by the DFA over bytes.
+    byte[][] inputs = {
+      {'a', (byte) 0xC1, (byte) 0xA1, 'b'},
+      {(byte) 0xC0, (byte) 0x8A, 'x', (byte) 0xE0, (byte) 0x80, (byte) 0x8A},
+      {'x', (byte) 0xF0, (byte) 0x80, (byte) 0x81, (byte) 0xA1, (byte) 0xC3},
+      {(byte) 0xE2, (byte) 0x82, (byte) 0xAC, 'a', (byte) 0xE2, (byte) 0x82},
+    };
+    for (String pattern : new String[] {"a+b?", "(?m)^x$", "(?s).a", "[^a]+", "\\x{20ac}a", "a$"}) {
+      assertSameAsNFA(pattern, false, new String[0], inputs);
+    }
+  }
+
+  @Test
+  public void testSmallBudget() {
+    // (a|b)*a(a|b){12} needs thousands of states, so the cache is flushed over
+    // and over, and eventually the search falls back to the NFA.
+    RE2 re2 = compile("(a|b)*a(a|b){12}", false, 20000);
+    RE2 nfa = compile("(a|b)*a(a|b){12}", false, 0);
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      b.append((i * 7919) % 3 == 0 ? 'a' : 'b');
+    }
+    b.append("c");
+    String s = b.toString();
+    for (int anchor = RE2.UNANCHORED; anchor <= RE2.ANCHOR_BOTH; anchor++) {
+      for (int ngroup = 0; ngroup <= 1; ngroup++) {
+        int[] got = new int[2];
+        int[] want = new int[2];
+        assertEquals(
+            nfa.match(s, 0, s.length(), anchor, want, ngroup),
+            re2.match(s, 0, s.length(), anchor, got, ngroup));
+        assertEquals(Arrays.toString(want), Arrays.toString(got));
+      }
+    }
+  }
+
+  @Test
+  public void testMemoryBudget() {
+    assertEquals(DFA.DEFAULT_MEMORY_BUDGET, Pattern.compile("a+b").dfaMemoryBudget());
+    Pattern p = Pattern.compile("a+b", 0, 0);
+    assertEquals(0, p.dfaMemoryBudget());
+    assertTrue(p.matcher("xaab").find());
+    assertFalse(p.matches("xaab"));
+    assertTrue(Pattern.compile("a+b", 0, 1 << 16).matches("aab"));
+    try {
+      Pattern.compile("a+b", 0, -1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that literal strings separated by .* are matched as the NFA matches them.
+ */
+@RunWith(JUnit4.class)
+public class DotStarMatcherTest {
+
+  private static final String[] PATTERNS = {
+    ".*ab.*", "ab.*", ".*ab", ".*a.*b.*", "a.*ba", ".*ab.*é.*", "(?s).*b.*a", "(?s)a.*b", "x.*\\x{10400}",
+  };
+
+  private static final String[] INPUTS = {
+    "", "ab", "xaby\nab", "ba\nabab", "a\nb ab\nbab", "aé\nabé\n", "x𐐀\nx𐐀𐐀", "bab\nabba",
+  };
+
+  // Newlines and strings that Machine decodes differently.
+  private static final byte[] MALFORMED = {
+    'a', (byte) 0xC3, '\n', 'b', (byte) 0xC1, (byte) 0xA1, 'b', '\n', 'a', 'b'
+  };
+
+  @Test
+  public void testCompile() {
+    for (String pattern : PATTERNS) {
+      assertNotNull(pattern, RE2.compile(pattern).dotStarMatcher);
+    }
+    String[] others = {"ab", ".*?ab", "a.*b.*?c", "(a).*b", ".*a\\nb.*", "(?s:.)*a.*b", "(?i)k.*", ".+ab"};
+    for (String pattern : others) {
+      assertNull(pattern, RE2.compile(pattern).dotStarMatcher);
+    }
+  }
+
+  @Test
+  public void testSameAsNFA() {
+    for (String pattern : PATTERNS) {
+      for (boolean longest : new boolean[] {false, true}) {
+        RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+        NFATestUtils.assertSameAsNFA(
+            re2, NFATestUtils.nfa(pattern, RE2.PERL, longest), INPUTS, MALFORMED);
+      }
+    }
+  }
+
+  @Test
+  public void testMatcher() {
+    Matcher m = Pattern.compile(".*ERROR.*db.*").matcher("ok\nERROR db\nERROR x\nxERROR in db\n");
+    assertTrue(m.find());
+    assertEquals("ERROR db", m.group());
+    assertTrue(m.find());
+    assertEquals("xERROR in db", m.group());
+    assertFalse(m.find());
+    assertTrue(Pattern.matches(".*foo.*", "a foo b"));
+    assertFalse(Pattern.matches(".*foo.*", "a foo\nb"));
+    assertEquals("xa\nx", Pattern.compile("a.*b").matcher("xa\nab-ab b").replaceFirst("x"));
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that a FileScanner finds in a file the matches that a Matcher finds in each of its lines.
+ */
+@RunWith(JUnit4.class)
+public class FileScannerTest {
+
+  private static final String[] PATTERNS = {
+    "abc",
+    "",
+    "x*",
+    "^a",
+    "c$",
+    "\\Aab",
+    "bc\\z",
+    "(?-m:^)b",
+    "b\\s+a",
+    "[^x]c",
+    "(?s)b.*a",
+    "(?i)straße",
+    "\\bé+\\b",
+    "(?U)a+",
+    "\\A\\w",
+    "[ \\t]\\z",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "\n",
+    "abc",
+    "abc\n",
+    "abc\nabc abc\n\nxc\nbc\n a\nb  \n",
+    "STRASSE\nstraße\nfoo\r\nbar\n\n\n",
+    "é éé\nxéx\néx\nab\n\nabcabc",
+  };
+
+  private static File write(String s) throws Exception {
+    File file = File.createTempFile("re2j", ".txt");
+    file.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(s.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  // Returns what a scan of |s| would report, from the matches of |p| in
+  // each of its lines.
+  private static String want(Pattern p, String s, boolean reportMatches) throws Exception {
+    StringBuilder out = new StringBuilder();
+    byte[] b = s.getBytes("UTF-8");
+    for (int start = 0; start < b.length; ) {
+      int end = start;
+      while (end < b.length && b[end] != '\n') {
+        end++;
+      }
+      byte[] line = new byte[end - start];
+      System.arraycopy(b, start, line, 0, line.length);
+      Matcher m = p.matcher(line);
+      while (m.find()) {
+        append(out, start, end, start + m.start(), start + m.end());
+        if (!reportMatches) {
+          break;
+        }
+      }
+      start = end + 1;
+    }
+    return out.toString();
+  }
+
+  private static void append(
+      StringBuilder out, long lineStart, long lineEnd, long start, long end) {
+    out.append(lineStart).append('-').append(lineEnd).append(':');
+    out.append(start).append('-').append(end).append(';');
+  }
+
+  private static String got(FileScanner scanner, File file) throws Exception {
+    final StringBuilder out = new StringBuilder();
+    long n =
+        scanner.scan(
+            file,
+            new FileScanner.Listener() {
+              @Override
+              public boolean found(long lineStart, long lineEnd, long start, long end) {
+                append(out, lineStart, lineEnd, start, end);
+                return true;
+              }
+            });
+    assertEquals(n, scanner.count(file));
+    return out.toString();
+  }
+
+  @Test
+  public void testSameAsMatcher() throws Exception {
+    for (String s : INPUTS) {
+      File file = write(s);
+      for (String regex : PATTERNS) {
+        Pattern p = Pattern.compile(regex);
+        for (boolean reportMatches : new boolean[] {false, true}) {
+          String want = want(p, s, reportMatches);
+          // Windows smaller than the lines, and as large as the file.
+          for (int window : new int[] {1, 3, 8, 1 << 20}) {
+            FileScanner scanner = new FileScanner(p, window).reportMatches(reportMatches);
+            assertEquals(regex + " on " + s, want, got(scanner, file));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLimits() throws Exception {
+    File file = write("a1 a2\nb\na3\na4 a5 a6\n");
+    FileScanner scanner = Pattern.compile("a\\d").fileScanner();
+    assertEquals(3, scanner.count(file));
+    assertEquals(6, scanner.reportMatches(true).count(file));
+    assertEquals(4, scanner.limit(4).count(file));
+    assertEquals(2, scanner.reportMatches(false).limit(2).count(file));
+    assertEquals(0, scanner.limit(0).count(file));
+
+    // A listener that stops at the second match.
+    final StringBuilder out = new StringBuilder();
+    FileScanner.Listener listener =
+        new FileScanner.Listener() {
+          @Override
+          public boolean found(long lineStart, long lineEnd, long start, long end) {
+            append(out, lineStart, lineEnd, start, end);
+            return out.length() < 16;
+          }
+        };
+    assertEquals(2, scanner.limit(Long.MAX_VALUE).reportMatches(true).scan(file, listener));
+    assertEquals("0-5:0-2;0-5:3-5;", out.toString());
+  }
+}
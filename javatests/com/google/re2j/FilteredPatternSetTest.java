@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class FilteredPatternSetTest {
+
+  private static final String[] PATTERNS = {
+    "hello.*world|goodbye",
+    "abc+(de|fg)",
+    "a[bc]d",
+    "(?i)straße",
+    "\\d+",
+    "x*",
+    "[^\\x00-\\x{10FFFF}]",
+    "(?i)k+elvin",
+    "foo(bar)?baz",
+    "^GET /admin/\\w+$",
+    "(ab|cd){2}",
+    "𐐀+x",
+    "\\bthe\\b",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "hello, world",
+    "world hello",
+    "goodbye",
+    "abcccfg",
+    "abdacd",
+    "STRASSE STRAẞE",
+    "42",
+    "Kelvin",
+    "foobaz foobarbaz",
+    "GET /admin/users",
+    "abcdx",
+    "𐐀𐐀x",
+    "then the end",
+  };
+
+  private static int[] find(String[] patterns, String input) {
+    List<Integer> found = new ArrayList<Integer>();
+    for (int i = 0; i < patterns.length; i++) {
+      if (Pattern.compile(patterns[i]).matcher(input).find()) {
+        found.add(i);
+      }
+    }
+    int[] indexes = new int[found.size()];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = found.get(i);
+    }
+    return indexes;
+  }
+
+  private static FilteredPatternSet compile(String[] patterns, int minAtomLength) {
+    FilteredPatternSet set = new FilteredPatternSet(minAtomLength);
+    for (int i = 0; i < patterns.length; i++) {
+      assertEquals(i, set.add(Pattern.compile(patterns[i])));
+    }
+    set.compile();
+    return set;
+  }
+
+  private static boolean contains(int[] a, int[] b) {
+    for (int x : b) {
+      if (Arrays.binarySearch(a, x) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Test
+  public void testMatch() throws Exception {
+    for (int minAtomLength = 0; minAtomLength <= 4; minAtomLength++) {
+      FilteredPatternSet set = compile(PATTERNS, minAtomLength);
+      assertEquals(PATTERNS.length, set.size());
+      for (String input : INPUTS) {
+        int[] want = find(PATTERNS, input);
+        assertArrayEquals(input, want, set.match(input));
+        assertArrayEquals(input, want, set.match(input.getBytes("UTF-8")));
+        int[] candidates = set.candidates(input);
+        assertTrue(input, contains(candidates, want));
+        assertArrayEquals(input, candidates, set.candidates(input.getBytes("UTF-8")));
+      }
+    }
+  }
+
+  @Test
+  public void testFiltering() {
+    FilteredPatternSet set = compile(PATTERNS, 3);
+    // Only the patterns without atoms of 3 or more runes are left.
+    assertArrayEquals(new int[] {1, 4, 5, 11}, set.candidates("nothing to see"));
+    assertArrayEquals(new int[] {0, 1, 4, 5, 11}, set.candidates("Hello World"));
+  }
+
+  @Test
+  public void testMalformedUTF8() {
+    // Decoded from the start, the stray lead byte swallows "hel", but
+    // Matcher.find() finds "hello" by searching the bytes for it.
+    byte[] input = {(byte) 0xf0, 'h', 'e', 'l', 'l', 'o', '1'};
+    String[] patterns = {"hello", "hello\\d", "goodbye"};
+    for (int i = 0; i < 2; i++) {
+      assertTrue(patterns[i], Pattern.compile(patterns[i]).matcher(input).find());
+    }
+    FilteredPatternSet set = compile(patterns, 3);
+    assertArrayEquals(new int[] {0, 1, 2}, set.candidates(input));
+    assertArrayEquals(new int[] {0, 1}, set.match(input));
+  }
+
+  @Test
+  public void testAtoms() {
+    FilteredPatternSet set = compile(PATTERNS, 0);
+    String[] want = {
+      "(hello world|goodbye)",
+      "ab c (de|fg)",
+      "(abd|acd)",
+      "straße",
+      "",
+      "",
+      "*no-matches*",
+      "k elvin",
+      "foo baz",
+      "get /admin/",
+      "(abab|abcd|cdab|cdcd)",
+      "𐐨 x", // the lower case of 𐐀
+      "the",
+    };
+    for (int i = 0; i < want.length; i++) {
+      assertEquals(PATTERNS[i], want[i], set.prefilter(i));
+    }
+    assertEquals(
+        Arrays.asList(
+            "hello", "world", "goodbye", "ab", "c", "de", "fg", "abd", "acd", "straße", "k",
+            "elvin", "foo", "baz", "get /admin/", "abab", "abcd", "cdab", "cdcd", "𐐨", "x",
+            "the"),
+        set.atoms());
+  }
+
+  @Test
+  public void testManyPatterns() {
+    FilteredPatternSet set = new FilteredPatternSet(3);
+    for (int i = 0; i < 1000; i++) {
+      set.add(Pattern.compile("id=" + i + "\\b|user" + (i * 7) + "@"));
+    }
+    set.compile();
+    assertArrayEquals(
+        new int[] {3, 42, 420}, set.match("GET /?id=42&x=1 user21@example.com id=420"));
+    assertArrayEquals(new int[] {}, set.candidates("nothing here"));
+  }
+
+  @Test
+  public void testState() {
+    FilteredPatternSet set = new FilteredPatternSet();
+    set.add(Pattern.compile("abc"));
+    assertEquals("abc", set.prefilter(0));
+    try {
+      set.match("abc");
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      set.atoms();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    set.compile();
+    try {
+      set.add(Pattern.compile("b"));
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      set.compile();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      new FilteredPatternSet(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests the sets of runes that can start a match, and that Machine finds the same matches when it
+ * skips to them.
+ */
+@RunWith(JUnit4.class)
+public class FirstRunesTest {
+
+  private static final String[] PATTERNS = {
+    "[0-9a-f]{4}", "(foo|bar|baz)\\d", "\\b[A-Z]\\w", "(?i)k|é\\d", "(?m)^[x€]$", "[^\\x00-\\x{ffff}]",
+  };
+
+  private static final String[] INPUTS = {
+    "", "zz0a1b", "xbar7 foo", "a KkK3 é4", "x\n€\nx", "é𐐀é",
+  };
+
+  @Test
+  public void testContains() {
+    FirstRunes first = RE2.compile("(foo|bar|baz)\\d").prog.first;
+    assertNotNull(first);
+    assertTrue(first.contains('f'));
+    assertTrue(first.contains('b'));
+    assertFalse(first.contains('a'));
+    first = RE2.compile("(?i)k|\\x{10400}").prog.first;
+    assertTrue(first.contains('K'));
+    assertTrue(first.contains(0x212A)); // Kelvin sign
+    assertTrue(first.contains(0x10400));
+    assertTrue(first.contains(0x10428));
+    assertFalse(first.contains(0x10401));
+  }
+
+  @Test
+  public void testNoFirstRunes() {
+    for (String pattern : new String[] {"a*", "x|", ".b", "(?s).b", "\\b|c"}) {
+      assertNull(pattern, RE2.compile(pattern).prog.first);
+    }
+  }
+
+  @Test
+  public void testSameMatches() throws Exception {
+    for (String pattern : PATTERNS) {
+      RE2 re2 = RE2.compile(pattern);
+      assertNotNull(pattern, re2.prog.first);
+      for (String s : INPUTS) {
+        byte[] b = s.getBytes("UTF-8");
+        for (int enc = 0; enc < 2; enc++) {
+          MachineInput in = enc == 0 ? MachineInput.fromUTF16(s) : MachineInput.fromUTF8(b);
+          int n = enc == 0 ? s.length() : b.length;
+          for (int pos = 0; pos <= n; pos++) {
+            int[] got = match(re2, in, pos);
+            FirstRunes first = re2.prog.first;
+            re2.prog.first = null;
+            int[] want = match(re2, in, pos);
+            re2.prog.first = first;
+            if (!Arrays.equals(got, want)) {
+              fail(pattern + " on " + s + " from " + pos + ": got " + Arrays.toString(got)
+                  + ", want " + Arrays.toString(want));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static int[] match(RE2 re2, MachineInput in, int pos) {
+    Machine m = new Machine(re2);
+    m.init(2);
+    return m.match(in, pos, RE2.UNANCHORED) ? m.submatches() : null;
+  }
+
+  @Test
+  public void testIndexFirst() throws Exception {
+    FirstRunes first = RE2.compile("[0-9]x").prog.first;
+    String s = "abé𐐀c7";
+    assertEquals(6, MachineInput.fromUTF16(s).indexFirst(first, 0));
+    assertEquals(6, MachineInput.fromUTF16(s).indexFirst(first, 6));
+    assertEquals(7, MachineInput.fromUTF16(s).indexFirst(first, 7));
+    byte[] b = s.getBytes("UTF-8");
+    assertEquals(9, MachineInput.fromUTF8(b).indexFirst(first, 0));
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests skipping ahead to prefixes that are matched ignoring case.
+ */
+@RunWith(JUnit4.class)
+public class FoldedPrefixTest {
+
+  private static final String[] PATTERNS = {
+    "(?i)exception: \\w+", "(?i)sk\\d+", "(?i)é+x", "(?i)ab(?-i)C\\w+", "(?i)k\\b",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "Exception: x",
+    "an EXCEPTION: oops",
+    "exception:  no",
+    "ſK1 sK2",
+    "éÉéx",
+    "aBCd abcd ABCd",
+    "KKk x",
+  };
+
+  @Test
+  public void testPrefix() {
+    assertEquals("EXCEPTION: ", RE2.compile("(?i)exception: \\w+").prefix);
+    assertEquals("AB", RE2.compile("(?i)ab(?-i)C\\w+").prefix);
+    assertEquals("AB", RE2.compile("(?i)ab(?-i)\\d+").prefix);
+    assertNotNull(RE2.compile("(?i)abc\\d+").prefixFold);
+    assertNull(RE2.compile("abc\\d+").prefixFold);
+  }
+
+  @Test
+  public void testIndex() throws Exception {
+    RE2 re2 = RE2.compile("(?i)sk\\d+");
+    assertNotNull(re2.prefixFold);
+    String s = "xs \u017f\u212a SK"; // long s, Kelvin sign
+    assertEquals(3, MachineInput.fromUTF16(s).index(re2, 0));
+    assertEquals(2, MachineInput.fromUTF16(s).index(re2, 4));
+    assertEquals(-1, MachineInput.fromUTF16(s).index(re2, 7));
+    byte[] b = s.getBytes("UTF-8");
+    assertEquals(3, MachineInput.fromUTF8(b).index(re2, 0));
+    assertEquals(5, MachineInput.fromUTF8(b).index(re2, 4));
+  }
+
+  @Test
+  public void testSameWithoutPrefix() throws Exception {
+    for (String pattern : PATTERNS) {
+      RE2 re2 = RE2.compile(pattern);
+      assertNotNull(pattern, re2.prefixFold);
+      RE2 slow = RE2.compile(pattern);
+      slow.prefix = "";
+      slow.prefixFold = null;
+      slow.dfaMemoryBudget = 0;
+      for (String s : INPUTS) {
+        for (int enc = 0; enc < 2; enc++) {
+          MatcherInput input =
+              enc == 0 ? MatcherInput.utf16(s) : MatcherInput.utf8(s.getBytes("UTF-8"));
+          int n = enc == 0 ? s.length() : s.getBytes("UTF-8").length;
+          int ngroup = 1 + re2.numberOfCapturingGroups();
+          int[] got = new int[2 * ngroup];
+          int[] want = new int[2 * ngroup];
+          boolean matched = re2.match(input, 0, n, RE2.UNANCHORED, got, ngroup);
+          boolean slowMatched = slow.match(input, 0, n, RE2.UNANCHORED, want, ngroup);
+          if (matched != slowMatched || !Arrays.equals(got, want)) {
+            fail(
+                String.format(
+                    "%s on %s: got %s %s, want %s %s",
+                    pattern,
+                    s,
+                    matched,
+                    Arrays.toString(got),
+                    slowMatched,
+                    Arrays.toString(want)));
+          }
+        }
+      }
+    }
+  }
+}
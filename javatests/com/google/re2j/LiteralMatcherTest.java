@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that literal strings are found where the NFA finds them.
+ */
+@RunWith(JUnit4.class)
+public class LiteralMatcherTest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "ab",
+    "aab",
+    "^ab",
+    "ab$",
+    "\\Aab\\z",
+    "(?i)ab",
+    "x(?i)ab",
+    "(?i)^é",
+    "é$",
+    "𐐀a",
+    "\\Q.*\\E",
+  };
+
+  private static final String[] INPUTS = {
+    "", "a", "ab", "aab", "xaabab", "AbxAB", "xAb", "éÉé", "a𐐀a𐐀", ".*x.*",
+  };
+
+  // Byte strings that are not well-formed UTF-8: overlong encodings of 'a'
+  // and 'b', truncated and stray sequences.
+  private static final byte[][] MALFORMED = {
+    {'a', 'a', (byte) 0xC1, (byte) 0xA2},
+    {(byte) 0xC1, (byte) 0xA1, 'b', 'a', 'b'},
+    {'x', (byte) 0xE0, (byte) 0x81, (byte) 0xA1, 'a', 'b'},
+    {'a', (byte) 0xF0, 'a', 'b', 'a', 'b'},
+    {(byte) 0x80, 'a', 'b', (byte) 0xC3},
+    {'x', (byte) 0xC1, (byte) 0xA1, (byte) 0xC1, (byte) 0xA2},
+  };
+
+  @Test
+  public void testSameAsNFA() {
+    for (String pattern : PATTERNS) {
+      RE2 re2 = RE2.compile(pattern);
+      assertNotNull(pattern, re2.literalMatcher);
+      NFATestUtils.assertSameAsNFA(re2, NFATestUtils.nfa(pattern), INPUTS, MALFORMED);
+    }
+  }
+
+  @Test
+  public void testNotLiteral() {
+    for (String pattern :
+        new String[] {"a|b", "(a)", "a*", "(?m)^a", "a\\b", "(?i)k", "(?i)s", "^$", "[ab]c"}) {
+      assertNull(pattern, RE2.compile(pattern).literalMatcher);
+    }
+  }
+
+  @Test
+  public void testMatcher() {
+    Pattern p = Pattern.compile(Pattern.quote("a.b"));
+    assertNotNull(p.re2().literalMatcher);
+    Matcher m = p.matcher("xa.ba.bab");
+    assertTrue(m.find());
+    assertEquals(1, m.start());
+    assertTrue(m.find());
+    assertEquals(4, m.start());
+    assertEquals(7, m.end());
+    assertFalse(m.find());
+    assertEquals("x--b", p.matcher("xa.b-b").replaceAll("-"));
+    assertEquals("[x, b, ]", Arrays.toString(p.split("xa.bba.b", -1)));
+    assertTrue(p.matches("a.b"));
+    assertFalse(p.matches("a.bb"));
+    assertTrue(p.matcher("a.bb").lookingAt());
+  }
+}
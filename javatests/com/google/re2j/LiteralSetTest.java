@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that unions of literal strings match, with their submatches, as the NFA does.
+ */
+@RunWith(JUnit4.class)
+public class LiteralSetTest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "abc",
+    "a|ab",
+    "ab|a",
+    "abc|bc|c",
+    "bc|abcd",
+    "12345|123123|qwerty|mypass|abcdefg|password|letmein|iloveyou",
+    "(foo|bar)(baz|qux)?",
+    "x(a|b)??y",
+    "[abc]|d",
+    "(?i)k|s",
+    "(?i:ab)c|AB",
+    "é|e",
+    "𐐀a|a",
+    "((a)|(ab))(c)?",
+    "(a(b)?){2}",
+    "(a|ab)(c|bcd)?",
+    "(?i)(é)(x|)y",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "a",
+    "abcd",
+    "xabcbcdx",
+    "foobaz barqux foo",
+    "kKKsſS",
+    "ABc abC ab",
+    "éé xéyx",
+    "xay xy",
+    "abcabbcd aabc",
+    "123123 password",
+    "𐐀a𐐀",
+  };
+
+  private static void assertSameAsNFA(String pattern, final boolean longest) {
+    final RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+    assertNotNull(pattern, re2.literals);
+    NFATestUtils.assertSameAsNFA(
+        re2,
+        new NFATestUtils.Engine() {
+          @Override
+          public int[] match(MachineInput in, int pos, int anchor, int ncap) {
+            return re2.literals.match(in, pos, anchor, ncap, longest);
+          }
+        },
+        INPUTS);
+  }
+
+  @Test
+  public void testLeftmostFirst() {
+    for (String pattern : PATTERNS) {
+      assertSameAsNFA(pattern, false);
+    }
+  }
+
+  @Test
+  public void testLeftmostLongest() {
+    for (String pattern : PATTERNS) {
+      assertSameAsNFA(pattern, true);
+    }
+  }
+
+  @Test
+  public void testNotLiterals() {
+    for (String pattern :
+        new String[] {"a*", "a+", "a|", "^a|b", "a\\b", "[^a]", ".", "(?:)", "[^\\x00-\\x{10FFFF}]"}) {
+      assertNull(pattern, RE2.compile(pattern).literals);
+    }
+  }
+
+  @Test
+  public void testKeywords() {
+    Random r = new Random(1);
+    String[] words = new String[10000];
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < words.length; i++) {
+      StringBuilder w = new StringBuilder();
+      for (int j = 4 + r.nextInt(6); j > 0; j--) {
+        w.append((char) ('a' + r.nextInt(26)));
+      }
+      words[i] = w.toString();
+      b.append(i == 0 ? "(" : "|").append(words[i]);
+    }
+    b.append(")");
+    Pattern p = Pattern.compile(b.toString());
+    assertNotNull(p.re2().literals);
+    Matcher m = p.matcher("-- " + words[1234] + " " + words[42] + "!");
+    assertTrue(m.find());
+    assertEquals(words[1234], m.group(1));
+    assertEquals(3, m.start());
+    assertTrue(m.find());
+    assertEquals(words[42], m.group());
+    assertFalse(m.find());
+    assertTrue(p.matcher(words[9999]).matches());
+    assertFalse(p.matcher(words[9999] + "!").matches());
+  }
+}
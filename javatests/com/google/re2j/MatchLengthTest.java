@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests the bounds on the lengths of matches, and that searches ruled out by them find nothing
+ * the NFA finds.
+ */
+@RunWith(JUnit4.class)
+public class MatchLengthTest {
+
+  private static final String[] PATTERNS = {
+    "\\d{3}-\\d{4}",
+    "^a\\w?$",
+    "(?i)k{2}",
+    "é|ab",
+    "\\x{10400}x?",
+    "(a|bc)+",
+    "^(ab)*\\z",
+    "[^a]{2}",
+    "\\A\\x{212A}\\z",
+    "^\\x{10400}$",
+  };
+
+  private static final String[] INPUTS = {
+    "", "a", "ab", "ab\n", "abcbc", "555-1234", "5555-12345", "KKk", "é", "𐐀", "𐐀x𐐀", "xé",
+  };
+
+  // Byte strings that are not well-formed UTF-8, where runes decode from
+  // more bytes than their shortest encodings.
+  private static final byte[][] MALFORMED = {
+    {(byte) 0xC1, (byte) 0xA1},
+    {'a', (byte) 0xF0, (byte) 0x80, (byte) 0x81, (byte) 0xA1},
+    {(byte) 0xE0, (byte) 0x81, (byte) 0xA1, (byte) 0xC3},
+    {(byte) 0xF0, (byte) 0x90, (byte) 0x90},
+    // A Kelvin sign, and a truncated sequence that ends the text before it.
+    {(byte) 0xE2, (byte) 0x84, (byte) 0xAA, (byte) 0xE2, (byte) 0x82},
+  };
+
+  private static void assertLengths(String pattern, int min16, int max16, int min8, int max8) {
+    MatchLength length = RE2.compile(pattern).matchLength;
+    assertEquals(pattern, min16 + " " + max16 + " " + min8 + " " + max8,
+        length.minUTF16 + " " + length.maxUTF16 + " " + length.minUTF8 + " " + length.maxUTF8);
+  }
+
+  @Test
+  public void testLengths() {
+    assertLengths("\\d{3}-\\d{4}", 8, 8, 8, 32);
+    assertLengths("a+", 1, -1, 1, -1);
+    assertLengths("(?:ab)?c*", 0, -1, 0, -1);
+    assertLengths("^$", 0, 0, 0, 0);
+    assertLengths("(?:\\b|x){2,4}", 0, 4, 0, 16);
+    assertLengths("é|€|\\x{10400}", 1, 2, 2, 4);
+    assertLengths("é€|\\x{10400}", 2, 2, 4, 8);
+    assertLengths("(?s).", 1, 2, 1, 4);
+    // The Kelvin sign, U+212A, is a k in three bytes.
+    assertLengths("(?i)k", 1, 1, 1, 4);
+    assertLengths("(?i)\\x{212A}", 1, 1, 1, 4);
+    assertLengths("[^\\x00-\\x{10FFFF}]", 0, 0, 0, 0);
+    assertLengths("a{2,5}b", 3, 6, 3, 24);
+  }
+
+  @Test
+  public void testSameAsNFA() {
+    for (String pattern : PATTERNS) {
+      RE2 re2 = RE2.compile(pattern);
+      assertNotNull(pattern, re2.matchLength);
+      NFATestUtils.assertSameAsNFA(re2, NFATestUtils.nfa(pattern), INPUTS, MALFORMED);
+    }
+  }
+
+  @Test
+  public void testMatcher() {
+    // Input far too long for the pattern is rejected without being read.
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 1 << 20; i++) {
+      b.append("555-1234");
+    }
+    assertFalse(Pattern.matches("\\d{3}-\\d{4}", b));
+    assertFalse(Pattern.compile("^\\d{3}-\\d{4}$").matcher(b).find());
+    assertTrue(Pattern.compile("\\d{3}-\\d{4}").matcher(b).find());
+    assertFalse(Pattern.compile("\\d{3}-\\d{4}").matcher("555-123").find());
+    assertTrue(Pattern.matches("\\d{3}-\\d{4}", "555-1234"));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+// Utilities to check that the engines RE2 picks between find what the NFA
+// alone finds, in every part of some inputs.
+class NFATestUtils {
+
+  // An engine that RE2.doExecute() may hand a search to, called as it calls
+  // it, returning the |ncap| submatch indices, or null for no match.
+  interface Engine {
+    int[] match(MachineInput in, int pos, int anchor, int ncap);
+  }
+
+  // Returns |pattern| compiled as RE2.compileImpl() compiles it, with the
+  // engines and shortcuts that RE2.doExecute() may take instead of running
+  // Machine turned off: every search it answers runs the Pike VM.
+  static RE2 nfa(String pattern, int flags, boolean longest) {
+    RE2 nfa = RE2.compileImpl(pattern, flags, longest);
+    nfa.onePass = null;
+    nfa.literals = null;
+    nfa.literalMatcher = null;
+    nfa.dotStarMatcher = null;
+    nfa.required = null;
+    nfa.matchLength = null;
+    nfa.backtrack = false;
+    nfa.dfaMemoryBudget = 0;
+    return nfa;
+  }
+
+  static RE2 nfa(String pattern) {
+    return nfa(pattern, RE2.PERL, false);
+  }
+
+  // Returns the submatches that Machine finds in |in| from |pos|, or null.
+  static int[] nfa(RE2 re2, MachineInput in, int pos, int anchor, int ncap) {
+    Machine m = new Machine(re2);
+    m.init(ncap);
+    return m.match(in, pos, anchor) ? m.submatches() : null;
+  }
+
+  // Checks that all kinds of searches give the same result with |re2| as
+  // with |nfa|, in each of |inputs|, as UTF-16 and as UTF-8, and in each of
+  // |malformed|, as UTF-8.
+  static void assertSameAsNFA(RE2 re2, RE2 nfa, String[] inputs, byte[]... malformed) {
+    for (String s : inputs) {
+      assertSameAsNFA(re2, nfa, MatcherInput.utf16(s));
+      assertSameAsNFA(re2, nfa, MatcherInput.utf8(GoTestUtils.utf8(s)));
+    }
+    for (byte[] b : malformed) {
+      assertSameAsNFA(re2, nfa, MatcherInput.utf8(b));
+    }
+  }
+
+  // Checks every search of |input| between positions |start| <= |end|, with
+  // each anchor and number of groups.  In UTF-8, these include searches
+  // that start in the middle of a sequence, as Matcher.find() makes after
+  // an empty match.
+  static void assertSameAsNFA(RE2 re2, RE2 nfa, MatcherInput input) {
+    int length = input.length();
+    for (int start = 0; start <= length; start++) {
+      for (int end = start; end <= length; end++) {
+        for (int anchor = RE2.UNANCHORED; anchor <= RE2.ANCHOR_BOTH; anchor++) {
+          for (int ngroup = 0; ngroup <= 1 + re2.numSubexp; ngroup++) {
+            int[] got = new int[2 * ngroup];
+            int[] want = new int[2 * ngroup];
+            boolean matched = re2.match(input, start, end, anchor, got, ngroup);
+            boolean nfaMatched = nfa.match(input, start, end, anchor, want, ngroup);
+            if (matched != nfaMatched || !Arrays.equals(got, want)) {
+              fail(
+                  String.format(
+                      "%s on %s [%d, %d) anchor %d ngroup %d: got %s %s, want %s %s",
+                      re2,
+                      input.getEncoding(),
+                      start,
+                      end,
+                      anchor,
+                      ngroup,
+                      matched,
+                      Arrays.toString(got),
+                      nfaMatched,
+                      Arrays.toString(want)));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Checks that |engine| finds the same submatches of |re2| as Machine, in
+  // each of |inputs|, as UTF-16 and as UTF-8.
+  static void assertSameAsNFA(RE2 re2, Engine engine, String[] inputs) {
+    for (String s : inputs) {
+      assertSameAsNFA(re2, engine, MatcherInput.utf16(s));
+      assertSameAsNFA(re2, engine, MatcherInput.utf8(GoTestUtils.utf8(s)));
+    }
+  }
+
+  // Checks the searches of |input| that RE2.doExecute() does not rule out
+  // itself.  Without submatches, only whether there is a match is compared.
+  static void assertSameAsNFA(RE2 re2, Engine engine, MatcherInput input) {
+    int length = input.length();
+    for (int start = 0; start <= length; start++) {
+      for (int end = start; end <= length; end++) {
+        MachineInput in =
+            input.getEncoding() == MatcherInput.Encoding.UTF_16
+                ? MachineInput.fromUTF16(input.asCharSequence(), 0, end)
+                : MachineInput.fromUTF8(input.asBytes(), 0, end);
+        for (int anchor = RE2.UNANCHORED; anchor <= RE2.ANCHOR_BOTH; anchor++) {
+          if ((anchor != RE2.UNANCHORED || (re2.cond & Utils.EMPTY_BEGIN_TEXT) != 0)
+              && start != 0) {
+            continue; // handled by RE2.doExecute
+          }
+          for (int ncap : new int[] {0, 2, 2 + 2 * re2.numSubexp}) {
+            int[] got = engine.match(in, start, anchor, ncap);
+            int[] want = nfa(re2, in, start, anchor, ncap);
+            if ((got == null) != (want == null)
+                || (ncap > 0 && got != null && !Arrays.equals(got, want))) {
+              fail(
+                  String.format(
+                      "%s on %s [%d, %d) anchor %d ncap %d: got %s, want %s",
+                      re2,
+                      input.getEncoding(),
+                      start,
+                      end,
+                      anchor,
+                      ncap,
+                      Arrays.toString(got),
+                      Arrays.toString(want)));
+            }
+          }
+        }
+      }
+    }
+  }
+}
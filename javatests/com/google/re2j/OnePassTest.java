@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class OnePassTest {
+
+  private static final String[] ONE_PASS = {
+    "^(\\w+)=(\\d+);(.*)$",
+    "a(b|c)d",
+    "(\\d+)-(\\d+)",
+    "x*y",
+    "(?i)(k+)s",
+    "^(?:(a)|(b))c$",
+    "(a)(b)?",
+    "(\\bfoo\\b)?(bar)",
+    "(a*)$",
+  };
+
+  private static final String[] NOT_ONE_PASS = {
+    "(a|b)*a", "a*a", "(a*)*", "(.*)x", "(a)|\\wb", "(\\w+)(\\d+)",
+  };
+
+  private static final String[] INPUTS = {
+    "", "a", "abd", "acdx", "foo=42;rest", "12-345", "xxy", "kKs", "bc", "ab", "foo bar", "foobar",
+  };
+
+  @Test
+  public void testAnalysis() {
+    for (String pattern : ONE_PASS) {
+      assertNotNull(pattern, RE2.compile(pattern).onePass);
+    }
+    for (String pattern : NOT_ONE_PASS) {
+      assertNull(pattern, RE2.compile(pattern).onePass);
+    }
+  }
+
+  private static void assertSameAsNFA(String pattern, boolean longest) {
+    RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+    assertNotNull(pattern, re2.onePass);
+    NFATestUtils.assertSameAsNFA(re2, NFATestUtils.nfa(pattern, RE2.PERL, longest), INPUTS);
+  }
+
+  @Test
+  public void testSameAsNFA() {
+    for (String pattern : ONE_PASS) {
+      assertSameAsNFA(pattern, false);
+      assertSameAsNFA(pattern, true);
+    }
+  }
+
+  @Test
+  public void testMatcherGroups() {
+    Matcher m = Pattern.compile("(\\w+)=(\\d+);(.*)").matcher("key=42;rest of line");
+    assertEquals(true, m.matches());
+    assertEquals("key", m.group(1));
+    assertEquals("42", m.group(2));
+    assertEquals("rest of line", m.group(3));
+
+    m = Pattern.compile("(\\w+)=(\\d+)").matcher("a b=1 c=23");
+    assertEquals(true, m.find());
+    assertEquals("b", m.group(1));
+    assertEquals(true, m.find());
+    assertEquals("c", m.group(1));
+    assertEquals("23", m.group(2));
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that searching chunks of the input in parallel finds the matches that Matcher.find() finds
+ * in turn.
+ */
+@RunWith(JUnit4.class)
+public class ParallelFindTest {
+
+  private static final String[] PATTERNS = {
+    "ab",
+    "a+",
+    "x*",
+    "",
+    "b.*a",
+    "(?s)b.*a",
+    "\\b\\w{2,3}\\b",
+    "(?m)^.$",
+    "[aé]b?|c",
+    "(?i)AB|ÉÉ",
+    "\\x{10400}|b\\z",
+    "\\Aa",
+    "(?U)a+|b",
+  };
+
+  private static final String[] PIECES = {"a", "b", "c", " ", "é", "𐐀", "\n", "ab"};
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  private static String randomString(Random r) {
+    StringBuilder b = new StringBuilder();
+    for (int n = r.nextInt(200); n > 0; n--) {
+      b.append(PIECES[r.nextInt(PIECES.length)]);
+    }
+    return b.toString();
+  }
+
+  private static int[] want(Matcher m) {
+    List<Integer> list = new ArrayList<Integer>();
+    while (m.find()) {
+      list.add(m.start());
+      list.add(m.end());
+    }
+    int[] out = new int[list.size()];
+    for (int i = 0; i < out.length; i++) {
+      out[i] = list.get(i);
+    }
+    return out;
+  }
+
+  private void check(Pattern p, MatcherInput input, String what) throws Exception {
+    int[] want = want(p.matcher(input));
+    for (int chunks : new int[] {1, 2, 3, 7, 50}) {
+      int[] got = new ParallelFind(p.re2(), input).run(executor, chunks);
+      assertArrayEquals(p + " on " + what + " in " + chunks, want, got);
+    }
+  }
+
+  @Test
+  public void testSameAsMatcher() throws Exception {
+    Random r = new Random(1);
+    for (String regex : PATTERNS) {
+      Pattern p = Pattern.compile(regex);
+      for (int i = 0; i < 30; i++) {
+        String s = randomString(r);
+        check(p, MatcherInput.utf16(s), s);
+        byte[] b = s.getBytes("UTF-8");
+        check(p, MatcherInput.utf8(b), s);
+        // Not well-formed UTF-8.
+        for (int j = 0; j < b.length / 8; j++) {
+          b[r.nextInt(b.length)] = (byte) (0x80 + r.nextInt(0x80));
+        }
+        check(p, MatcherInput.utf8(b), "malformed " + s);
+      }
+    }
+  }
+
+  @Test
+  public void testTruncatedRuneAtEnd() throws Exception {
+    // The search stops at the cut-short \xf0, never reaching the "aa".
+    byte[] b = {'c', (byte) 0xf0, (byte) 0xa9, 'b', (byte) 0xc3, (byte) 0xa9, 'a', 'a'};
+    check(Pattern.compile("[aé]b?|c"), MatcherInput.utf8(b), "truncated");
+  }
+
+  @Test
+  public void testLongInput() throws Exception {
+    StringBuilder b = new StringBuilder();
+    Random r = new Random(2);
+    while (b.length() < 1 << 20) {
+      b.append(r.nextInt(1000)).append(r.nextBoolean() ? " bottles\n" : " cans\n");
+    }
+    String s = b.toString();
+    for (String regex : new String[] {"\\d+ bottles", "\\w+", "(?m)^\\d*7.*$", "notfound"}) {
+      Pattern p = Pattern.compile(regex);
+      assertArrayEquals(regex, want(p.matcher(s)), p.findAll(s, executor));
+      byte[] utf8 = s.getBytes("UTF-8");
+      assertArrayEquals(regex, want(p.matcher(utf8)), p.findAll(utf8, executor));
+    }
+  }
+}
@@ -237,12 +237,14 @@ public class PatternTest {
     Pattern reserialized = reserialize(p);
     assertEquals(p.pattern(), reserialized.pattern());
     assertEquals(p.flags(), reserialized.flags());
+    assertEquals(p.dfaMemoryBudget(), reserialized.dfaMemoryBudget());
   }
 
   @Test
   public void testSerialize() {
     assertSerializes(Pattern.compile("ab+c"));
     assertSerializes(Pattern.compile("^ab.*c$", Pattern.DOTALL | Pattern.MULTILINE));
+    assertSerializes(Pattern.compile("ab+c", 0, 1 << 16));
     assertFalse(reserialize(Pattern.compile("abc")).matcher("def").find());
   }
 
@@ -252,9 +254,12 @@ public class PatternTest {
     Pattern pattern2 = Pattern.compile("abc");
     Pattern pattern3 = Pattern.compile("def");
     Pattern pattern4 = Pattern.compile("abc", Pattern.CASE_INSENSITIVE);
+    Pattern pattern5 = Pattern.compile("abc", 0, 0);
     assertThat(pattern1).isEqualTo(pattern2);
     assertThat(pattern1).isNotEqualTo(pattern3);
     assertThat(pattern1.hashCode()).isEqualTo(pattern2.hashCode());
     assertThat(pattern1).isNotEqualTo(pattern4);
+    assertThat(pattern1).isNotEqualTo(pattern5);
+    assertThat(pattern5).isEqualTo(Pattern.compile("abc", 0, 0));
   }
 }
@@ -87,7 +87,15 @@ public class ProgTest {
       "A[Aa]",
       "0       fail\n"
           + "1*      rune1 \"A\" -> 2\n"
-          + "2       rune \"A\"/i -> 3\n"
+          + "2       rune \"AAaa\"/i -> 3\n"
+          + "3       match\n"
+    },
+    {
+      // Case-insensitive runes match their case folding orbits.
+      "(?i)ks",
+      "0       fail\n"
+          + "1*      rune \"KKkk\u212a\u212a\"/i -> 2\n"
+          + "2       rune \"SSss\u017f\u017f\"/i -> 3\n"
           + "3       match\n"
     },
     {
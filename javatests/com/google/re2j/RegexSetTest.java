@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RegexSetTest {
+
+  private static final String[] PATTERNS = {
+    "a+b",
+    "^foo",
+    "bar$",
+    "(?m)^bar$",
+    "\\bbaz\\b",
+    "(?i)qux",
+    "x*",
+    "[0-9]{3}-[0-9]{4}",
+    "é",
+    "(a|b)*c(d|e)",
+    "\\Bo",
+    "$^",
+  };
+
+  private static final String[] INPUTS = {
+    "", "aab", "foo", "a foo", "bar", "bar\nx", "x\nbar\ny", "baz", "abaz", "QuX", "555-1234",
+    "café", "ababce", "foo bar", "oo",
+  };
+
+  // Returns the indexes of the patterns that Matcher.find finds in |input|.
+  private static int[] find(String[] patterns, int flags, String input) {
+    List<Integer> found = new ArrayList<Integer>();
+    for (int i = 0; i < patterns.length; i++) {
+      if (Pattern.compile(patterns[i], flags).matcher(input).find()) {
+        found.add(i);
+      }
+    }
+    int[] indexes = new int[found.size()];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = found.get(i);
+    }
+    return indexes;
+  }
+
+  private static RegexSet compile(String[] patterns, int flags, int budget) {
+    RegexSet set = new RegexSet(flags, budget);
+    assertEquals(budget, set.dfaMemoryBudget());
+    for (int i = 0; i < patterns.length; i++) {
+      assertEquals(i, set.add(patterns[i]));
+    }
+    set.compile();
+    return set;
+  }
+
+  @Test
+  public void testMatch() throws Exception {
+    for (int flags : new int[] {0, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE}) {
+      for (int budget : new int[] {DFA.DEFAULT_MEMORY_BUDGET, 0}) {
+        RegexSet set = compile(PATTERNS, flags, budget);
+        assertEquals(PATTERNS.length, set.size());
+        for (String input : INPUTS) {
+          int[] want = find(PATTERNS, flags, input);
+          assertArrayEquals(input, want, set.match(input));
+          assertArrayEquals(input, want, set.match(input.getBytes("UTF-8")));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMalformedUTF8() {
+    // Decoded from the start, the stray lead byte swallows the "x", which
+    // Matcher.find() finds all the same by searching the bytes for it.
+    byte[] input = {(byte) 0xf0, 'x', 'S', (byte) 0xc3};
+    String[] patterns = {"x", "S", "[xy]", "é"};
+    int[] want = {0, 1};
+    for (int i = 0; i < patterns.length; i++) {
+      boolean found = Pattern.compile(patterns[i]).matcher(input).find();
+      assertEquals(patterns[i], i < want.length, found);
+    }
+    for (int budget : new int[] {DFA.DEFAULT_MEMORY_BUDGET, 0}) {
+      assertArrayEquals(want, compile(patterns, 0, budget).match(input));
+    }
+  }
+
+  @Test
+  public void testManyPatterns() {
+    String[] patterns = new String[300];
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = "id=" + i + "\\b|user" + (i * 7) + "@";
+    }
+    RegexSet set = compile(patterns, 0, DFA.DEFAULT_MEMORY_BUDGET);
+    assertArrayEquals(new int[] {3, 42}, set.match("GET /?id=42&x=1 user21@example.com id=420"));
+    assertArrayEquals(new int[] {}, set.match("nothing here"));
+  }
+
+  @Test
+  public void testEmptySet() {
+    RegexSet set = new RegexSet();
+    set.compile();
+    assertEquals(0, set.size());
+    assertArrayEquals(new int[] {}, set.match("abc"));
+  }
+
+  @Test
+  public void testState() {
+    RegexSet set = new RegexSet();
+    set.add("a");
+    assertEquals("a", set.pattern(0).pattern());
+    try {
+      set.match("a");
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    set.compile();
+    try {
+      set.add("b");
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      set.compile();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      new RegexSet().add("a(");
+      fail();
+    } catch (PatternSyntaxException expected) {
+    }
+    try {
+      new RegexSet(0x1000);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      new RegexSet(0, -1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that skipping to the literal in every match finds what the NFA finds.
+ */
+@RunWith(JUnit4.class)
+public class RequiredLiteralTest {
+
+  private static final String[] PATTERNS = {
+    "\\d+ ERROR \\w+",
+    ".?(GET|POST) /api/",
+    ".ab",
+    ".?.?ab(c|d)",
+    "\\bab",
+    "(?m)^ab$",
+    "x*ab",
+    "(\\w{2}é)+",
+  };
+
+  private static final String[] INPUTS = {
+    "", "ab", "cab", "xxab", "12 ERROR x", "a 7 ERROR xy", "POST /api/", "xGET /api/GET /api/",
+    "aabd", "b\nab\n", "ééé", "é€é", "a𐐀ab",
+  };
+
+  // Byte strings that are not well-formed UTF-8: overlong encodings of 'a'
+  // and 'b', truncated and stray sequences.
+  private static final byte[][] MALFORMED = {
+    {'c', (byte) 0xC1, (byte) 0xA1, 'a', 'b'},
+    {'x', (byte) 0xC1, (byte) 0xA1, (byte) 0xC1, (byte) 0xA2, 'a', 'b'},
+    {(byte) 0xE0, 'a', 'b', 'c'},
+    {'a', 'b', (byte) 0x80, 'a', 'b'},
+  };
+
+  @Test
+  public void testSameAsNFA() {
+    for (String pattern : PATTERNS) {
+      NFATestUtils.assertSameAsNFA(
+          RE2.compile(pattern), NFATestUtils.nfa(pattern), INPUTS, MALFORMED);
+    }
+  }
+
+  private static String describe(String pattern) {
+    RequiredLiteral required = RE2.compile(pattern).required;
+    return required == null ? null : required.literal.s + "@" + required.maxOffset;
+  }
+
+  @Test
+  public void testCompile() {
+    assertEquals(" ERROR @-1", describe("\\d+ ERROR \\w+"));
+    assertEquals(" /api/@5", describe(".?(GET|POST) /api/"));
+    assertEquals("ab@2", describe(".?.?ab(c|d)"));
+    assertEquals("ab@1", describe(".ab"));
+    assertEquals("xyz@9", describe("(?:.ab){2,3}xyz"));
+    assertEquals("ab@0", describe("(?:\\bab)+"));
+    assertEquals("ab@-1", describe("\\w{2,}ab"));
+    assertEquals("-@1", describe("(?i).-"));
+  }
+
+  @Test
+  public void testNoRequiredLiteral() {
+    for (String pattern :
+        new String[] {"ab\\d", "a|b", "\\d(ab)?", "\\d(ab)*", "\\d(?:ab){0,2}", "(?i)\\dab", "\\d+"}) {
+      assertNull(pattern, RE2.compile(pattern).required);
+    }
+  }
+}
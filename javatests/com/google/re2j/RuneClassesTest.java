@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that the equivalence classes of a program's runes agree with its instructions.
+ */
+@RunWith(JUnit4.class)
+public class RuneClassesTest {
+
+  private static final String[] PATTERNS = {
+    "[a-c]x[^b]",
+    "(?i)k[s-t]",
+    "(?i)[k-m]|é",
+    "\\pL+\\d",
+    "[\\x{10000}-\\x{10FFFF}]|[^\\x00-\\x{ffff}a]",
+    "(?i:ǅ)[\\p{Greek}]",
+  };
+
+  @Test
+  public void testMatchClass() {
+    Random random = new Random(1);
+    for (String pattern : PATTERNS) {
+      Prog prog = RE2.compile(pattern).prog;
+      RuneClasses classes = prog.classes;
+      assertNotNull(pattern, classes);
+      for (int pc = 0; pc < prog.numInst(); pc++) {
+        Inst inst = prog.getInst(pc);
+        if (inst.op != Inst.RUNE) {
+          continue;
+        }
+        for (int k = 0; k < 100000; k++) {
+          int r = k < 0x3000 ? k : random.nextInt(Unicode.MAX_RUNE + 1);
+          assertEquals(
+              pattern + " rune " + r, inst.matchRune(r), inst.matchClass(classes.classOf(r)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testNoRuneInstructions() {
+    assertNull(RE2.compile("abc|d*").prog.classes);
+    assertNull(RE2.compile("(?s).").prog.classes);
+  }
+
+  @Test
+  public void testSearch() {
+    Pattern p = Pattern.compile("[^a-c]x[a-z]", 0, 0); // searched by the NFA
+    Matcher m = p.matcher("axaéxa");
+    assertTrue(m.find());
+    assertEquals("éxa", m.group());
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that matching against UTF-8 split into ByteBuffers finds what matching against the same
+ * bytes in one array finds, wherever the splits fall.
+ */
+@RunWith(JUnit4.class)
+public class SegmentedInputTest {
+
+  // Returns |b| split at |cuts|, in segments of the kind |kind| selects:
+  // heap, direct, read-only or padded heap buffers, and with an empty one
+  // between each two.
+  private static List<ByteBuffer> split(byte[] b, int[] cuts, int kind) {
+    List<ByteBuffer> list = new ArrayList<ByteBuffer>();
+    int lo = 0;
+    for (int k = 0; k <= cuts.length; k++) {
+      int hi = k < cuts.length ? cuts[k] : b.length;
+      ByteBuffer seg;
+      switch ((kind + k) % 4) {
+        case 0:
+          seg = ByteBuffer.wrap(b, lo, hi - lo);
+          break;
+        case 1:
+          seg = ByteBuffer.allocateDirect(hi - lo);
+          seg.put(b, lo, hi - lo).flip();
+          break;
+        case 2:
+          seg = ByteBuffer.wrap(b, lo, hi - lo).asReadOnlyBuffer();
+          break;
+        default:
+          list.add(ByteBuffer.allocate(0));
+          seg = ByteBuffer.allocate(hi - lo + 2);
+          seg.put((byte) 0xA9).put(b, lo, hi - lo).put((byte) 'c');
+          seg.position(1);
+          seg.limit(1 + hi - lo);
+          seg = seg.slice();
+          break;
+      }
+      list.add(seg);
+      lo = hi;
+    }
+    return list;
+  }
+
+  @Test
+  public void testSameAsArray() {
+    Random r = new Random(1);
+    for (String regex : ByteBufferTest.PATTERNS) {
+      Pattern p = Pattern.compile(regex);
+      for (byte[] b : ByteBufferTest.inputs()) {
+        String want = ByteBufferTest.findAll(p.matcher(b));
+        List<int[]> cutss = new ArrayList<int[]>();
+        cutss.add(new int[0]);
+        // One cut, at each position of short input.
+        for (int i = 0; i <= b.length && b.length < 100; i++) {
+          cutss.add(new int[] {i});
+        }
+        // A byte to a segment.
+        int[] every = new int[Math.max(0, b.length - 1)];
+        for (int i = 0; i < every.length; i++) {
+          every[i] = i + 1;
+        }
+        cutss.add(every);
+        for (int i = 0; i < 5; i++) {
+          int[] cuts = new int[r.nextInt(8)];
+          for (int j = 0; j < cuts.length; j++) {
+            cuts[j] = r.nextInt(b.length + 1);
+          }
+          Arrays.sort(cuts);
+          cutss.add(cuts);
+        }
+        for (int[] cuts : cutss) {
+          for (int kind = 0; kind < 4; kind++) {
+            String got = ByteBufferTest.findAll(p.matcher(split(b, cuts, kind)));
+            assertEquals(regex + " cut at " + Arrays.toString(cuts), want, got);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSeams() {
+    // A literal, a case-folded literal and a rune split between segments.
+    List<ByteBuffer> list = new ArrayList<ByteBuffer>();
+    list.add(ByteBuffer.wrap(GoTestUtils.utf8("xx nee")));
+    list.add(ByteBuffer.wrap(GoTestUtils.utf8("dle STR")));
+    byte[] eszett = GoTestUtils.utf8("ß");
+    list.add(ByteBuffer.wrap(new byte[] {'A', eszett[0]}));
+    list.add(ByteBuffer.wrap(new byte[] {eszett[1], 'e', ' '}));
+    Matcher m = Pattern.compile("needle").matcher(list);
+    assertTrue(m.find());
+    assertEquals(3, m.start());
+    assertEquals("needle", m.group());
+    m = Pattern.compile("(?i)straße").matcher(list);
+    assertTrue(m.find());
+    assertEquals(10, m.start());
+    assertEquals(17, m.end());
+    assertEquals("STRAße", m.group());
+    m = Pattern.compile("A(.)e").matcher(list.subList(2, 4));
+    assertTrue(m.lookingAt());
+    assertEquals("ß", m.group(1));
+  }
+
+  @Test
+  public void testPositionsUnchanged() {
+    ByteBuffer a = ByteBuffer.wrap(GoTestUtils.utf8("--ab"));
+    a.position(2);
+    ByteBuffer b = ByteBuffer.allocateDirect(4);
+    b.put(GoTestUtils.utf8("cd--")).flip();
+    b.limit(2);
+    Matcher m = Pattern.compile("bc").matcher(Arrays.asList(a, b));
+    assertTrue(m.find());
+    assertEquals(1, m.start());
+    assertEquals(2, a.position());
+    assertEquals(0, b.position());
+    assertEquals(2, b.limit());
+  }
+}
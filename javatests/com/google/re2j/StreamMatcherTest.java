@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that a StreamMatcher fed its input in pieces finds the matches that a Matcher finds in all
+ * of it.
+ */
+@RunWith(JUnit4.class)
+public class StreamMatcherTest {
+
+  private static final String[] PATTERNS = {
+    "abc",
+    "a*",
+    "(a)(b$)?(b)?",
+    "(?:a.*z|a)",
+    "\\b(\\w+)@(\\w+)\\.com\\b",
+    "(?i)straße",
+    "^\\w+",
+    "(?m)^(\\w+):\\s*(.*)$",
+    "\\Afoo",
+    "x*$",
+    "[éx]+|\\x{10400}",
+    "(?U)a+",
+    "",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "abc abcabc",
+    "abc",
+    "aaz aa zaaaaaaaaaaaaaaaaaaa",
+    "mail bob@example.com, eve@evil.com.",
+    "STRASSE Straße strasse",
+    "Host: example.com\nAccept: */*\n\nbody",
+    "foofoo foo",
+    "é𐐀ééxx 𐐀a\n",
+  };
+
+  // Returns the matches that Matcher finds in |b|, with the groups that
+  // RE2 reports for them.
+  private static String want(Pattern p, byte[] b) {
+    StringBuilder out = new StringBuilder();
+    Matcher m = p.matcher(b);
+    int[] groups = new int[2 + 2 * m.groupCount()];
+    while (m.find()) {
+      assertTrue(
+          p.re2()
+              .match(
+                  MatcherInput.utf8(b), m.start(), b.length, RE2.UNANCHORED, groups,
+                  1 + m.groupCount()));
+      out.append(Arrays.toString(groups));
+    }
+    return out.toString();
+  }
+
+  private static void appendFound(StreamMatcher m, StringBuilder out) {
+    while (m.find()) {
+      int[] groups = new int[2 + 2 * m.groupCount()];
+      for (int g = 0; g <= m.groupCount(); g++) {
+        groups[2 * g] = m.start(g);
+        groups[2 * g + 1] = m.end(g);
+      }
+      out.append(Arrays.toString(groups));
+    }
+  }
+
+  // Feeds |b| to |m| in pieces of the sizes that |r| picks, or if it is
+  // null all at once.
+  private static String got(StreamMatcher m, byte[] b, Random r) {
+    StringBuilder out = new StringBuilder();
+    for (int i = 0; i < b.length; ) {
+      int n = r == null ? b.length : Math.min(b.length - i, r.nextInt(6));
+      m.feed(b, i, n);
+      appendFound(m, out);
+      i += n;
+    }
+    m.finish();
+    appendFound(m, out);
+    return out.toString();
+  }
+
+  @Test
+  public void testSameAsMatcher() throws Exception {
+    Random r = new Random(1);
+    for (String regex : PATTERNS) {
+      Pattern p = Pattern.compile(regex);
+      StreamMatcher m = p.streamMatcher();
+      for (String s : INPUTS) {
+        byte[] b = s.getBytes("UTF-8");
+        String want = want(p, b);
+        for (int i = 0; i < 10; i++) {
+          String got = got(m.reset(), b, r);
+          if (!got.equals(want)) {
+            fail(regex + " on " + s + ": got " + got + ", want " + want);
+          }
+        }
+        assertEquals(want, got(m.reset(), b, null));
+      }
+    }
+  }
+
+  @Test
+  public void testLongStream() throws Exception {
+    // A match far into a stream fed in small pieces.
+    StreamMatcher m = Pattern.compile("(\\d+) bottles").streamMatcher();
+    byte[] filler = "la la la ".getBytes("UTF-8");
+    for (int i = 0; i < 100000; i++) {
+      m.feed(filler, 0, filler.length);
+      assertFalse(m.find());
+    }
+    byte[] b = "99 bottles".getBytes("UTF-8");
+    m.feed(b, 0, b.length);
+    m.finish();
+    assertTrue(m.find());
+    assertEquals(900000, m.start());
+    assertEquals(900010, m.end());
+    assertEquals(900002, m.end(1));
+    assertFalse(m.find());
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    StreamMatcher m = Pattern.compile("a").streamMatcher();
+    try {
+      m.start();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      m.feed(new byte[2], 1, 2);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    m.feed(new byte[] {'a'}, 0, 1).finish();
+    assertTrue(m.find());
+    try {
+      m.start(1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+    try {
+      m.feed(new byte[1], 0, 1);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2026 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.CharBuffer;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests that every strategy of StringSearch finds what String.indexOf finds.
+ */
+@RunWith(JUnit4.class)
+public class StringSearchTest {
+
+  // Finds |needle| in |hay| from |from| as String.indexOf does, ignoring
+  // occurrences that run past |to|.
+  private static int indexOf(String hay, String needle, int from, int to) {
+    int i = hay.indexOf(needle, from);
+    return i < 0 || i + needle.length() > to ? -1 : i;
+  }
+
+  private static void assertSameAsIndexOf(String hay, String needle) throws Exception {
+    StringSearch search = new StringSearch(needle);
+    byte[] b = hay.getBytes("UTF-8");
+    for (int from = 0; from <= hay.length(); from++) {
+      for (int to = from; to <= hay.length(); to += 1 + to / 4) {
+        int want = indexOf(hay, needle, from, to);
+        String where = needle + " in " + hay + " [" + from + ", " + to + ")";
+        assertEquals(where, want, search.indexUTF16(hay, from, to));
+        // Other CharSequences are searched for by StringSearch itself.
+        assertEquals(where, want, search.indexUTF16(CharBuffer.wrap(hay), from, to));
+      }
+    }
+    String bytes = new String(b, "ISO-8859-1");
+    String needleBytes = new String(search.utf8, "ISO-8859-1");
+    for (int from = 0; from <= b.length; from++) {
+      assertEquals(
+          needle + " in " + hay + " from " + from,
+          indexOf(bytes, needleBytes, from, b.length),
+          search.indexUTF8(b, from, b.length));
+    }
+  }
+
+  @Test
+  public void testStrategies() throws Exception {
+    String hay = "the quick brown fox jumps over the lazy dog; the end: über Übermaß €€";
+    String[] needles = {
+      "", "t", "€", "he", "the", "dog;", "xyz", "the end", "jumps over the lazy", "über", "€€",
+      "the quick brown fox jumps over the lazy dog; the end",
+    };
+    for (String needle : needles) {
+      assertSameAsIndexOf(hay, needle);
+    }
+  }
+
+  @Test
+  public void testRepetitive() throws Exception {
+    // Strings that repeat themselves, which make naive and Horspool searches
+    // compare again and again, and which Two-Way must shift by the period.
+    Random r = new Random(1);
+    for (int i = 0; i < 200; i++) {
+      StringBuilder needle = new StringBuilder();
+      int n = 1 + r.nextInt(80);
+      for (int j = 0; j < n; j++) {
+        needle.append("ab".charAt(r.nextInt(r.nextInt(4) == 0 ? 2 : 1)));
+      }
+      StringBuilder hay = new StringBuilder();
+      while (hay.length() < 200) {
+        hay.append(r.nextBoolean() ? needle.substring(0, r.nextInt(n + 1)) : "a");
+        if (r.nextInt(8) == 0) {
+          hay.append(needle);
+        }
+      }
+      assertSameAsIndexOf(hay.toString(), needle.toString());
+    }
+  }
+}